@@ -0,0 +1,134 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures what the drawing state of one object costs per draw: the bytes
+ * allocated on the drawing thread, and lookups per second with several
+ * threads drawing at once.
+ *
+ * <p>Each draw takes a stroke, a composite and a color, first allocated
+ * the way the draw methods did before {@link RenderState}, then from
+ * RenderState. The values are stored in an array so they escape, as they
+ * do when handed to a Graphics2D.</p>
+ *
+ * <pre>
+ * javac -d out $(find src bench -name '*.java')
+ * java -cp out com.catsoftware.engine.prism.draw.RenderStateBench [draws] [threads]
+ * </pre>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class RenderStateBench {
+
+    // Distinct widths and opacities cycled through, as in a frame of mixed objects
+    private static final int VARIANTS = 64;
+
+    // Where the values escape to; one slot per thread so threads do not share a cache line
+    private static final Object[][] SINKS = new Object[64][16];
+
+    private RenderStateBench() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args Optional draws per run (default 2,000,000) and thread count (default 4)
+     * @throws InterruptedException If interrupted while waiting for threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int draws = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        com.sun.management.ThreadMXBean mx =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!mx.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation counters are not supported by this JVM");
+            return;
+        }
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        // Warm up both paths so the JIT has compiled them
+        for (int i = 0; i < 5; i++) {
+            allocating(draws / 10, SINKS[0]);
+            shared(draws / 10, SINKS[0]);
+        }
+
+        long id = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(id);
+        allocating(draws, SINKS[0]);
+        long allocated = mx.getThreadAllocatedBytes(id) - before;
+
+        before = mx.getThreadAllocatedBytes(id);
+        shared(draws, SINKS[0]);
+        long cached = mx.getThreadAllocatedBytes(id) - before;
+
+        System.out.printf("Allocated per draw: %.1f bytes new, %.1f bytes RenderState%n",
+                (double) allocated / draws, (double) cached / draws);
+
+        double newRate = concurrent(threads, draws, false);
+        double sharedRate = concurrent(threads, draws, true);
+        System.out.printf("%d threads: %.1f M draws/s new, %.1f M draws/s RenderState%n",
+                threads, newRate / 1e6, sharedRate / 1e6);
+    }
+
+    private static void allocating(int draws, Object[] sink) {
+        for (int i = 0; i < draws; i++) {
+            int v = i % VARIANTS;
+            sink[0] = new BasicStroke(1 + v * 0.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            sink[1] = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2f + v / 100f);
+            sink[2] = new Color(0x80000000 | v, true);
+        }
+    }
+
+    private static void shared(int draws, Object[] sink) {
+        for (int i = 0; i < draws; i++) {
+            int v = i % VARIANTS;
+            sink[0] = RenderState.roundStroke(1 + v * 0.5f);
+            sink[1] = RenderState.composite(0.2f + v / 100f);
+            sink[2] = RenderState.color(0x80000000 | v);
+        }
+    }
+
+    /**
+     * Runs the draws on several threads at once.
+     *
+     * @return Draws per second over all threads
+     */
+    private static double concurrent(int threads, int draws, boolean useShared) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Object[] sink = SINKS[(t + 1) % SINKS.length];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (useShared) {
+                    shared(draws, sink);
+                } else {
+                    allocating(draws, sink);
+                }
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (double) threads * draws / ((System.nanoTime() - t0) / 1e9);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.assets;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.imageio.ImageIO;
+
+/**
+ * An encoded image shared by any number of image objects.
+ * Identified by the SHA-256 hash of its PNG bytes. The decoded image is
+ * created on demand and released once no object holds a reference.
+ *
+ * <p>Assets are canonical by content: creating or reading an asset whose
+ * bytes match one still in use returns that one, so the same image pasted
+ * many times is held, and serialized, only once.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class ImageAsset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Assets in use by hash. Keyed by each asset's own hash string, so an
+    // entry goes away together with its asset
+    private static final Map<String, WeakReference<ImageAsset>> CANONICAL = new WeakHashMap<>();
+
+    private final String hash;
+    private final byte[] data;
+    private transient BufferedImage image;
+    private transient int references;
+
+    /**
+     * Creates an asset from already encoded image bytes.
+     *
+     * @param data The PNG (or other ImageIO readable) bytes
+     * @param image The decoded image, or null to decode on demand
+     */
+    private ImageAsset(byte[] data, BufferedImage image) {
+        this.hash = hash(data);
+        this.data = data;
+        this.image = image;
+    }
+
+    /**
+     * Creates an asset by encoding an image as PNG.
+     * The given image is kept as the decoded copy.
+     *
+     * @param img The source image
+     * @return The new asset
+     * @throws IOException If the image cannot be encoded
+     */
+    public static ImageAsset fromImage(BufferedImage img) throws IOException {
+        return canonical(new ImageAsset(encode(img), img));
+    }
+
+    /**
+     * Creates an asset from encoded image bytes.
+     *
+     * @param data The encoded bytes (not copied, must not be modified)
+     * @return The asset, shared with any asset of the same content
+     */
+    public static ImageAsset fromBytes(byte[] data) {
+        return canonical(new ImageAsset(data, null));
+    }
+
+    /**
+     * Returns the asset in use with the same content, registering this one
+     * if there is none.
+     *
+     * @param asset A newly created or read asset
+     * @return The canonical asset
+     */
+    private static ImageAsset canonical(ImageAsset asset) {
+        synchronized (CANONICAL) {
+            WeakReference<ImageAsset> ref = CANONICAL.get(asset.hash);
+            ImageAsset known = ref != null ? ref.get() : null;
+            if (known == null) {
+                CANONICAL.put(asset.hash, new WeakReference<>(asset));
+                return asset;
+            }
+            synchronized (known) {
+                if (known.image == null) {
+                    // Keep the decoded copy we already have
+                    known.image = asset.image;
+                }
+            }
+            return known;
+        }
+    }
+
+    /**
+     * Returns the content hash of this asset.
+     *
+     * @return Lowercase hex SHA-256 of the encoded bytes
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the encoded bytes. The array is shared and must not be modified.
+     *
+     * @return The encoded image bytes
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the decoded image, decoding it if needed.
+     *
+     * @return The decoded image, or null if the data cannot be read
+     */
+    public synchronized BufferedImage getImage() {
+        if (image == null) {
+            try {
+                image = ImageIO.read(new ByteArrayInputStream(data));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Registers a new user of this asset.
+     */
+    public synchronized void retain() {
+        references++;
+    }
+
+    /**
+     * Releases a user of this asset.
+     * The decoded image is dropped when the last user releases it.
+     */
+    public synchronized void release() {
+        if (references > 0 && --references == 0) {
+            image = null;
+        }
+    }
+
+    /**
+     * Returns the number of objects currently using this asset.
+     *
+     * @return The reference count
+     */
+    public synchronized int getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Shares assets read from a stream with equal ones already in use.
+     *
+     * @return The canonical asset
+     */
+    private Object readResolve() {
+        return canonical(this);
+    }
+
+    /**
+     * Encodes an image as PNG bytes.
+     *
+     * @param img The image to encode
+     * @return The PNG bytes
+     * @throws IOException If encoding fails
+     */
+    static byte[] encode(BufferedImage img) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Computes the hex SHA-256 of a byte array.
+     *
+     * @param data The bytes to hash
+     * @return The hash as lowercase hex
+     */
+    static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.assets;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.GroupObject;
+import com.catsoftware.engine.prism.draw.ImageObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Document-level store of image assets keyed by content hash.
+ * Interning the same image twice returns the same asset, so identical
+ * images are kept (and serialized) only once.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class ImageAssetStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, ImageAsset> assets = new HashMap<>();
+
+    // Avoids re-encoding when the same BufferedImage instance is pasted again.
+    // Maps to the hash, not the asset, since the asset holds the image
+    private transient Map<BufferedImage, String> byImage = new WeakHashMap<>();
+
+    /**
+     * Returns the shared asset for an image, adding it if needed.
+     *
+     * @param img The image to intern
+     * @return The shared asset
+     * @throws IOException If the image cannot be encoded
+     */
+    public synchronized ImageAsset intern(BufferedImage img) throws IOException {
+        String hash = byImage.get(img);
+        ImageAsset known = hash != null ? assets.get(hash) : null;
+        if (known != null) {
+            return known;
+        }
+        ImageAsset asset = intern(ImageAsset.fromImage(img));
+        byImage.put(img, asset.getHash());
+        return asset;
+    }
+
+    /**
+     * Returns the shared asset for encoded image bytes, adding it if needed.
+     *
+     * @param data The encoded image bytes
+     * @return The shared asset
+     */
+    public synchronized ImageAsset intern(byte[] data) {
+        ImageAsset known = assets.get(ImageAsset.hash(data));
+        return known != null ? known : intern(ImageAsset.fromBytes(data));
+    }
+
+    /**
+     * Returns the shared asset with the same content, adding this one if new.
+     * Used to merge assets of objects imported from other documents.
+     *
+     * @param asset The asset to intern
+     * @return The shared asset (may be {@code asset} itself)
+     */
+    public synchronized ImageAsset intern(ImageAsset asset) {
+        ImageAsset known = assets.putIfAbsent(asset.getHash(), asset);
+        return known != null ? known : asset;
+    }
+
+    /**
+     * Looks up an asset by its hash.
+     *
+     * @param hash The content hash
+     * @return The asset, or null if not in this store
+     */
+    public synchronized ImageAsset get(String hash) {
+        return assets.get(hash);
+    }
+
+    /**
+     * Returns a snapshot of all assets in this store.
+     *
+     * @return The list of assets
+     */
+    public synchronized List<ImageAsset> getAssets() {
+        return new ArrayList<>(assets.values());
+    }
+
+    /**
+     * Returns the number of distinct assets.
+     *
+     * @return The asset count
+     */
+    public synchronized int size() {
+        return assets.size();
+    }
+
+    /**
+     * Returns a new store holding the same (shared) assets.
+     *
+     * @return The copy
+     */
+    public synchronized ImageAssetStore copy() {
+        ImageAssetStore copy = new ImageAssetStore();
+        copy.assets.putAll(assets);
+        return copy;
+    }
+
+    /**
+     * Removes assets that none of the given objects show anymore. Images
+     * inside groups and inside the parts of the symbols the objects use
+     * count as shown. Like {@link SymbolLibrary#purge}, liveness is worked
+     * out from the objects rather than from reference counts, which are
+     * not released when objects are removed.
+     *
+     * @param objects The objects still in the document
+     * @return The number of removed assets
+     */
+    public synchronized int purge(Collection<? extends DrawableObject> objects) {
+        Set<String> live = collect(objects);
+        int removed = 0;
+        Iterator<String> it = assets.keySet().iterator();
+        while (it.hasNext()) {
+            if (!live.contains(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        byImage.values().removeIf(h -> !assets.containsKey(h));
+        return removed;
+    }
+
+    // ------------------ Walking ------------------
+
+    /**
+     * Finds the assets shown by some objects, looking inside groups and
+     * inside the parts of the symbols they use.
+     *
+     * @param objects The objects to look through
+     * @return The content hashes of the assets
+     */
+    public static Set<String> collect(Collection<? extends DrawableObject> objects) {
+        Set<String> found = new HashSet<>();
+        collect(objects, found);
+        for (Symbol symbol : SymbolLibrary.collect(objects).values()) {
+            collect(symbol.getParts(), found);
+        }
+        return found;
+    }
+
+    private static void collect(Collection<? extends DrawableObject> objects, Set<String> found) {
+        for (DrawableObject obj : objects) {
+            if (obj instanceof ImageObject) {
+                ImageAsset asset = ((ImageObject) obj).getAsset();
+                if (asset != null) {
+                    found.add(asset.getHash());
+                }
+            } else if (obj instanceof GroupObject) {
+                collect(((GroupObject) obj).getChildren(), found);
+            }
+        }
+    }
+
+    /**
+     * Restores the transient lookup cache after deserialization.
+     *
+     * @param in The object input stream
+     * @throws IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byImage = new WeakHashMap<>();
+    }
+}
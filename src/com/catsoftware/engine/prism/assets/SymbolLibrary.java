@@ -0,0 +1,163 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.assets;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.GroupObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import com.catsoftware.engine.prism.draw.SymbolObject;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Document-level library of symbols keyed by id.
+ * Symbol instances reference a symbol from here, so a drawing stamped many
+ * times is kept (and serialized) only once.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SymbolLibrary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Symbol> symbols = new LinkedHashMap<>();
+
+    /**
+     * Creates a symbol and adds it to this library.
+     *
+     * @param name The display name
+     * @param parts The objects, bottom first, in symbol space
+     * @return The new symbol
+     */
+    public synchronized Symbol define(String name, Collection<? extends DrawableObject> parts) {
+        Symbol symbol = new Symbol(name, parts);
+        symbols.put(symbol.getId(), symbol);
+        return symbol;
+    }
+
+    /**
+     * Returns the library's symbol with the same id, adding this one if new.
+     * Used to merge symbols of objects imported from other documents.
+     *
+     * @param symbol The symbol to intern
+     * @return The shared symbol (may be {@code symbol} itself)
+     */
+    public synchronized Symbol intern(Symbol symbol) {
+        Symbol known = symbols.putIfAbsent(symbol.getId(), symbol);
+        return known != null ? known : symbol;
+    }
+
+    /**
+     * Looks up a symbol by its id.
+     *
+     * @param id The symbol id
+     * @return The symbol, or null if not in this library
+     */
+    public synchronized Symbol get(String id) {
+        return symbols.get(id);
+    }
+
+    /**
+     * Removes a symbol from this library. Existing instances keep drawing it.
+     *
+     * @param id The symbol id
+     * @return The removed symbol, or null if not in this library
+     */
+    public synchronized Symbol remove(String id) {
+        return symbols.remove(id);
+    }
+
+    /**
+     * Returns a snapshot of all symbols, in the order they were added.
+     *
+     * @return The list of symbols
+     */
+    public synchronized List<Symbol> getSymbols() {
+        return new ArrayList<>(symbols.values());
+    }
+
+    /**
+     * Returns the number of symbols.
+     *
+     * @return The symbol count
+     */
+    public synchronized int size() {
+        return symbols.size();
+    }
+
+    /**
+     * Returns a new library holding the same (shared) symbols.
+     *
+     * @return The copy
+     */
+    public synchronized SymbolLibrary copy() {
+        SymbolLibrary copy = new SymbolLibrary();
+        copy.symbols.putAll(symbols);
+        return copy;
+    }
+
+    /**
+     * Removes symbols that none of the given objects use anymore.
+     * Symbols placed inside groups or inside other used symbols count as
+     * used. Liveness is worked out from the objects rather than from the
+     * symbols' reference counts, which also count instances held by undo
+     * copies and closed documents.
+     *
+     * @param objects The objects still in the document
+     * @return The number of removed symbols
+     */
+    public synchronized int purge(Collection<? extends DrawableObject> objects) {
+        Map<String, Symbol> live = collect(objects);
+        int removed = 0;
+        Iterator<String> it = symbols.keySet().iterator();
+        while (it.hasNext()) {
+            if (!live.containsKey(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // ------------------ Walking ------------------
+
+    /**
+     * Finds the symbols used by some objects, looking inside groups and
+     * inside the parts of the symbols found. A symbol comes after every
+     * symbol placed in its parts.
+     *
+     * @param objects The objects to look through
+     * @return The symbols by id, nested symbols first
+     */
+    public static Map<String, Symbol> collect(Collection<? extends DrawableObject> objects) {
+        Map<String, Symbol> found = new LinkedHashMap<>();
+        collect(objects, found, new HashSet<>());
+        return found;
+    }
+
+    private static void collect(Collection<? extends DrawableObject> objects, Map<String, Symbol> found,
+            Set<String> visited) {
+        for (DrawableObject obj : objects) {
+            if (obj instanceof SymbolObject) {
+                Symbol symbol = ((SymbolObject) obj).getSymbol();
+                if (symbol != null && visited.add(symbol.getId())) {
+                    collect(symbol.getParts(), found, visited);
+                    found.put(symbol.getId(), symbol);
+                }
+            } else if (obj instanceof GroupObject) {
+                collect(((GroupObject) obj).getChildren(), found, visited);
+            }
+        }
+    }
+}
@@ -8,6 +8,9 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.io.Serializable;
 
 /**
@@ -20,6 +23,9 @@ import java.io.Serializable;
  */
 public interface DrawableObject extends Serializable {
     
+    /** Extra pixels around a stroke or outline that still count as a hit */
+    public static final int HIT_TOLERANCE = 3;
+    
     /**
      * Renders this object onto a graphics context.
      * 
@@ -36,6 +42,33 @@ public interface DrawableObject extends Serializable {
      */
     public abstract boolean contains(Point p);
 
+    /**
+     * Measures how close a point is to this object, so the nearest of
+     * several overlapping objects can be picked.
+     * 
+     * @param p The point to check
+     * @return 0 for a direct hit, a larger distance for a near hit,
+     *         or -1 if the point misses
+     */
+    public default double hitDistance(Point p) {
+        return contains(p) ? 0 : -1;
+    }
+
+    /**
+     * Measures how close a point is to this object with the given slack.
+     * Groups use this to test their children in local space, where the
+     * point falls between whole pixels and the slack is scaled.
+     * The default rounds the point and ignores the slack.
+     * 
+     * @param p The point to check
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return 0 for a direct hit, a larger distance for a near hit,
+     *         or -1 if the point misses
+     */
+    public default double hitDistance(Point2D p, double tolerance) {
+        return hitDistance(new Point((int) Math.round(p.getX()), (int) Math.round(p.getY())));
+    }
+
     /**
      * Moves this object by the specified delta.
      * 
@@ -51,6 +84,16 @@ public interface DrawableObject extends Serializable {
      */
     Rectangle getBounds();
     
+    /**
+     * Returns the area this object covers, in canvas coordinates.
+     * Used by boolean path operations to combine objects.
+     * 
+     * @return The outline (the bounding box unless overridden)
+     */
+    public default Shape toShape() {
+        return getBounds();
+    }
+    
     /**
      * Scales this object by the given factors.
      * 
@@ -59,8 +102,72 @@ public interface DrawableObject extends Serializable {
      */
     public abstract void resize(double scaleX, double scaleY);
     
+    /**
+     * Applies an affine transform (in canvas coordinates) to this object.
+     * Used to move, scale and rotate whole selections in one call.
+     * Objects with a transform of their own concatenate {@code at} onto it
+     * and leave their geometry as is.
+     *
+     * <p>The default is for objects that keep their geometry in canvas space,
+     * so it changes the geometry:
+     * it resizes and rotates the object by the scale and angle of {@code at},
+     * then moves it so its center lands where {@code at} maps the old center.
+     * Shear is not supported there.</p>
+     *
+     * @param at The transform to apply
+     */
+    public default void applyTransform(AffineTransform at) {
+        Rectangle before = getBounds();
+        double scaleX = Math.hypot(at.getScaleX(), at.getShearY());
+        double scaleY = Math.hypot(at.getShearX(), at.getScaleY());
+        double angle = Math.toDegrees(Math.atan2(at.getShearY(), at.getScaleX()));
+        if (scaleX != 1 || scaleY != 1) {
+            resize(scaleX, scaleY);
+        }
+        if (angle != 0) {
+            rotate(angle);
+        }
+        Point2D center = at.transform(new Point2D.Double(before.getCenterX(), before.getCenterY()), null);
+        Rectangle after = getBounds();
+        moveBy((int) Math.round(center.getX() - after.getCenterX()),
+               (int) Math.round(center.getY() - after.getCenterY()));
+    }
+    
+    /**
+     * Returns the local-to-canvas transform of this object.
+     * Geometry is stored in local space and drawn through this matrix.
+     * Objects that keep their geometry in canvas space return the identity.
+     * 
+     * @return A copy of the transform
+     */
+    public default AffineTransform getTransform() {
+        return new AffineTransform();
+    }
+    
+    /**
+     * Replaces the local-to-canvas transform of this object.
+     *
+     * <p>The default is for objects that keep their geometry in canvas space
+     * and have no transform to replace. It applies {@code at} to the
+     * geometry with {@link #applyTransform} and {@link #getTransform} stays
+     * the identity, so unlike a real replace, calling it twice applies
+     * {@code at} twice and null does not undo it.</p>
+     * 
+     * @param at The new transform (null resets to identity)
+     */
+    public default void setTransform(AffineTransform at) {
+        if (at != null && !at.isIdentity()) {
+            applyTransform(at);
+        }
+    }
+    
     /**
      * Resizes this object to absolute dimensions.
+     * The size is measured along the object's own axes, in canvas pixels, so
+     * a rotated object gets that width and height before rotation is applied.
+     * The top-left corner of the object's box stays in place on the canvas,
+     * and rotation, shear and mirroring are kept. Objects that only scale
+     * uniformly, such as strokes and text, use the smaller factor.
      * 
      * @param newWidth New width in pixels
      * @param newHeight New height in pixels
@@ -83,7 +190,7 @@ public interface DrawableObject extends Serializable {
     public abstract void setRotation(double degrees);
     
     /**
-     * Returns the current rotation angle.
+     * Returns the current rotation angle, taken from the transform.
      * 
      * @return Rotation angle in degrees
      */
@@ -0,0 +1,201 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Color;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A multi-stop linear or radial gradient, defined relative to the box it
+ * fills so it follows the shape when the shape is resized. Instances are
+ * immutable and can be shared between objects.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class GradientFill implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The shape of the color bands.
+     */
+    public enum Type {
+        /** Straight bands across the box at an angle */
+        LINEAR,
+        /** Elliptical rings around a centre point */
+        RADIAL
+    }
+
+    private final Type type;
+    private final float[] fractions;
+    private final Color[] colors;
+    private final double angle;
+    private final double centerX;
+    private final double centerY;
+    private final double radius;
+
+    private GradientFill(Type type, float[] fractions, Color[] colors,
+                         double angle, double centerX, double centerY, double radius) {
+        if (fractions.length != colors.length || fractions.length < 2) {
+            throw new IllegalArgumentException("A gradient needs at least two stops with one color each");
+        }
+        for (int i = 0; i < fractions.length; i++) {
+            if (fractions[i] < 0 || fractions[i] > 1 || (i > 0 && fractions[i] <= fractions[i - 1])) {
+                throw new IllegalArgumentException("Stop fractions must increase from 0 to 1");
+            }
+            if (colors[i] == null) {
+                throw new IllegalArgumentException("Stop colors must not be null");
+            }
+        }
+        this.type = type;
+        this.fractions = fractions.clone();
+        this.colors = colors.clone();
+        this.angle = angle;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.radius = radius;
+    }
+
+    /**
+     * Creates a linear gradient that runs across the whole box.
+     *
+     * @param fractions Stop positions, increasing from 0 to 1
+     * @param colors Stop colors
+     * @param angle Direction in degrees, counter-clockwise from left-to-right
+     *              as seen on screen (-90 runs top to bottom)
+     * @return The gradient
+     * @throws IllegalArgumentException If the stops are invalid
+     */
+    public static GradientFill linear(float[] fractions, Color[] colors, double angle) {
+        return new GradientFill(Type.LINEAR, fractions, colors, angle, 0.5, 0.5, 1);
+    }
+
+    /**
+     * Creates a two-color linear gradient, like the original gradient option.
+     *
+     * @param color1 Start color
+     * @param color2 End color
+     * @param horizontal true for left to right, false for top to bottom
+     * @return The gradient
+     */
+    public static GradientFill linear(Color color1, Color color2, boolean horizontal) {
+        return linear(new float[] { 0f, 1f }, new Color[] { color1, color2 }, horizontal ? 0 : -90);
+    }
+
+    /**
+     * Creates a radial gradient centred in the box that reaches its sides.
+     *
+     * @param fractions Stop positions from the centre (0) outward (1)
+     * @param colors Stop colors
+     * @return The gradient
+     * @throws IllegalArgumentException If the stops are invalid
+     */
+    public static GradientFill radial(float[] fractions, Color[] colors) {
+        return radial(fractions, colors, 0.5, 0.5, 1);
+    }
+
+    /**
+     * Creates a radial gradient.
+     *
+     * @param fractions Stop positions from the centre (0) outward (1)
+     * @param colors Stop colors
+     * @param centerX Centre X as a fraction of the box width
+     * @param centerY Centre Y as a fraction of the box height
+     * @param radius Radius as a fraction of half the box size (1 reaches the sides)
+     * @return The gradient
+     * @throws IllegalArgumentException If the stops are invalid
+     */
+    public static GradientFill radial(float[] fractions, Color[] colors,
+                                      double centerX, double centerY, double radius) {
+        return new GradientFill(Type.RADIAL, fractions, colors, 0, centerX, centerY, Math.max(1e-3, radius));
+    }
+
+    /**
+     * Creates the paint for a box.
+     *
+     * @param box The box to fill, in the coordinates the paint is used in
+     * @return The paint
+     */
+    public Paint createPaint(Rectangle2D box) {
+        double w = Math.max(1, box.getWidth());
+        double h = Math.max(1, box.getHeight());
+        if (type == Type.RADIAL) {
+            // A unit circle stretched over the box, so the rings are elliptical
+            AffineTransform at = AffineTransform.getTranslateInstance(
+                    box.getX() + centerX * w, box.getY() + centerY * h);
+            at.scale(radius * w / 2, radius * h / 2);
+            return new RadialGradientPaint(new Point2D.Double(0, 0), 1f, new Point2D.Double(0, 0),
+                                           fractions, colors, MultipleGradientPaint.CycleMethod.NO_CYCLE,
+                                           MultipleGradientPaint.ColorSpaceType.SRGB, at);
+        }
+
+        // Start and end on the box's extremes along the direction
+        double rad = Math.toRadians(angle);
+        double dx = Math.cos(rad);
+        double dy = -Math.sin(rad);
+        double half = (Math.abs(dx) * w + Math.abs(dy) * h) / 2;
+        double cx = box.getX() + w / 2;
+        double cy = box.getY() + h / 2;
+        return new LinearGradientPaint(new Point2D.Double(cx - dx * half, cy - dy * half),
+                                       new Point2D.Double(cx + dx * half, cy + dy * half),
+                                       fractions, colors);
+    }
+
+    /** @return The gradient type */
+    public Type getType() { return type; }
+
+    /** @return A copy of the stop positions */
+    public float[] getFractions() { return fractions.clone(); }
+
+    /** @return A copy of the stop colors */
+    public Color[] getColors() { return colors.clone(); }
+
+    /** @return The direction of a linear gradient in degrees */
+    public double getAngle() { return angle; }
+
+    /** @return The radial centre X as a fraction of the box width */
+    public double getCenterX() { return centerX; }
+
+    /** @return The radial centre Y as a fraction of the box height */
+    public double getCenterY() { return centerY; }
+
+    /** @return The radial radius as a fraction of half the box size */
+    public double getRadius() { return radius; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GradientFill)) return false;
+        GradientFill other = (GradientFill) o;
+        return type == other.type
+            && Double.compare(angle, other.angle) == 0
+            && Double.compare(centerX, other.centerX) == 0
+            && Double.compare(centerY, other.centerY) == 0
+            && Double.compare(radius, other.radius) == 0
+            && Arrays.equals(fractions, other.fractions)
+            && Arrays.equals(colors, other.colors);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = type.hashCode();
+        h = 31 * h + Double.hashCode(angle);
+        h = 31 * h + Double.hashCode(centerX);
+        h = 31 * h + Double.hashCode(centerY);
+        h = 31 * h + Double.hashCode(radius);
+        h = 31 * h + Arrays.hashCode(fractions);
+        return 31 * h + Arrays.hashCode(colors);
+    }
+}
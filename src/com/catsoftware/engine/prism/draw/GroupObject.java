@@ -0,0 +1,360 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import com.catsoftware.engine.prism.model.ObjectStore;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A group of objects that are drawn, selected and transformed together.
+ * Children are kept in the group's local space and placed by the group's
+ * transform, so moving or rotating a group is O(1) however many objects
+ * it holds. Groups can be nested.
+ *
+ * <p>The combined bounds of the children are cached, so drawing and
+ * hit-testing can skip a whole group with one bounds check. Call
+ * {@link #invalidateBounds} after changing a child directly.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class GroupObject implements DrawableObject, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<DrawableObject> children;
+    private ObjectTransform transform = new ObjectTransform();
+
+    // Union of the children's bounds in local space, rebuilt on demand
+    private transient Rectangle localBounds;
+
+    /**
+     * Creates a group.
+     *
+     * @param children The objects to group, bottom first, in canvas coordinates
+     */
+    public GroupObject(Collection<? extends DrawableObject> children) {
+        this.children = new ArrayList<>(children);
+    }
+
+    /**
+     * Groups objects of a store, placing the group where the topmost of
+     * them was.
+     *
+     * @param store The document's objects
+     * @param selection The objects to group (any order)
+     * @return The new group, or null if no selected object is in the store
+     */
+    public static GroupObject group(ObjectStore store, Collection<? extends DrawableObject> selection) {
+        Map<DrawableObject, Boolean> selected = new IdentityHashMap<>();
+        for (DrawableObject obj : selection) {
+            selected.put(obj, Boolean.TRUE);
+        }
+
+        // Keep the children in their drawing order
+        List<DrawableObject> members = new ArrayList<>();
+        for (DrawableObject obj : store.snapshot()) {
+            if (selected.containsKey(obj)) {
+                members.add(obj);
+            }
+        }
+        if (members.isEmpty()) {
+            return null;
+        }
+
+        GroupObject group = new GroupObject(members);
+        DrawableObject top = members.get(members.size() - 1);
+        store.edit(list -> {
+            List<DrawableObject> next = new ArrayList<>(list.size());
+            for (DrawableObject obj : list) {
+                if (obj == top) {
+                    next.add(group);
+                } else if (!selected.containsKey(obj)) {
+                    next.add(obj);
+                }
+            }
+            list.clear();
+            list.addAll(next);
+        });
+        return group;
+    }
+
+    /**
+     * Replaces this group in a store with its children. The group's
+     * transform is applied to each child. While a snapshot of the store is
+     * open the children are released as copies, so readers of the snapshot
+     * still see the group unchanged. Otherwise the children are released
+     * as they are and the transform is applied to them in place, so the
+     * group must not be used afterwards.
+     *
+     * @param store The document's objects
+     * @return The released children, now in canvas coordinates
+     */
+    public List<DrawableObject> ungroup(ObjectStore store) {
+        List<DrawableObject> released = store.editable(children);
+        if (!transform.isIdentity()) {
+            for (DrawableObject child : released) {
+                child.applyTransform(transform.matrix());
+            }
+        }
+        store.edit(list -> {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == this) {
+                    list.remove(i);
+                    list.addAll(i, released);
+                    break;
+                }
+            }
+        });
+        return released;
+    }
+
+    /**
+     * Returns the children of this group, bottom first, in local space.
+     *
+     * @return The children (unmodifiable)
+     */
+    public List<DrawableObject> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Adds a child on top of the others.
+     *
+     * @param child The object, in the group's local space
+     */
+    public void add(DrawableObject child) {
+        children.add(child);
+        invalidateBounds();
+    }
+
+    /**
+     * Removes a child.
+     *
+     * @param child The object
+     * @return true if it was a child of this group
+     */
+    public boolean remove(DrawableObject child) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == child) {
+                children.remove(i);
+                invalidateBounds();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops the cached bounds after a child was changed directly.
+     */
+    public void invalidateBounds() {
+        localBounds = null;
+    }
+
+    /**
+     * Returns the combined bounds of the children in local space.
+     *
+     * @return The cached bounds
+     */
+    private Rectangle getLocalBounds() {
+        Rectangle b = localBounds;
+        if (b == null) {
+            for (DrawableObject child : children) {
+                if (b == null) {
+                    b = child.getBounds();
+                } else {
+                    b.add(child.getBounds());
+                }
+            }
+            if (b == null) {
+                b = new Rectangle();
+            }
+            localBounds = b;
+        }
+        return b;
+    }
+
+    @Override
+    public void draw(Graphics2D g) {
+        // Skip the whole group when it is outside the area being painted
+        Rectangle clip = g.getClipBounds();
+        if (clip != null && !getBounds().intersects(clip)) {
+            return;
+        }
+
+        AffineTransform original = transform.begin(g);
+        Rectangle localClip = g.getClipBounds();
+        for (DrawableObject child : children) {
+            if (localClip == null || child.getBounds().intersects(localClip)) {
+                child.draw(g);
+            }
+        }
+        g.setTransform(original);
+    }
+
+    @Override
+    public boolean contains(Point p) {
+        return hitDistance(p) >= 0;
+    }
+
+    @Override
+    public double hitDistance(Point p) {
+        return hitDistance(p, HIT_TOLERANCE);
+    }
+
+    /**
+     * Measures how close a point is to the nearest child. The group is
+     * rejected with one bounds check before any child is tested. Children
+     * get the exact local point and the tolerance in local units, so a
+     * scaled group keeps the same slack on screen.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return The smallest child distance in canvas pixels, or -1 if no child is hit
+     */
+    @Override
+    public double hitDistance(Point2D p, double tolerance) {
+        // One extra pixel, as contains() leaves out the right and bottom edges
+        Rectangle box = getBounds();
+        int grow = (int) Math.ceil(tolerance) + 1;
+        box.grow(grow, grow);
+        if (!box.contains(p)) return -1;
+
+        Point2D local = transform.toLocal(p);
+        if (local == null) return -1;
+
+        double scale = transform.getScale();
+        if (scale <= 0) return -1;
+        double localTolerance = tolerance / scale;
+
+        double best = -1;
+        for (int i = children.size() - 1; i >= 0; i--) {
+            double d = children.get(i).hitDistance(local, localTolerance);
+            if (d >= 0 && (best < 0 || d < best)) {
+                best = d;
+                if (d == 0) break;
+            }
+        }
+        return best < 0 ? -1 : best * scale;
+    }
+
+    @Override
+    public void moveBy(int dx, int dy) {
+        transform.translate(dx, dy);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return transform.bounds(getLocalBounds());
+    }
+
+    /**
+     * Returns the merged outline of all children.
+     */
+    @Override
+    public Shape toShape() {
+        // Merged, so children wound in opposite directions do not cancel out
+        Area area = new Area();
+        for (DrawableObject child : children) {
+            area.add(new Area(child.toShape()));
+        }
+        return transform.matrix().createTransformedShape(area);
+    }
+
+    @Override
+    public void resize(double scaleX, double scaleY) {
+        Rectangle local = getLocalBounds();
+        transform.scaleLocal(scaleX, scaleY, local.getX(), local.getY());
+    }
+
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
+    }
+
+    @Override
+    public void resizeAbsolute(int newWidth, int newHeight) {
+        transform.resizeTo(getLocalBounds(), newWidth, newHeight, false);
+    }
+
+    /**
+     * Fills every child that can be filled.
+     */
+    @Override
+    public void fill(Graphics2D g, Color fillColor) {
+        for (DrawableObject child : children) {
+            child.fill(null, fillColor);
+        }
+        if (g != null) {
+            draw(g);
+        }
+    }
+
+    @Override
+    public void setRotation(double degrees) {
+        rotate(degrees - getRotation());
+    }
+
+    @Override
+    public double getRotation() {
+        return transform.getRotation();
+    }
+
+    @Override
+    public void rotate(double delta) {
+        transform.rotate(delta, getLocalBounds());
+    }
+
+    /**
+     * Applies a gradient to every child that supports one.
+     */
+    @Override
+    public void setGradient(Color color1, Color color2, boolean horizontal) {
+        for (DrawableObject child : children) {
+            child.setGradient(color1, color2, horizontal);
+        }
+    }
+
+    @Override
+    public boolean hasGradient() {
+        for (DrawableObject child : children) {
+            if (child.hasGradient()) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void removeGradient() {
+        for (DrawableObject child : children) {
+            child.removeGradient();
+        }
+    }
+}
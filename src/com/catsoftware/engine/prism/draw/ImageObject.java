@@ -4,32 +4,41 @@
  */
 package com.catsoftware.engine.prism.draw;
 
-import java.awt.AlphaComposite;
+import com.catsoftware.engine.prism.assets.ImageAsset;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
-import javax.imageio.ImageIO;
 
 /**
  * A drawable image object that can be placed on the canvas.
  * Supports transparency, rotation, and serialization for saving/loading.
+ * The pixels live in an {@link ImageAsset} that can be shared between objects.
  *
  * @author lynxjr
  * @version 1.0.00
  * @since Prism B1
  */
 public class ImageObject implements DrawableObject, Serializable {
-    private transient BufferedImage image;
+    /** Same as the computed ID of the first format, so older documents still load */
+    private static final long serialVersionUID = 1695504078604700640L;
+    
     private int x, y, width, height;
-    private double rotation = 0;
-    private float alpha = 1.0f;
+    private ObjectTransform transform = new ObjectTransform();
+    
+    /** Rotation slot of files saved before the transform model, only set while reading them */
+    private double rotation;
+    
+    /** Embedded image slot of files saved before shared assets, only set while reading them */
     private byte[] imageData;
+    private float alpha = 1.0f;
+    private ImageAsset asset;
 
     /**
      * Creates a new image object.
@@ -41,30 +50,44 @@ public class ImageObject implements DrawableObject, Serializable {
      * @param h The height
      */
     public ImageObject(BufferedImage img, int x, int y, int w, int h) {
-        this.image = img;
         this.x = x;
         this.y = y;
         this.width = w;
         this.height = h;
         setImage(img);
     }
+
+    /**
+     * Creates a new image object backed by a shared asset.
+     *
+     * @param asset The image asset (usually from the document's asset store)
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     * @param w The width
+     * @param h The height
+     */
+    public ImageObject(ImageAsset asset, int x, int y, int w, int h) {
+        this.x = x;
+        this.y = y;
+        this.width = w;
+        this.height = h;
+        setAsset(asset);
+    }
     
     @Override
     public void draw(Graphics2D g) {
+        BufferedImage image = getImage();
         if (image != null) {
             // Save original composite
             Composite originalComposite = g.getComposite();
             
             // Apply alpha
             if (alpha < 1.0f) {
-                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+                g.setComposite(RenderState.composite(alpha));
             }
             
-            // Save transform for rotation
-            AffineTransform original = g.getTransform();
-            int centerX = x + width/2;
-            int centerY = y + height/2;
-            g.rotate(Math.toRadians(rotation), centerX, centerY);
+            // Draw in local space
+            AffineTransform original = transform.begin(g);
             
             // Draw the image
             g.drawImage(image, x, y, width, height, null);
@@ -77,67 +100,57 @@ public class ImageObject implements DrawableObject, Serializable {
     
     @Override
     public boolean contains(Point p) {
-        // For rotated images, we need to transform the point back
-        if (rotation != 0) {
-            int centerX = x + width/2;
-            int centerY = y + height/2;
-            
-            // Translate point relative to center
-            double dx = p.x - centerX;
-            double dy = p.y - centerY;
-            
-            // Rotate point back by -rotation
-            double rad = Math.toRadians(-rotation);
-            double rotatedX = dx * Math.cos(rad) - dy * Math.sin(rad);
-            double rotatedY = dx * Math.sin(rad) + dy * Math.cos(rad);
-            
-            // Check if rotated point is within unrotated bounds
-            int checkX = centerX + (int)rotatedX;
-            int checkY = centerY + (int)rotatedY;
-            
-            return new Rectangle(x, y, width, height).contains(checkX, checkY);
-        }
-        
-        // No rotation - simple bounds check
-        return new Rectangle(x, y, width, height).contains(p);
+        // Map the point back into the image's local space
+        Point2D local = transform.toLocal(p);
+        return local != null && new Rectangle(x, y, width, height).contains(local);
     }
     
     @Override
     public void moveBy(int dx, int dy) {
-        x += dx;
-        y += dy;
+        transform.translate(dx, dy);
     }
     
     @Override
     public Rectangle getBounds() {
-        if (rotation == 0) {
-            return new Rectangle(x, y, width, height);
-        }
-        
-        // Calculate rotated bounds
-        double rad = Math.toRadians(rotation);
-        double cos = Math.abs(Math.cos(rad));
-        double sin = Math.abs(Math.sin(rad));
-        
-        int newWidth = (int)(width * cos + height * sin);
-        int newHeight = (int)(width * sin + height * cos);
-        
-        int newX = x + (width - newWidth) / 2;
-        int newY = y + (height - newHeight) / 2;
-        
-        return new Rectangle(newX, newY, newWidth, newHeight);
+        return transform.bounds(new Rectangle(x, y, width, height));
+    }
+    
+    @Override
+    public Shape toShape() {
+        return transform.matrix().createTransformedShape(new Rectangle(x, y, width, height));
     }
     
     @Override
     public void resize(double scaleX, double scaleY) {
-        width = (int)(width * scaleX);
-        height = (int)(height * scaleY);
+        width = Math.max(1, (int) Math.round(width * scaleX));
+        height = Math.max(1, (int) Math.round(height * scaleY));
+    }
+    
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+    
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+    
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
     }
     
+    /**
+     * Resizes the image to a canvas size measured along its own axes. The
+     * image's box changes in local space with its top-left corner kept, so
+     * that corner stays in place on the canvas and rotation, shear and
+     * mirroring are kept.
+     */
     @Override
     public void resizeAbsolute(int newWidth, int newHeight) {
-        width = newWidth;
-        height = newHeight;
+        width = Math.max(1, (int) Math.round(Math.max(1, newWidth) / transform.axisScaleX()));
+        height = Math.max(1, (int) Math.round(Math.max(1, newHeight) / transform.axisScaleY()));
     }
     
     @Override
@@ -147,25 +160,51 @@ public class ImageObject implements DrawableObject, Serializable {
     
     /**
      * Returns the image data.
-     * Restores from byte array if needed.
+     * Decoded from the shared asset if needed.
      *
      * @return The buffered image
      */
     public BufferedImage getImage() { 
-        if (image == null && imageData != null) {
-            try {
-                image = ImageIO.read(new java.io.ByteArrayInputStream(imageData));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        return asset != null ? asset.getImage() : null;
+    }
+
+    /**
+     * Returns the asset holding this object's image.
+     *
+     * @return The image asset, or null if there is no image
+     */
+    public ImageAsset getAsset() {
+        return asset;
+    }
+
+    /**
+     * Replaces the asset holding this object's image.
+     * The old asset is released and the new one retained.
+     *
+     * @param asset The new asset (may be null)
+     */
+    public void setAsset(ImageAsset asset) {
+        if (asset == this.asset) return;
+        if (asset != null) {
+            asset.retain();
+        }
+        if (this.asset != null) {
+            this.asset.release();
         }
-        return image; 
+        this.asset = asset;
+    }
+
+    /**
+     * Releases the shared asset. Call when the object is removed for good.
+     */
+    public void dispose() {
+        setAsset(null);
     }
     
-    /** @return The X coordinate */
+    /** @return The X coordinate (local space) */
     public int getX() { return x; }
     
-    /** @return The Y coordinate */
+    /** @return The Y coordinate (local space) */
     public int getY() { return y; }
     
     /** @return The width */
@@ -190,18 +229,17 @@ public class ImageObject implements DrawableObject, Serializable {
 
     @Override
     public void setRotation(double degrees) {
-        this.rotation = degrees;
+        rotate(degrees - getRotation());
     }
 
     @Override
     public double getRotation() {
-        return rotation;
+        return transform.getRotation();
     }
 
     @Override
     public void rotate(double delta) {
-        rotation += delta;
-        rotation = rotation % 360;
+        transform.rotate(delta, new Rectangle(x, y, width, height));
     }
 
     @Override
@@ -220,27 +258,27 @@ public class ImageObject implements DrawableObject, Serializable {
     }
 
     /**
-     * Sets the image and prepares it for serialization.
+     * Sets the image. Objects set to equal images share one asset; the
+     * document's asset store picks the asset up when the document is saved.
      *
      * @param img The new image
      */
     public void setImage(BufferedImage img) {
-        this.image = img;
         // Convert to bytes for serialization
         if (img != null) {
             try {
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(img, "png", baos);
-                this.imageData = baos.toByteArray();
+                setAsset(ImageAsset.fromImage(img));
             } catch (Exception e) {
                 e.printStackTrace();
-                this.imageData = null;
+                setAsset(null);
             }
         }
     }
 
     /**
-     * Custom deserialization to restore image from bytes.
+     * Custom deserialization to re-register with the shared asset.
+     * Assets shared by several objects are written once per stream.
+     * Objects from older files are converted to the current model.
      *
      * @param in The object input stream
      * @throws java.io.IOException If reading fails
@@ -248,14 +286,21 @@ public class ImageObject implements DrawableObject, Serializable {
      */
     private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
         in.defaultReadObject();
-        // Restore image from bytes
-        if (imageData != null) {
-            try {
-                this.image = ImageIO.read(new java.io.ByteArrayInputStream(imageData));
-            } catch (Exception e) {
-                e.printStackTrace();
-                this.image = null;
+        if (transform == null) {
+            // Saved before the transform model: geometry is in canvas space
+            transform = new ObjectTransform();
+            if (rotation != 0) {
+                transform.rotate(rotation, new Rectangle(x, y, width, height));
             }
+            rotation = 0;
+        }
+        if (asset == null && imageData != null) {
+            // Saved before shared assets: the image was embedded in the object
+            asset = ImageAsset.fromBytes(imageData);
+        }
+        imageData = null;
+        if (asset != null) {
+            asset.retain();
         }
     }
 }
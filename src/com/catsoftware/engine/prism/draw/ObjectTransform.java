@@ -0,0 +1,181 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+
+/**
+ * The local-to-canvas matrix of a drawable object.
+ * Objects keep their geometry in local space; moving, rotating and
+ * transforming only update this matrix, and drawing concatenates it.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+final class ObjectTransform implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final AffineTransform matrix = new AffineTransform();
+
+    /** @return A copy of the matrix */
+    AffineTransform get() {
+        return new AffineTransform(matrix);
+    }
+
+    /** @param at The new matrix (null resets to identity) */
+    void set(AffineTransform at) {
+        if (at == null) {
+            matrix.setToIdentity();
+        } else {
+            matrix.setTransform(at);
+        }
+    }
+
+    /** @return The live matrix, for read-only use */
+    AffineTransform matrix() {
+        return matrix;
+    }
+
+    /** @return true if local and canvas coordinates are the same */
+    boolean isIdentity() {
+        return matrix.isIdentity();
+    }
+
+    /** @return true if the matrix only translates */
+    boolean isTranslation() {
+        int type = matrix.getType();
+        return (type & ~AffineTransform.TYPE_TRANSLATION) == 0;
+    }
+
+    /**
+     * Moves by a canvas-space offset.
+     */
+    void translate(double dx, double dy) {
+        matrix.setTransform(
+            matrix.getScaleX(), matrix.getShearY(),
+            matrix.getShearX(), matrix.getScaleY(),
+            matrix.getTranslateX() + dx, matrix.getTranslateY() + dy);
+    }
+
+    /**
+     * Applies a canvas-space transform after the current one.
+     */
+    void concatenate(AffineTransform at) {
+        matrix.preConcatenate(at);
+    }
+
+    /**
+     * Rotates around the canvas position of the center of {@code local}.
+     */
+    void rotate(double degrees, Rectangle2D local) {
+        Point2D c = matrix.transform(new Point2D.Double(local.getCenterX(), local.getCenterY()), null);
+        matrix.preConcatenate(AffineTransform.getRotateInstance(
+            Math.toRadians(degrees), c.getX(), c.getY()));
+    }
+
+    /** @return The rotation angle of the matrix in degrees */
+    double getRotation() {
+        return Math.toDegrees(Math.atan2(matrix.getShearY(), matrix.getScaleX()));
+    }
+
+    /** @return The average scale factor of the matrix */
+    double getScale() {
+        return Math.sqrt(Math.abs(matrix.getDeterminant()));
+    }
+
+    /** @return The canvas length of one local unit along the local x axis */
+    double axisScaleX() {
+        return Math.hypot(matrix.getScaleX(), matrix.getShearY());
+    }
+
+    /** @return The canvas length of one local unit along the local y axis */
+    double axisScaleY() {
+        return Math.hypot(matrix.getShearX(), matrix.getScaleY());
+    }
+
+    /**
+     * Scales along the local axes, keeping the canvas position of a local
+     * point. Rotation, shear and mirroring stay as they are.
+     */
+    void scaleLocal(double sx, double sy, double anchorX, double anchorY) {
+        matrix.translate(anchorX, anchorY);
+        matrix.scale(sx, sy);
+        matrix.translate(-anchorX, -anchorY);
+    }
+
+    /**
+     * Resizes a local box to a canvas size measured along the local axes,
+     * keeping the canvas position of the box's top-left corner. This is the
+     * rule behind {@link DrawableObject#resizeAbsolute}.
+     *
+     * @param local The object's local box
+     * @param newWidth New width along the local x axis, in canvas pixels
+     * @param newHeight New height along the local y axis, in canvas pixels
+     * @param uniform true to scale both axes by the smaller factor
+     */
+    void resizeTo(Rectangle2D local, int newWidth, int newHeight, boolean uniform) {
+        double width = local.getWidth() * axisScaleX();
+        double height = local.getHeight() * axisScaleY();
+        double sx = width > 0 ? Math.max(1, newWidth) / width : 1;
+        double sy = height > 0 ? Math.max(1, newHeight) / height : 1;
+        if (uniform) {
+            // A flat box has no factor of its own along the flat axis
+            double s = width <= 0 ? sy : height <= 0 ? sx : Math.min(sx, sy);
+            sx = s;
+            sy = s;
+        }
+        scaleLocal(sx, sy, local.getX(), local.getY());
+    }
+
+    /**
+     * Returns the canvas bounding box of a local rectangle.
+     */
+    Rectangle bounds(Rectangle2D local) {
+        if (isTranslation()) {
+            Rectangle2D.Double r = new Rectangle2D.Double(
+                local.getX() + matrix.getTranslateX(), local.getY() + matrix.getTranslateY(),
+                local.getWidth(), local.getHeight());
+            return r.getBounds();
+        }
+        return matrix.createTransformedShape(local).getBounds();
+    }
+
+    /**
+     * Maps a canvas point into local space.
+     *
+     * @return The local point, or null if the matrix is degenerate
+     */
+    Point2D toLocal(Point2D p) {
+        if (isTranslation()) {
+            return new Point2D.Double(p.getX() - matrix.getTranslateX(), p.getY() - matrix.getTranslateY());
+        }
+        try {
+            return matrix.inverseTransform(p, null);
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Concatenates the matrix onto a graphics context.
+     *
+     * @return The previous transform of {@code g}, to restore after drawing
+     */
+    AffineTransform begin(Graphics2D g) {
+        AffineTransform saved = g.getTransform();
+        if (!isIdentity()) {
+            g.transform(matrix);
+        }
+        return saved;
+    }
+}
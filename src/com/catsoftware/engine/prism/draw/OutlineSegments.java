@@ -0,0 +1,74 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+
+/**
+ * An outline flattened into straight segments, for measuring how far a
+ * point is from the drawn edge of a shape. Curves are split until they
+ * are within {@link #FLATNESS} of the true outline.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+final class OutlineSegments {
+
+    /** Flatness used when turning curved outlines into segments */
+    static final double FLATNESS = 0.5;
+
+    // x1, y1, x2, y2 per segment
+    private final float[] seg;
+
+    /**
+     * Flattens an outline.
+     *
+     * @param shape The outline
+     */
+    OutlineSegments(Shape shape) {
+        float[] s = new float[64];
+        int n = 0;
+        float[] c = new float[6];
+        float startX = 0, startY = 0, lastX = 0, lastY = 0;
+        for (PathIterator it = shape.getPathIterator(null, FLATNESS); !it.isDone(); it.next()) {
+            int kind = it.currentSegment(c);
+            if (kind == PathIterator.SEG_MOVETO) {
+                startX = lastX = c[0];
+                startY = lastY = c[1];
+                continue;
+            }
+            float x = kind == PathIterator.SEG_CLOSE ? startX : c[0];
+            float y = kind == PathIterator.SEG_CLOSE ? startY : c[1];
+            if (n + 4 > s.length) s = Arrays.copyOf(s, s.length * 2);
+            s[n++] = lastX;
+            s[n++] = lastY;
+            s[n++] = x;
+            s[n++] = y;
+            lastX = x;
+            lastY = y;
+        }
+        seg = Arrays.copyOf(s, n);
+    }
+
+    /**
+     * Returns the distance from a point to the nearest segment.
+     *
+     * @param px X coordinate
+     * @param py Y coordinate
+     * @return The distance, or {@link Double#MAX_VALUE} for an empty outline
+     */
+    double distance(double px, double py) {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < seg.length; i += 4) {
+            double d = Line2D.ptSegDistSq(seg[i], seg[i + 1], seg[i + 2], seg[i + 3], px, py);
+            if (d < best) best = d;
+        }
+        return best == Double.MAX_VALUE ? best : Math.sqrt(best);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+
+/**
+ * A compound vector path, such as the result of combining objects with
+ * boolean path operations. The path can hold several sub-paths and holes,
+ * and is filled with the even-odd or non-zero rule it was built with.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class PathObject implements DrawableObject, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Path2D.Double path;
+    private Color fillColor;
+    private Color color;
+    private int strokeSize;
+    private float alpha = 1.0f;
+    private ObjectTransform transform = new ObjectTransform();
+
+    // Flattened outline for hit-testing, rebuilt on demand
+    private transient OutlineSegments outlineSegments;
+
+    /**
+     * Creates a new path object.
+     *
+     * @param shape The outline, in canvas coordinates
+     * @param fillColor The fill color (null for no fill)
+     * @param color The outline color
+     * @param strokeSize The outline width (0 for no outline)
+     * @param alpha The opacity level (0.0 - 1.0)
+     */
+    public PathObject(Shape shape, Color fillColor, Color color, int strokeSize, float alpha) {
+        this.path = new Path2D.Double(shape);
+        this.fillColor = fillColor;
+        this.color = color;
+        this.strokeSize = strokeSize;
+        this.alpha = alpha;
+    }
+
+    @Override
+    public void draw(Graphics2D g) {
+        // Save original composite
+        Composite originalComposite = g.getComposite();
+
+        // Apply alpha
+        if (alpha < 1.0f) {
+            g.setComposite(RenderState.composite(alpha));
+        }
+
+        // Draw in local space
+        AffineTransform original = transform.begin(g);
+
+        if (fillColor != null) {
+            g.setColor(fillColor);
+            g.fill(path);
+        }
+        if (strokeSize > 0 && color != null) {
+            g.setColor(color);
+            g.setStroke(RenderState.roundStroke(strokeSize));
+            g.draw(path);
+        }
+
+        // Restore transform and composite
+        g.setTransform(original);
+        g.setComposite(originalComposite);
+    }
+
+    @Override
+    public boolean contains(Point p) {
+        return hitDistance(p) >= 0;
+    }
+
+    @Override
+    public double hitDistance(Point p) {
+        return hitDistance(p, HIT_TOLERANCE);
+    }
+
+    /**
+     * Measures how close a point is to this path.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return 0 inside a filled path, otherwise the distance to the outline
+     *         in canvas pixels; -1 if the point misses
+     */
+    @Override
+    public double hitDistance(Point2D p, double tolerance) {
+        double slack = strokeSize / 2.0 + tolerance;
+
+        // Bounding box pre-reject
+        Rectangle box = getBounds();
+        box.grow((int) Math.ceil(slack), (int) Math.ceil(slack));
+        if (!box.contains(p)) return -1;
+
+        Point2D local = transform.toLocal(p);
+        if (local == null) return -1;
+
+        double scale = transform.getScale();
+        if (scale <= 0) return -1;
+
+        if (fillColor != null && path.contains(local)) return 0;
+
+        if (outlineSegments == null) {
+            outlineSegments = new OutlineSegments(path);
+        }
+        double distance = outlineSegments.distance(local.getX(), local.getY()) * scale;
+        return distance <= slack ? distance : -1;
+    }
+
+    @Override
+    public void moveBy(int dx, int dy) {
+        transform.translate(dx, dy);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return transform.bounds(path.getBounds2D());
+    }
+
+    @Override
+    public Shape toShape() {
+        return transform.matrix().createTransformedShape(path);
+    }
+
+    /**
+     * Returns the path in local space.
+     *
+     * @return A copy of the path
+     */
+    public Path2D getPath() {
+        return new Path2D.Double(path);
+    }
+
+    @Override
+    public void resize(double scaleX, double scaleY) {
+        Rectangle2D local = path.getBounds2D();
+        transform.scaleLocal(scaleX, scaleY, local.getX(), local.getY());
+    }
+
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
+    }
+
+    @Override
+    public void resizeAbsolute(int newWidth, int newHeight) {
+        transform.resizeTo(path.getBounds2D(), newWidth, newHeight, false);
+    }
+
+    @Override
+    public void fill(Graphics2D g, Color fillColor) {
+        this.fillColor = fillColor;
+    }
+
+    /**
+     * Sets the fill color.
+     *
+     * @param fillColor The fill color, or null for no fill
+     */
+    public void setFillColor(Color fillColor) {
+        this.fillColor = fillColor;
+    }
+
+    /** @return The fill color, or null if not filled */
+    public Color getFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * Sets the outline color.
+     *
+     * @param color The new outline color
+     */
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    /** @return The outline color */
+    public Color getColor() {
+        return color;
+    }
+
+    /**
+     * Sets the outline width.
+     *
+     * @param strokeSize The width (0 for no outline)
+     */
+    public void setStrokeSize(int strokeSize) {
+        this.strokeSize = strokeSize;
+    }
+
+    /** @return The outline width */
+    public int getStrokeSize() {
+        return strokeSize;
+    }
+
+    /**
+     * Sets the opacity level.
+     *
+     * @param alpha Value between 0.1 and 1.0
+     */
+    public void setAlpha(float alpha) {
+        this.alpha = Math.max(0.1f, Math.min(1.0f, alpha));
+    }
+
+    /** @return The current opacity level */
+    public float getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setRotation(double degrees) {
+        rotate(degrees - getRotation());
+    }
+
+    @Override
+    public double getRotation() {
+        return transform.getRotation();
+    }
+
+    @Override
+    public void rotate(double delta) {
+        transform.rotate(delta, path.getBounds2D());
+    }
+
+    /**
+     * Sets a gradient (not supported for paths - falls back to solid fill).
+     */
+    @Override
+    public void setGradient(Color color1, Color color2, boolean horizontal) {
+        this.fillColor = color1;
+    }
+
+    @Override
+    public boolean hasGradient() {
+        return false;
+    }
+
+    @Override
+    public void removeGradient() {
+        // Nothing to remove
+    }
+}
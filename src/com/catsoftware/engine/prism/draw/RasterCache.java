@@ -0,0 +1,116 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pre-rendered object rasters shared by all documents, bounded by their
+ * total size. When a new raster would go over {@link #MAX_BYTES}, the least
+ * recently drawn ones are dropped and their objects paint normally until
+ * they render a new one.
+ *
+ * <p>Objects look their rasters up with key objects of their own, so the
+ * cache never holds the objects themselves. An object drawn with several
+ * transforms at once, such as on screen and in an export preview, keeps
+ * one raster per transform.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+final class RasterCache {
+
+    /** Total size of the cached rasters, in bytes */
+    static final long MAX_BYTES = 64L << 20;
+
+    private static final Map<Object, Entry> rasters = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes;
+
+    private RasterCache() {
+    }
+
+    /**
+     * Returns a cached raster and marks it as recently used.
+     *
+     * @param key The raster's key
+     * @return The raster, or null if there is none or it was dropped
+     */
+    static synchronized Entry get(Object key) {
+        return rasters.get(key);
+    }
+
+    /**
+     * Caches a raster, replacing any other under the same key. Rasters
+     * larger than the whole budget are not kept.
+     *
+     * @param key The raster's key
+     * @param raster The raster
+     */
+    static synchronized void put(Object key, Entry raster) {
+        remove(key);
+        long size = raster.size();
+        if (size > MAX_BYTES) return;
+
+        Iterator<Entry> it = rasters.values().iterator();
+        while (bytes + size > MAX_BYTES && it.hasNext()) {
+            bytes -= it.next().size();
+            it.remove();
+        }
+        rasters.put(key, raster);
+        bytes += size;
+    }
+
+    /**
+     * Drops a raster, if cached.
+     *
+     * @param key The raster's key (may be null)
+     */
+    static synchronized void remove(Object key) {
+        if (key == null) return;
+        Entry old = rasters.remove(key);
+        if (old != null) {
+            bytes -= old.size();
+        }
+    }
+
+    /** @return The total size of the cached rasters, in bytes */
+    static synchronized long size() {
+        return bytes;
+    }
+
+    /**
+     * A raster and where it was rendered. Never changed once created, so it
+     * can be drawn while other threads replace it.
+     */
+    static final class Entry {
+
+        /** The image (TYPE_INT_*, 4 bytes per pixel) */
+        final BufferedImage image;
+
+        /** Device pixels the image covers */
+        final Rectangle area;
+
+        /** Device translation the image was rendered with */
+        final double translateX;
+        final double translateY;
+
+        Entry(BufferedImage image, Rectangle area, AffineTransform device) {
+            this.image = image;
+            this.area = new Rectangle(area);
+            this.translateX = device.getTranslateX();
+            this.translateY = device.getTranslateY();
+        }
+
+        long size() {
+            return 4L * image.getWidth() * image.getHeight();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+
+/**
+ * Shared, immutable drawing state for the objects' draw methods.
+ * Strokes, composites and colors are created once per distinct value and
+ * handed out again on later calls, so drawing a frame does not allocate
+ * a new stroke or composite for every object.
+ *
+ * <p>Lookups do not allocate or lock once a value is cached: each table is
+ * immutable and published through a volatile field, and only a miss
+ * copies it under a lock. Each table holds a bounded number of values and
+ * is emptied when it fills up, which only happens with continuously
+ * changing values such as zoom-dependent widths.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class RenderState {
+
+    // Distinct values kept per table before it is emptied; kept small
+    // because every miss copies the table
+    private static final int MAX_ENTRIES = 256;
+
+    private static final Table<BasicStroke> STROKES = new Table<>();
+    private static final Table<AlphaComposite> COMPOSITES = new Table<>();
+    private static final Table<Color> COLORS = new Table<>();
+
+    private RenderState() {
+    }
+
+    // ------------------ Strokes ------------------
+
+    /**
+     * Returns a solid stroke.
+     *
+     * @param width Line width
+     * @param cap One of the {@link BasicStroke} CAP_ constants
+     * @param join One of the {@link BasicStroke} JOIN_ constants
+     * @return The shared stroke
+     */
+    public static BasicStroke stroke(float width, int cap, int join) {
+        long key = ((long) Float.floatToIntBits(width) << 32) | (cap << 8) | join;
+        BasicStroke stroke = STROKES.get(key);
+        if (stroke == null) {
+            stroke = STROKES.add(key, new BasicStroke(width, cap, join));
+        }
+        return stroke;
+    }
+
+    /**
+     * Returns a stroke with round caps and joins, as used for pen strokes
+     * and shape outlines.
+     *
+     * @param width Line width
+     * @return The shared stroke
+     */
+    public static BasicStroke roundStroke(float width) {
+        return stroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    }
+
+    // ------------------ Composites ------------------
+
+    /**
+     * Returns a source-over composite with extra opacity.
+     *
+     * @param alpha Opacity (0.0 - 1.0)
+     * @return The shared composite
+     * @throws IllegalArgumentException If alpha is outside 0.0 - 1.0
+     */
+    public static AlphaComposite composite(float alpha) {
+        if (alpha == 1.0f) {
+            return AlphaComposite.SrcOver;
+        }
+        long key = Float.floatToIntBits(alpha);
+        AlphaComposite composite = COMPOSITES.get(key);
+        if (composite == null) {
+            composite = COMPOSITES.add(key, AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+        }
+        return composite;
+    }
+
+    // ------------------ Colors ------------------
+
+    /**
+     * Returns a color.
+     *
+     * @param argb Alpha, red, green and blue packed as in {@link Color#getRGB()}
+     * @return The shared color
+     */
+    public static Color color(int argb) {
+        long key = argb & 0xFFFFFFFFL;
+        Color color = COLORS.get(key);
+        if (color == null) {
+            color = COLORS.add(key, new Color(argb, true));
+        }
+        return color;
+    }
+
+    /**
+     * Returns an opaque color.
+     *
+     * @param r Red (0 - 255)
+     * @param g Green (0 - 255)
+     * @param b Blue (0 - 255)
+     * @return The shared color
+     */
+    public static Color color(int r, int g, int b) {
+        return color(r, g, b, 255);
+    }
+
+    /**
+     * Returns a color.
+     *
+     * @param r Red (0 - 255)
+     * @param g Green (0 - 255)
+     * @param b Blue (0 - 255)
+     * @param a Alpha (0 - 255)
+     * @return The shared color
+     */
+    public static Color color(int r, int g, int b, int a) {
+        return color(((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF));
+    }
+
+    // ------------------ Table ------------------
+
+    /**
+     * A map from primitive keys to values, so lookups need no boxing.
+     * The entries are never changed once published; adding a value builds
+     * a new set of entries under the table's lock, so readers never lock.
+     */
+    private static final class Table<T> {
+
+        private volatile Entries entries = Entries.EMPTY;
+
+        @SuppressWarnings("unchecked")
+        T get(long key) {
+            return (T) entries.get(key);
+        }
+
+        /**
+         * Adds a value unless another thread added one for the key first.
+         *
+         * @return The value now in the table
+         */
+        @SuppressWarnings("unchecked")
+        synchronized T add(long key, T value) {
+            Entries current = entries;
+            Object known = current.get(key);
+            if (known != null) {
+                return (T) known;
+            }
+            entries = current.with(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * Immutable open-addressing entries, at most half full.
+     */
+    private static final class Entries {
+
+        static final Entries EMPTY = new Entries(16);
+
+        private final long[] keys;
+        private final Object[] values;
+        private int size;
+
+        private Entries(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        Object get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns new entries with one more value, or with only that value
+         * once this holds {@link #MAX_ENTRIES}.
+         */
+        Entries with(long key, Object value) {
+            int count = size < MAX_ENTRIES ? size + 1 : 1;
+            int capacity = 16;
+            while (capacity < count * 2) {
+                capacity <<= 1;
+            }
+            Entries next = new Entries(capacity);
+            if (size < MAX_ENTRIES) {
+                for (int i = 0; i < keys.length; i++) {
+                    if (values[i] != null) {
+                        next.insert(keys[i], values[i]);
+                    }
+                }
+            }
+            next.insert(key, value);
+            return next;
+        }
+
+        private void insert(long key, Object value) {
+            int mask = keys.length - 1;
+            int i = slot(key);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        private int slot(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (keys.length - 1);
+        }
+    }
+}
@@ -21,6 +21,8 @@ import java.io.Serializable;
  * @since Prism B1
  */
 public class ResizeHandle implements Serializable {
+    /** Same as the computed ID of the first format, so older documents still load */
+    private static final long serialVersionUID = 2733385840289571673L;
     
     /**
      * Possible positions for resize handles.
@@ -49,6 +51,12 @@ public class ResizeHandle implements Serializable {
     private Position position;
     private Rectangle bounds;
     private static final int HANDLE_SIZE = 8;
+
+    // Shared by every handle, so drawing a selection allocates no state
+    private static final Color FILL_COLOR = RenderState.color(0, 120, 255);
+    private static final Color HIGHLIGHT_COLOR = RenderState.color(200, 230, 255);
+    private static final BasicStroke BORDER_STROKE =
+        RenderState.stroke(1.5f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
     
     /**
      * Creates a new resize handle.
@@ -117,16 +125,16 @@ public class ResizeHandle implements Serializable {
      */
     public void draw(Graphics2D g) {
         // Fill with blue
-        g.setColor(new Color(0, 120, 255));
+        g.setColor(FILL_COLOR);
         g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
         
         // Draw white border
         g.setColor(Color.WHITE);
-        g.setStroke(new BasicStroke(1.5f));
+        g.setStroke(BORDER_STROKE);
         g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
         
         // Draw inner highlight for better visibility
-        g.setColor(new Color(200, 230, 255));
+        g.setColor(HIGHLIGHT_COLOR);
         g.drawRect(bounds.x + 1, bounds.y + 1, bounds.width - 2, bounds.height - 2);
     }
     
@@ -146,6 +154,16 @@ public class ResizeHandle implements Serializable {
      * @return The cursor to display
      */
     public Cursor getCursor() {
+        return getCursor(position);
+    }
+
+    /**
+     * Returns the appropriate cursor for a handle position.
+     *
+     * @param position The handle position
+     * @return The cursor to display
+     */
+    public static Cursor getCursor(Position position) {
         switch (position) {
             case TOP_LEFT: return Cursor.getPredefinedCursor(Cursor.NW_RESIZE_CURSOR);
             case TOP_RIGHT: return Cursor.getPredefinedCursor(Cursor.NE_RESIZE_CURSOR);
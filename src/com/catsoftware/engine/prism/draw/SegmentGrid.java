@@ -0,0 +1,239 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Point;
+import java.awt.geom.Line2D;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid over the segments of a polyline, for hit-testing long
+ * strokes without walking every point. Segment {@code i} joins point
+ * {@code i} and point {@code i + 1}. Each cell lists the segments whose
+ * bounding box touches it, stored as one flat array (cell start offsets
+ * plus segment indices) so the grid is cheap to build and to keep.
+ *
+ * <p>The grid is immutable once built and safe to query from several
+ * threads.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+final class SegmentGrid {
+
+    private static final int MAX_CELLS_PER_AXIS = 512;
+
+    private final float[] coords;
+    private final int segments;
+    private final float originX;
+    private final float originY;
+    private final float cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellItems;
+
+    /**
+     * Builds the grid for a list of points.
+     *
+     * @param points The polyline points, in local space
+     */
+    SegmentGrid(List<Point> points) {
+        int n = points.size();
+        coords = new float[n * 2];
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Point p = points.get(i);
+            coords[i * 2] = p.x;
+            coords[i * 2 + 1] = p.y;
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+        }
+        segments = Math.max(0, n - 1);
+        originX = n > 0 ? minX : 0;
+        originY = n > 0 ? minY : 0;
+
+        // Aim for about one cell per segment
+        float w = n > 0 ? maxX - minX + 1 : 1;
+        float h = n > 0 ? maxY - minY + 1 : 1;
+        float cell = (float) Math.sqrt(w * h / Math.max(1, segments));
+        cell = Math.max(cell, Math.max(w, h) / MAX_CELLS_PER_AXIS);
+        cellSize = Math.max(1, cell);
+        cols = Math.max(1, (int) (w / cellSize) + 1);
+        rows = Math.max(1, (int) (h / cellSize) + 1);
+
+        // Count, then fill - two passes keep everything in flat arrays
+        cellStart = new int[cols * rows + 1];
+        for (int s = 0; s < segments; s++) {
+            int c0 = col(segMinX(s)), c1 = col(segMaxX(s));
+            int r0 = row(segMinY(s)), r1 = row(segMaxY(s));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < cellStart.length; i++) {
+            cellStart[i] += cellStart[i - 1];
+        }
+        cellItems = new int[cellStart[cellStart.length - 1]];
+        int[] fill = new int[cols * rows];
+        for (int s = 0; s < segments; s++) {
+            int c0 = col(segMinX(s)), c1 = col(segMaxX(s));
+            int r0 = row(segMinY(s)), r1 = row(segMaxY(s));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cellIndex = r * cols + c;
+                    cellItems[cellStart[cellIndex] + fill[cellIndex]++] = s;
+                }
+            }
+        }
+    }
+
+    /** @return The number of points the grid was built from */
+    int getPointCount() {
+        return coords.length / 2;
+    }
+
+    /** @return The number of segments */
+    int getSegmentCount() {
+        return segments;
+    }
+
+    /**
+     * Returns the distance from a point to the nearest segment, looking only
+     * at cells within {@code radius} of the point.
+     *
+     * @param x Local X
+     * @param y Local Y
+     * @param radius The search radius
+     * @return The distance, or {@link Double#MAX_VALUE} if no segment is that close
+     */
+    double nearestDistance(double x, double y, double radius) {
+        if (segments == 0) {
+            if (coords.length == 0) return Double.MAX_VALUE;
+            double d = Math.hypot(coords[0] - x, coords[1] - y);
+            return d <= radius ? d : Double.MAX_VALUE;
+        }
+        int c0 = col(x - radius), c1 = col(x + radius);
+        int r0 = row(y - radius), r1 = row(y + radius);
+        double best = radius * radius;
+        boolean found = false;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cellIndex = r * cols + c;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int i = cellItems[k] * 2;
+                    double d = Line2D.ptSegDistSq(
+                        coords[i], coords[i + 1], coords[i + 2], coords[i + 3], x, y);
+                    if (d <= best) {
+                        best = d;
+                        found = true;
+                    }
+                }
+            }
+        }
+        return found ? Math.sqrt(best) : Double.MAX_VALUE;
+    }
+
+    /**
+     * Calls {@code action} once for each segment whose bounding box
+     * intersects the given local rectangle.
+     *
+     * @param x Left edge
+     * @param y Top edge
+     * @param w Width
+     * @param h Height
+     * @param action Receives segment indices
+     */
+    void forEachSegment(double x, double y, double w, double h, IntConsumer action) {
+        int c0 = col(x), c1 = col(x + w);
+        int r0 = row(y), r1 = row(y + h);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cellIndex = r * cols + c;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int s = cellItems[k];
+                    // Report each segment only from the first cell it shares with the query
+                    if (c != Math.max(c0, col(segMinX(s))) || r != Math.max(r0, row(segMinY(s)))) {
+                        continue;
+                    }
+                    if (segMaxX(s) < x || segMinX(s) > x + w || segMaxY(s) < y || segMinY(s) > y + h) {
+                        continue;
+                    }
+                    action.accept(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a point is inside the polygon formed by the points and
+     * the closing edge back to the first point (even-odd rule). Only the
+     * cells along the ray to the right of the point are visited.
+     *
+     * @param x Local X
+     * @param y Local Y
+     * @return true if inside
+     */
+    boolean polygonContains(double x, double y) {
+        int n = coords.length / 2;
+        if (n < 3) return false;
+        boolean inside = false;
+
+        int r = row(y);
+        int c0 = col(x);
+        if (y >= originY && y <= originY + rows * cellSize) {
+            for (int c = c0; c < cols; c++) {
+                int cellIndex = r * cols + c;
+                for (int k = cellStart[cellIndex]; k < cellStart[cellIndex + 1]; k++) {
+                    int s = cellItems[k];
+                    // Count each segment once, in the first ray cell it touches
+                    if (c != Math.max(c0, col(segMinX(s)))) continue;
+                    int i = s * 2;
+                    if (crosses(coords[i], coords[i + 1], coords[i + 2], coords[i + 3], x, y)) {
+                        inside = !inside;
+                    }
+                }
+            }
+        }
+
+        // Closing edge, which is not part of the polyline
+        int last = (n - 1) * 2;
+        if (crosses(coords[last], coords[last + 1], coords[0], coords[1], x, y)) {
+            inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     * Ray casting test for one edge, in floating point so that edges with
+     * a small vertical extent are handled correctly.
+     */
+    static boolean crosses(double x1, double y1, double x2, double y2, double x, double y) {
+        return ((y1 > y) != (y2 > y))
+            && (x < (x2 - x1) * (y - y1) / (y2 - y1) + x1);
+    }
+
+    private float segMinX(int s) { return Math.min(coords[s * 2], coords[s * 2 + 2]); }
+    private float segMaxX(int s) { return Math.max(coords[s * 2], coords[s * 2 + 2]); }
+    private float segMinY(int s) { return Math.min(coords[s * 2 + 1], coords[s * 2 + 3]); }
+    private float segMaxY(int s) { return Math.max(coords[s * 2 + 1], coords[s * 2 + 3]); }
+
+    private int col(double x) {
+        int c = (int) Math.floor((x - originX) / cellSize);
+        return Math.max(0, Math.min(cols - 1, c));
+    }
+
+    private int row(double y) {
+        int r = (int) Math.floor((y - originY) / cellSize);
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+}
@@ -5,28 +5,41 @@
 package com.catsoftware.engine.prism.draw;
 
 import com.catsoftware.engine.prism.shapes.ShapeType;
-import java.awt.AlphaComposite;
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Composite;
-import java.awt.GradientPaint;
 import java.awt.Graphics2D;
 import java.awt.Paint;
 import java.awt.Point;
+import java.awt.Polygon;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
 import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
 import java.io.Serializable;
 
 /**
  * A vector shape object that can be drawn on the canvas.
  * Supports multiple shape types, fills, gradients, rotation, and opacity.
+ * The shape box is kept in local space and placed by the object's transform.
  *
  * @author lynxjr
  * @version 1.0.00
  * @since Prism B1
  */
 public class ShapeObject implements DrawableObject, Serializable {
+    /** Same as the computed ID of the first format, so older documents still load */
+    private static final long serialVersionUID = -5914146995144053367L;
+
+    /** Unchanged frames before a gradient fill is drawn from a cached raster */
+    private static final int RASTER_AFTER_FRAMES = 2;
+
+    /** Largest gradient raster, in device pixels */
+    private static final int RASTER_MAX_PIXELS = 1 << 20;
+    
     private ShapeType type;
     private Rectangle bounds;
     private Color color;
@@ -34,11 +47,35 @@ public class ShapeObject implements DrawableObject, Serializable {
     private boolean filled = false;
     private Color fillColor;
     private float alpha = 1.0f;
-    private double rotation = 0;
+    private ObjectTransform transform = new ObjectTransform();
+    
+    /** Rotation slot of files saved before the transform model, only set while reading them */
+    private double rotation;
     private boolean useGradient = false;
     public Color gradientColor1 = Color.WHITE;
     public Color gradientColor2 = Color.BLACK;
     public boolean gradientHorizontal = true;
+    private GradientFill gradient;
+    
+    // Local-space outline and its flattened segments, rebuilt on demand
+    private transient Shape outline;
+    private transient OutlineSegments outlineSegments;
+
+    // Two-color fields the gradient was last built from (they are public)
+    private transient Color syncedColor1;
+    private transient Color syncedColor2;
+    private transient boolean syncedHorizontal;
+
+    // Gradient paint for the current box and gradient
+    private transient Paint gradientPaint;
+    private transient GradientFill paintFill;
+    private transient Rectangle paintBox;
+
+    // Gradient fill pre-rendered in device pixels, reused while nothing changes.
+    // The rasters are held by the shared RasterCache; the state is replaced
+    // as a whole, so draws on other threads never see it half updated
+    private transient Object rasterOwner;
+    private transient volatile FillState fillState;
 
     /**
      * Creates a new shape object.
@@ -65,32 +102,20 @@ public class ShapeObject implements DrawableObject, Serializable {
         
         // Apply alpha if needed
         if (alpha < 1.0f) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+            g.setComposite(RenderState.composite(alpha));
         }
         
-        // Save transform for rotation
-        AffineTransform original = g.getTransform();
-        Rectangle bounds = getBounds();
-        g.rotate(Math.toRadians(rotation), bounds.getCenterX(), bounds.getCenterY());
+        // Draw in local space
+        AffineTransform original = transform.begin(g);
         
         // Draw fill
         if (filled) {
             if (useGradient) {
                 Paint originalPaint = g.getPaint();
-                GradientPaint gradient;
-                if (gradientHorizontal) {
-                    gradient = new GradientPaint(
-                        bounds.x, bounds.y, gradientColor1,
-                        bounds.x + bounds.width, bounds.y, gradientColor2
-                    );
-                } else {
-                    gradient = new GradientPaint(
-                        bounds.x, bounds.y, gradientColor1,
-                        bounds.x, bounds.y + bounds.height, gradientColor2
-                    );
+                if (!drawFillRaster(g)) {
+                    g.setPaint(getGradientPaint());
+                    drawShape(g, true);
                 }
-                g.setPaint(gradient);
-                drawShape(g, true);
                 g.setPaint(originalPaint);
             } else {
                 g.setColor(fillColor);
@@ -101,7 +126,7 @@ public class ShapeObject implements DrawableObject, Serializable {
         // Draw stroke only if strokeSize > 0
         if (strokeSize > 0) {
             g.setColor(color);
-            g.setStroke(new BasicStroke(strokeSize, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.setStroke(RenderState.roundStroke(strokeSize));
             drawShape(g, false);
         }
         
@@ -117,20 +142,154 @@ public class ShapeObject implements DrawableObject, Serializable {
      * @param fill true for fill, false for outline
      */
     private void drawShape(Graphics2D g, boolean fill) {
+        Shape outline = getOutline();
+        // Lines have no interior, so their fill is drawn as a line
+        if (fill && type != ShapeType.LINE) g.fill(outline);
+        else g.draw(outline);
+    }
+
+    // ------------------ Gradient Cache ------------------
+
+    /**
+     * Returns the gradient in use, following direct changes to the public
+     * two-color fields.
+     */
+    private GradientFill currentGradient() {
+        if (gradient == null || gradientColor1 != syncedColor1 || gradientColor2 != syncedColor2
+                || gradientHorizontal != syncedHorizontal) {
+            gradient = GradientFill.linear(gradientColor1, gradientColor2, gradientHorizontal);
+            syncGradientFields();
+        }
+        return gradient;
+    }
+
+    private void syncGradientFields() {
+        syncedColor1 = gradientColor1;
+        syncedColor2 = gradientColor2;
+        syncedHorizontal = gradientHorizontal;
+    }
+
+    /**
+     * Returns the gradient paint for the shape box, rebuilt only when the
+     * box or the gradient changed.
+     */
+    private Paint getGradientPaint() {
+        GradientFill fill = currentGradient();
+        if (gradientPaint == null || paintFill != fill || !bounds.equals(paintBox)) {
+            gradientPaint = fill.createPaint(bounds);
+            paintFill = fill;
+            paintBox = new Rectangle(bounds);
+        }
+        return gradientPaint;
+    }
+
+    /**
+     * Draws the gradient fill from a raster cached in device pixels.
+     * The raster is only rendered once the shape has been drawn
+     * {@link #RASTER_AFTER_FRAMES} times without changing, so shapes being
+     * edited keep using the paint. Panning by whole pixels reuses it.
+     * Rasters live in the shared {@link RasterCache}, so the memory they
+     * take is bounded however many shapes have one.
+     *
+     * @return false if the fill must be painted normally
+     */
+    private boolean drawFillRaster(Graphics2D g) {
+        if (type == ShapeType.LINE) return false;
+
+        Object owner = rasterOwner;
+        if (owner == null) {
+            owner = new Object();
+            rasterOwner = owner;
+        }
+        AffineTransform device = g.getTransform();
+        GradientFill fill = currentGradient();
+        FillState state = fillState;
+        FillKey key;
+        if (state != null && state.key.matches(owner, fill, bounds, device)) {
+            key = state.key;
+        } else {
+            key = new FillKey(owner, fill, bounds, device);
+            if (state != null && !state.key.sameFill(owner, fill, bounds)) {
+                // The fill changed; rasters drawn with other transforms stay
+                // until the cache drops them
+                RasterCache.remove(state.key);
+            }
+        }
+
+        RasterCache.Entry raster = RasterCache.get(key);
+        if (raster == null) {
+            boolean current = state != null && state.key == key;
+            if (current && state.frames >= RASTER_AFTER_FRAMES) {
+                // Dropped by the cache; wait as for a new raster so shapes
+                // over the budget do not re-render on every frame
+                fillState = new FillState(key, 0);
+                return false;
+            }
+            int frames = current ? state.frames + 1 : 1;
+            fillState = new FillState(key, frames);
+            if (frames < RASTER_AFTER_FRAMES) return false;
+
+            Shape shape = getOutline();
+            Rectangle area = device.createTransformedShape(shape).getBounds();
+            if (area.isEmpty() || (long) area.width * area.height > RASTER_MAX_PIXELS) return false;
+
+            BufferedImage img = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D gi = img.createGraphics();
+            gi.setRenderingHints(g.getRenderingHints());
+            gi.translate(-area.x, -area.y);
+            gi.transform(device);
+            gi.setPaint(getGradientPaint());
+            gi.fill(shape);
+            gi.dispose();
+            raster = new RasterCache.Entry(img, area, device);
+            RasterCache.put(key, raster);
+        }
+
+        int dx = (int) Math.round(device.getTranslateX() - raster.translateX);
+        int dy = (int) Math.round(device.getTranslateY() - raster.translateY);
+        g.setTransform(new AffineTransform());
+        g.drawImage(raster.image, raster.area.x + dx, raster.area.y + dy, null);
+        g.setTransform(device);
+        return true;
+    }
+
+    /**
+     * Returns the outline of this shape in local space.
+     * The outline is cached until the shape box changes.
+     *
+     * @return The outline
+     */
+    public Shape getOutline() {
+        if (outline == null) {
+            outline = buildOutline();
+            outlineSegments = null;
+        }
+        return outline;
+    }
+
+    /**
+     * Drops the cached outline after the shape box changes.
+     */
+    private void invalidateOutline() {
+        outline = null;
+        outlineSegments = null;
+    }
+
+    /**
+     * Builds the outline for the shape type.
+     *
+     * @return The outline
+     */
+    private Shape buildOutline() {
         switch (type) {
             case SQUARE:
-                if (fill) g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
-                else g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
-                break;
+                return new Rectangle(bounds);
                 
             case CIRCLE:
-                if (fill) g.fillOval(bounds.x, bounds.y, bounds.width, bounds.height);
-                else g.drawOval(bounds.x, bounds.y, bounds.width, bounds.height);
-                break;
+                return new Ellipse2D.Float(bounds.x, bounds.y, bounds.width, bounds.height);
                 
             case LINE:
-                g.drawLine(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
-                break;
+                return new Line2D.Float(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
                 
             case TRIANGLE:
                 int[] triX = {
@@ -143,51 +302,43 @@ public class ShapeObject implements DrawableObject, Serializable {
                     bounds.y + bounds.height,
                     bounds.y + bounds.height
                 };
-                if (fill) g.fillPolygon(triX, triY, 3);
-                else g.drawPolygon(triX, triY, 3);
-                break;
+                return new Polygon(triX, triY, 3);
                 
             case HEART:
-                drawHeart(g, fill);
-                break;
+                return heartOutline();
                 
             case STAR:
-                drawStar(g, fill, 5);
-                break;
+                return starOutline(5);
                 
             case ARROW:
-                drawArrow(g, fill, bounds.x, bounds.y, bounds.width, bounds.height);
-                break;
+                return arrowOutline(bounds.x, bounds.y, bounds.width, bounds.height);
                 
             case PENTAGON:
-                drawRegularPolygon(g, fill, 5);
-                break;
+                return regularPolygonOutline(5);
                 
             case HEXAGON:
-                drawRegularPolygon(g, fill, 6);
-                break;
+                return regularPolygonOutline(6);
                 
             case OCTAGON:
-                drawRegularPolygon(g, fill, 8);
-                break;
+                return regularPolygonOutline(8);
                 
             case CROSS:
-                drawCross(g, fill);
-                break;
+                return crossOutline();
                 
             case DIAMOND:
-                drawDiamond(g, fill);
-                break;
+                return diamondOutline();
+                
+            default:
+                return new Rectangle(bounds);
         }
     }
 
     /**
-     * Draws a heart shape using parametric equations.
+     * Builds a heart outline using parametric equations.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
+     * @return The heart polygon
      */
-    private void drawHeart(Graphics2D g, boolean fill) {
+    private Polygon heartOutline() {
         int x = bounds.x;
         int y = bounds.y;
         int w = bounds.width;
@@ -213,18 +364,16 @@ public class ShapeObject implements DrawableObject, Serializable {
             yPoints[i] = centerY - (int)(yt * scale);
         }
         
-        if (fill) g.fillPolygon(xPoints, yPoints, points);
-        else g.drawPolygon(xPoints, yPoints, points);
+        return new Polygon(xPoints, yPoints, points);
     }
 
     /**
-     * Draws a star shape.
+     * Builds a star outline.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
      * @param points Number of points (5 for classic star)
+     * @return The star polygon
      */
-    private void drawStar(Graphics2D g, boolean fill, int points) {
+    private Polygon starOutline(int points) {
         int centerX = bounds.x + bounds.width / 2;
         int centerY = bounds.y + bounds.height / 2;
         int outerRadius = Math.min(bounds.width, bounds.height) / 2;
@@ -243,22 +392,21 @@ public class ShapeObject implements DrawableObject, Serializable {
             angle += step;
         }
         
-        if (fill) g.fillPolygon(xPoints, yPoints, points * 2);
-        else g.drawPolygon(xPoints, yPoints, points * 2);
+        return new Polygon(xPoints, yPoints, points * 2);
     }
 
     /**
-     * Draws an arrow shape.
+     * Builds an arrow outline.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
      * @param x Top-left X coordinate
      * @param y Top-left Y coordinate
      * @param w Width
      * @param h Height
+     * @return The arrow path
      */
-    private void drawArrow(Graphics2D g, boolean fill, int x, int y, int w, int h) {
+    private Path2D arrowOutline(int x, int y, int w, int h) {
         boolean horizontal = w > h;
+        Path2D.Float arrow = new Path2D.Float();
         
         if (horizontal) {
             int shaftLength = w - Math.min(40, w/3);
@@ -266,8 +414,6 @@ public class ShapeObject implements DrawableObject, Serializable {
             int shaftWidth = Math.max(4, h/4);
             int arrowY = y + h/2;
             
-            Path2D.Float arrow = new Path2D.Float();
-            
             arrow.moveTo(x + w, arrowY);
             arrow.lineTo(x + w - headSize, arrowY - headSize/2);
             arrow.lineTo(x + shaftLength, arrowY - shaftWidth/2);
@@ -277,17 +423,12 @@ public class ShapeObject implements DrawableObject, Serializable {
             arrow.lineTo(x + w - headSize, arrowY + headSize/2);
             arrow.closePath();
             
-            if (fill) g.fill(arrow);
-            else g.draw(arrow);
-            
         } else {
             int shaftHeight = h - Math.min(40, h/3);
             int headSize = Math.min(30, h/4);
             int shaftWidth = Math.max(4, w/4);
             int arrowX = x + w/2;
             
-            Path2D.Float arrow = new Path2D.Float();
-            
             arrow.moveTo(arrowX, y + h);
             arrow.lineTo(arrowX + headSize/2, y + h - headSize);
             arrow.lineTo(arrowX + shaftWidth/2, y + shaftHeight);
@@ -296,20 +437,17 @@ public class ShapeObject implements DrawableObject, Serializable {
             arrow.lineTo(arrowX - shaftWidth/2, y + shaftHeight);
             arrow.lineTo(arrowX - headSize/2, y + h - headSize);
             arrow.closePath();
-            
-            if (fill) g.fill(arrow);
-            else g.draw(arrow);
         }
+        return arrow;
     }
 
     /**
-     * Draws a regular polygon.
+     * Builds a regular polygon outline.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
      * @param sides Number of sides
+     * @return The polygon
      */
-    private void drawRegularPolygon(Graphics2D g, boolean fill, int sides) {
+    private Polygon regularPolygonOutline(int sides) {
         int centerX = bounds.x + bounds.width / 2;
         int centerY = bounds.y + bounds.height / 2;
         int radius = Math.min(bounds.width, bounds.height) / 2;
@@ -326,17 +464,16 @@ public class ShapeObject implements DrawableObject, Serializable {
             angle += step;
         }
         
-        if (fill) g.fillPolygon(xPoints, yPoints, sides);
-        else g.drawPolygon(xPoints, yPoints, sides);
+        return new Polygon(xPoints, yPoints, sides);
     }
 
     /**
-     * Draws a cross/plus sign shape.
+     * Builds a cross/plus sign outline from its two bars.
+     * Both bars wind the same way, so filling gives their union.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
+     * @return The cross path
      */
-    private void drawCross(Graphics2D g, boolean fill) {
+    private Path2D crossOutline() {
         int x = bounds.x;
         int y = bounds.y;
         int w = bounds.width;
@@ -347,22 +484,18 @@ public class ShapeObject implements DrawableObject, Serializable {
         int centerX = x + w/2;
         int centerY = y + h/2;
         
-        if (fill) {
-            g.fillRect(x, centerY - armHeight/2, w, armHeight);
-            g.fillRect(centerX - armWidth/2, y, armWidth, h);
-        } else {
-            g.drawRect(x, centerY - armHeight/2, w, armHeight);
-            g.drawRect(centerX - armWidth/2, y, armWidth, h);
-        }
+        Path2D.Float cross = new Path2D.Float();
+        cross.append(new Rectangle(x, centerY - armHeight/2, w, armHeight), false);
+        cross.append(new Rectangle(centerX - armWidth/2, y, armWidth, h), false);
+        return cross;
     }
 
     /**
-     * Draws a diamond shape.
+     * Builds a diamond outline.
      *
-     * @param g The graphics context
-     * @param fill true for fill, false for outline
+     * @return The diamond polygon
      */
-    private void drawDiamond(Graphics2D g, boolean fill) {
+    private Polygon diamondOutline() {
         int[] xPoints = {
             bounds.x + bounds.width / 2,
             bounds.x + bounds.width,
@@ -376,56 +509,121 @@ public class ShapeObject implements DrawableObject, Serializable {
             bounds.y + bounds.height / 2
         };
         
-        if (fill) g.fillPolygon(xPoints, yPoints, 4);
-        else g.drawPolygon(xPoints, yPoints, 4);
+        return new Polygon(xPoints, yPoints, 4);
     }
 
     @Override
     public boolean contains(Point p) {
-        Rectangle hitBounds = new Rectangle(
-            bounds.x - strokeSize,
-            bounds.y - strokeSize,
-            bounds.width + strokeSize * 2,
-            bounds.height + strokeSize * 2
-        );
-        return hitBounds.contains(p);
+        return hitDistance(p) >= 0;
     }
 
     @Override
-    public void moveBy(int dx, int dy) {
-        bounds.translate(dx, dy);
+    public double hitDistance(Point p) {
+        return hitDistance(p, HIT_TOLERANCE);
     }
-    
+
+    /**
+     * Measures how close a point is to this shape, for picking the nearest
+     * of several overlapping objects. The point is rejected early if it is
+     * outside the bounding box, then mapped into local space and tested
+     * against the outline with half the stroke width plus
+     * {@code tolerance} of slack.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return 0 inside a filled shape, otherwise the distance to the outline
+     *         in canvas pixels; -1 if the point misses
+     */
     @Override
-    public Rectangle getBounds() {
-        if (rotation == 0) {
-            return new Rectangle(bounds);
-        }
+    public double hitDistance(Point2D p, double tolerance) {
+        double slack = strokeSize / 2.0 + tolerance;
+        
+        // Bounding box pre-reject
+        Rectangle box = getBounds();
+        box.grow((int) Math.ceil(slack), (int) Math.ceil(slack));
+        if (!box.contains(p)) return -1;
         
-        double rad = Math.toRadians(rotation);
-        double cos = Math.abs(Math.cos(rad));
-        double sin = Math.abs(Math.sin(rad));
+        Point2D local = transform.toLocal(p);
+        if (local == null) return -1;
         
-        int newWidth = (int)(bounds.width * cos + bounds.height * sin);
-        int newHeight = (int)(bounds.width * sin + bounds.height * cos);
+        double scale = transform.getScale();
+        if (scale <= 0) return -1;
         
-        int newX = bounds.x + (bounds.width - newWidth) / 2;
-        int newY = bounds.y + (bounds.height - newHeight) / 2;
+        Shape shape = getOutline();
+        boolean inside = type != ShapeType.LINE && shape.contains(local);
+        if (inside && filled) return 0;
         
-        return new Rectangle(newX, newY, newWidth, newHeight);
+        double distance = getOutlineSegments().distance(local.getX(), local.getY()) * scale;
+        if (inside) return distance;
+        return distance <= slack ? distance : -1;
+    }
+
+    /**
+     * Returns the outline flattened into segments, cached with the outline.
+     *
+     * @return The segments
+     */
+    private OutlineSegments getOutlineSegments() {
+        Shape shape = getOutline();
+        if (outlineSegments == null) {
+            outlineSegments = new OutlineSegments(shape);
+        }
+        return outlineSegments;
+    }
+
+    @Override
+    public void moveBy(int dx, int dy) {
+        transform.translate(dx, dy);
+    }
+    
+    @Override
+    public Rectangle getBounds() {
+        return transform.bounds(bounds);
+    }
+    
+    @Override
+    public Shape toShape() {
+        Shape local = getOutline();
+        if (type == ShapeType.LINE) {
+            // A line covers the area of its stroke
+            local = RenderState.roundStroke(Math.max(1, strokeSize)).createStrokedShape(local);
+        }
+        return transform.matrix().createTransformedShape(local);
     }
     
     @Override
     public void resize(double scaleX, double scaleY) {
-        int newWidth = (int)(bounds.width * scaleX);
-        int newHeight = (int)(bounds.height * scaleY);
-        resizeAbsolute(newWidth, newHeight);
+        bounds.width = Math.max(5, (int) Math.round(bounds.width * scaleX));
+        bounds.height = Math.max(5, (int) Math.round(bounds.height * scaleY));
+        invalidateOutline();
+    }
+    
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+    
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
     }
     
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
+    }
+    
+    /**
+     * Resizes the shape to a canvas size measured along its own axes, at
+     * least 5 pixels each way. The shape's box changes in local space with
+     * its top-left corner kept, so that corner stays in place on the canvas
+     * and rotation, shear and mirroring are kept.
+     */
     @Override
     public void resizeAbsolute(int newWidth, int newHeight) {
-        bounds.width = Math.max(5, newWidth);
-        bounds.height = Math.max(5, newHeight);
+        bounds.width = Math.max(1, (int) Math.round(Math.max(5, newWidth) / transform.axisScaleX()));
+        bounds.height = Math.max(1, (int) Math.round(Math.max(5, newHeight) / transform.axisScaleY()));
+        invalidateOutline();
     }
     
     @Override
@@ -533,18 +731,17 @@ public class ShapeObject implements DrawableObject, Serializable {
 
     @Override
     public void setRotation(double degrees) {
-        this.rotation = degrees;
+        rotate(degrees - getRotation());
     }
 
     @Override
     public double getRotation() {
-        return rotation;
+        return transform.getRotation();
     }
 
     @Override
     public void rotate(double delta) {
-        rotation += delta;
-        rotation = rotation % 360;
+        transform.rotate(delta, bounds);
     }
 
     /**
@@ -559,6 +756,32 @@ public class ShapeObject implements DrawableObject, Serializable {
         this.gradientColor1 = color1;
         this.gradientColor2 = color2;
         this.gradientHorizontal = horizontal;
+        this.gradient = GradientFill.linear(color1, color2, horizontal);
+        syncGradientFields();
+    }
+
+    /**
+     * Applies a multi-stop linear or radial gradient fill to this shape.
+     *
+     * @param fill The gradient (null removes the gradient)
+     */
+    public void setGradientFill(GradientFill fill) {
+        if (fill == null) {
+            removeGradient();
+            return;
+        }
+        this.useGradient = true;
+        this.gradient = fill;
+        syncGradientFields();
+    }
+
+    /**
+     * Returns the gradient fill of this shape.
+     *
+     * @return The gradient, or null if the shape has no gradient
+     */
+    public GradientFill getGradientFill() {
+        return useGradient ? currentGradient() : null;
     }
 
     /**
@@ -575,6 +798,116 @@ public class ShapeObject implements DrawableObject, Serializable {
      */
     public void removeGradient() {
         this.useGradient = false;
+        gradientPaint = null;
+        FillState state = fillState;
+        if (state != null) {
+            RasterCache.remove(state.key);
+        }
     }
-}
 
+    /**
+     * Custom deserialization that converts objects from older files
+     * to the current model.
+     *
+     * @param in The object input stream
+     * @throws java.io.IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (transform == null) {
+            // Saved before the transform model: geometry is in canvas space
+            transform = new ObjectTransform();
+            if (rotation != 0) {
+                transform.rotate(rotation, bounds);
+            }
+            rotation = 0;
+        }
+        // Older files only carry the two-color fields; currentGradient() converts them
+        if (gradient != null) {
+            syncGradientFields();
+        }
+    }
+
+    // ------------------ Fill rasters ------------------
+
+    /**
+     * Identifies a fill raster: the shape, its gradient and box, and the
+     * device transform up to whole-pixel panning.
+     */
+    private static final class FillKey {
+        final Object owner;
+        final GradientFill fill;
+        final Rectangle box;
+        final double m00, m10, m01, m11;
+        final long fractionX, fractionY;
+
+        FillKey(Object owner, GradientFill fill, Rectangle box, AffineTransform device) {
+            this.owner = owner;
+            this.fill = fill;
+            this.box = new Rectangle(box);
+            this.m00 = device.getScaleX();
+            this.m10 = device.getShearY();
+            this.m01 = device.getShearX();
+            this.m11 = device.getScaleY();
+            this.fractionX = fraction(device.getTranslateX());
+            this.fractionY = fraction(device.getTranslateY());
+        }
+
+        /**
+         * Returns the sub-pixel part of a translation in millionths of a
+         * pixel, so translations a whole number of pixels apart are equal.
+         */
+        private static long fraction(double t) {
+            return Math.round((t - Math.floor(t)) * 1e6) % 1000000;
+        }
+
+        boolean sameFill(Object owner, GradientFill fill, Rectangle box) {
+            return this.owner == owner && this.fill == fill && this.box.equals(box);
+        }
+
+        boolean matches(Object owner, GradientFill fill, Rectangle box, AffineTransform device) {
+            return sameFill(owner, fill, box)
+                    && m00 == device.getScaleX() && m10 == device.getShearY()
+                    && m01 == device.getShearX() && m11 == device.getScaleY()
+                    && fractionX == fraction(device.getTranslateX())
+                    && fractionY == fraction(device.getTranslateY());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FillKey)) return false;
+            FillKey k = (FillKey) o;
+            return sameFill(k.owner, k.fill, k.box)
+                    && m00 == k.m00 && m10 == k.m10 && m01 == k.m01 && m11 == k.m11
+                    && fractionX == k.fractionX && fractionY == k.fractionY;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = System.identityHashCode(owner);
+            h = h * 31 + System.identityHashCode(fill);
+            h = h * 31 + box.hashCode();
+            h = h * 31 + Double.hashCode(m00);
+            h = h * 31 + Double.hashCode(m10);
+            h = h * 31 + Double.hashCode(m01);
+            h = h * 31 + Double.hashCode(m11);
+            h = h * 31 + Long.hashCode(fractionX);
+            return h * 31 + Long.hashCode(fractionY);
+        }
+    }
+
+    /**
+     * The raster the shape was last drawn with and how many draws in a row
+     * used it without a cached raster.
+     */
+    private static final class FillState {
+        final FillKey key;
+        final int frames;
+
+        FillState(FillKey key, int frames) {
+            this.key = key;
+            this.frames = frames;
+        }
+    }
+}
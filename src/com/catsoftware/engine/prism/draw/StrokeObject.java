@@ -4,52 +4,122 @@
  */
 package com.catsoftware.engine.prism.draw;
 
-import java.awt.AlphaComposite;
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A freehand stroke object that can be drawn on the canvas.
  * Supports variable brush size, opacity, rotation, and closed shape filling.
+ * Points are kept in local space; moving, resizing and rotating only update
+ * the object's transform, so interactive edits do not walk the point list.
+ *
+ * <p>A stroke can also carry a width and an opacity for every point, for
+ * example from pen pressure and drawing speed. Such a stroke is drawn as
+ * one filled outline that is built once and reused until the points change,
+ * so a tapered stroke costs a single fill however many points it has.</p>
  *
  * @author lynxjr
  * @version 1.0.00
  * @since Prism B1
  */
 public class StrokeObject implements DrawableObject, Serializable {
+    /** Same as the computed ID of the first format, so older documents still load */
+    private static final long serialVersionUID = 725806717707410748L;
+    
     private List<Point> points;
     private Color color;
     private int size;
     private boolean highlight;
-    private List<Point> originalPoints;
-    private int originalSize;
     private static final boolean DEBUG = true;
     private static int debugId = 0;
     private int id;
     private float alpha = 1.0f;
-    private double rotation = 0;
+    private Color fillColor;
+    private ObjectTransform transform = new ObjectTransform();
+    
+    // Width and opacity at each point, or null when they do not vary
+    private float[] widths;
+    private float[] pointAlphas;
+    
+    /** Rotation slot of files saved before the transform model, only set while reading them */
+    private double rotation;
+    /** Resize anchor of older builds, no longer used */
     private Point fixedAnchor;
     
-    // Store the original bounds min values
-    private int originalMinX;
-    private int originalMinY;
-    private int originalMaxX;
-    private int originalMaxY;
+    // Local-space extents of the points, refreshed when the point count changes
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+    private int extentCount = -1;
+    
+    // Spatial index over the segments, built on the first hit-test
+    private transient SegmentGrid grid;
+    
+    // Closed outline for the fill, built on the first draw
+    private transient Path2D fillPath;
+    private transient int fillPathCount;
+    
+    // Center line of a uniform stroke, built on the first draw
+    private transient Path2D linePath;
+    private transient int linePathCount;
+    
+    // Filled outlines of a variable stroke, one per run of equal opacity
+    private transient Path2D[] outlines;
+    private transient float[] outlineAlphas;
+    private transient int outlineCount;
+    private transient float maxWidth;
+    
+    /** Opacity steps a variable stroke is split into for drawing */
+    private static final int ALPHA_LEVELS = 16;
+    
+    /** Pointer speed in pixels per millisecond at which thinning is strongest */
+    public static final float THINNING_SPEED = 4f;
+    
+    // Weight of the newest sample in the smoothed pointer speed
+    private static final float SPEED_SMOOTHING = 0.3f;
 
     /**
-     * Returns the list of points in this stroke.
+     * Returns the list of points in this stroke, in local space.
+     * Since moves, resizes and rotations only change the stroke's
+     * transform, these are not canvas coordinates once the stroke was
+     * edited. Use {@link #getTransformedPoints} for canvas coordinates,
+     * or {@link #bakeTransform} first to edit the points in canvas space.
+     * Call {@link #pointsChanged} after editing the list in place.
      *
-     * @return The list of points
+     * @return The list of points, in local space
      */
     public List<Point> getPoints() { return points; }
+
+    /**
+     * Returns a copy of the points mapped to canvas coordinates.
+     *
+     * @return The transformed points
+     */
+    public List<Point> getTransformedPoints() {
+        List<Point> result = new ArrayList<>(points.size());
+        for (Point p : points) {
+            result.add(new Point(p));
+        }
+        if (!transform.isIdentity()) {
+            transformPoints(result, transform.matrix());
+        }
+        return result;
+    }
     
     /**
      * Returns the stroke color.
@@ -83,17 +153,15 @@ public class StrokeObject implements DrawableObject, Serializable {
      */
     public StrokeObject(List<Point> pts, Color c, int s, boolean h, float a) {
         id = debugId++;
-        points = new ArrayList<>(pts);
-        originalPoints = new ArrayList<>();
+        points = new ArrayList<>();
         for (Point p : pts) {
-            originalPoints.add(new Point(p));
+            points.add(new Point(p));
         }
         color = c;
         size = s;
-        originalSize = s;
         highlight = h;
         alpha = a;
-        calculateOriginalBounds();
+        calculateExtents();
         
         if (DEBUG) {
             System.out.println("[StrokeObject " + id + "] Created at bounds: " + getBounds());
@@ -101,20 +169,55 @@ public class StrokeObject implements DrawableObject, Serializable {
     }
 
     /**
-     * Calculates the original bounding box of the stroke.
+     * Calculates the local bounding box of the points.
      */
-    private void calculateOriginalBounds() {
-        originalMinX = Integer.MAX_VALUE;
-        originalMinY = Integer.MAX_VALUE;
-        originalMaxX = Integer.MIN_VALUE;
-        originalMaxY = Integer.MIN_VALUE;
+    private void calculateExtents() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
         
-        for (Point p : originalPoints) {
-            originalMinX = Math.min(originalMinX, p.x);
-            originalMinY = Math.min(originalMinY, p.y);
-            originalMaxX = Math.max(originalMaxX, p.x);
-            originalMaxY = Math.max(originalMaxY, p.y);
+        for (Point p : points) {
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+        }
+        extentCount = points.size();
+    }
+
+    /**
+     * Returns the local bounds of the stroke, padded by the brush size.
+     *
+     * @return The local bounding box
+     */
+    private Rectangle getLocalBounds() {
+        if (extentCount != points.size()) {
+            // Points were added through getPoints()
+            calculateExtents();
+        }
+        int pad = (int) Math.ceil(getMaxWidth());
+        return new Rectangle(
+            minX - pad,
+            minY - pad,
+            (maxX - minX) + pad * 2,
+            (maxY - minY) + pad * 2
+        );
+    }
+
+    /**
+     * Returns the widest point of the stroke.
+     *
+     * @return The largest width, or the brush size if the width does not vary
+     */
+    private float getMaxWidth() {
+        if (widths == null) return size;
+        if (maxWidth <= 0) {
+            for (float w : widths) {
+                maxWidth = Math.max(maxWidth, w);
+            }
         }
+        return maxWidth;
     }
 
     @Override
@@ -124,26 +227,38 @@ public class StrokeObject implements DrawableObject, Serializable {
         
         // Apply alpha
         if (alpha < 1.0f) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+            g.setComposite(RenderState.composite(alpha));
         }
         
-        // Save transform for rotation
-        AffineTransform original = g.getTransform();
-        Rectangle bounds = getBounds();
-        g.rotate(Math.toRadians(rotation), bounds.getCenterX(), bounds.getCenterY());
+        // Draw in local space
+        AffineTransform original = transform.begin(g);
         
         // Handle highlight mode
         if (highlight) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.2f * alpha));
+            g.setComposite(RenderState.composite(0.2f * alpha));
         }
         
-        g.setColor(color);
-        g.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        if (fillColor != null && isClosed()) {
+            g.setColor(fillColor);
+            g.fill(getFillPath());
+        }
         
-        for (int i = 1; i < points.size(); i++) {
-            Point a = points.get(i - 1);
-            Point b = points.get(i);
-            g.drawLine(a.x, a.y, b.x, b.y);
+        g.setColor(color);
+        if (hasVariableWidth()) {
+            Composite base = g.getComposite();
+            float baseAlpha = highlight ? 0.2f * alpha : alpha;
+            Path2D[] runs = getOutlines();
+            for (int i = 0; i < runs.length; i++) {
+                if (outlineAlphas[i] < 1.0f) {
+                    g.setComposite(RenderState.composite(baseAlpha * outlineAlphas[i]));
+                }
+                g.fill(runs[i]);
+                g.setComposite(base);
+            }
+        } else if (!points.isEmpty()) {
+            // One path, so joints are not painted twice at partial opacity
+            g.setStroke(RenderState.roundStroke(size));
+            g.draw(getLinePath());
         }
         
         // Restore transform and composite
@@ -153,271 +268,598 @@ public class StrokeObject implements DrawableObject, Serializable {
 
     @Override
     public boolean contains(Point p) {
-        if (points.size() < 3) {
-            // A line or dot can't have an "inside" - check if click is on the stroke
-            for (Point pt : points) {
-                if (pt.distance(p) < size + 2) {
-                    return true;
-                }
-            }
-            return false;
+        return hitDistance(p) >= 0;
+    }
+
+    @Override
+    public double hitDistance(Point p) {
+        return hitDistance(p, HIT_TOLERANCE);
+    }
+
+    /**
+     * Measures how close a point is to the drawn stroke. The point is
+     * rejected early if it is outside the bounding box, then mapped into
+     * local space and tested against the segments near it through the
+     * stroke's segment grid, so long strokes are not scanned point by point.
+     * Closed strokes also count clicks inside them.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return 0 inside a closed stroke, otherwise the distance to the
+     *         stroke's center line in canvas pixels; -1 if the point misses
+     */
+    @Override
+    public double hitDistance(Point2D p, double tolerance) {
+        if (points.isEmpty()) return -1;
+        
+        // Bounding box pre-reject
+        Rectangle box = getBounds();
+        box.grow((int) Math.ceil(tolerance), (int) Math.ceil(tolerance));
+        if (!box.contains(p)) return -1;
+        
+        Point2D local = transform.toLocal(p);
+        if (local == null) return -1;
+        
+        double scale = transform.getScale();
+        if (scale <= 0) return -1;
+        
+        SegmentGrid segments = getSegmentGrid();
+        if (isClosed() && segments.polygonContains(local.getX(), local.getY())) {
+            return 0;
         }
         
-        // Check if the stroke is approximately closed
+        double slack = getMaxWidth() / 2.0 + tolerance / scale;
+        double distance = segments.nearestDistance(local.getX(), local.getY(), slack);
+        return distance != Double.MAX_VALUE ? distance * scale : -1;
+    }
+
+    /**
+     * Checks if the stroke ends close to where it started.
+     *
+     * @return true if the stroke is approximately closed
+     */
+    private boolean isClosed() {
+        if (points.size() < 3) return false;
         Point first = points.get(0);
         Point last = points.get(points.size() - 1);
-        boolean isClosed = first.distance(last) < size * 2;
-        
-        if (!isClosed) {
-            // Open stroke - just check if click is on the stroke line
-            for (Point pt : points) {
-                if (pt.distance(p) < size + 2) {
-                    return true;
-                }
+        return first.distance(last) < size * 2;
+    }
+
+    /**
+     * Returns the segment grid, building it on first use or after the
+     * point count changed.
+     *
+     * @return The grid
+     */
+    SegmentGrid getSegmentGrid() {
+        SegmentGrid g = grid;
+        if (g == null || g.getPointCount() != points.size()) {
+            g = new SegmentGrid(points);
+            grid = g;
+        }
+        return g;
+    }
+
+    /**
+     * Refreshes cached geometry after the points were edited in place
+     * through {@link #getPoints()}.
+     */
+    public void pointsChanged() {
+        grid = null;
+        fillPath = null;
+        linePath = null;
+        outlines = null;
+        widths = matchCount(widths);
+        pointAlphas = matchCount(pointAlphas);
+        maxWidth = 0;
+        calculateExtents();
+    }
+
+    /**
+     * Returns the closed outline used for the fill, in local space.
+     * Built once and reused until the points change.
+     *
+     * @return The fill outline
+     */
+    private Path2D getFillPath() {
+        Path2D path = fillPath;
+        if (path == null || fillPathCount != points.size()) {
+            path = new Path2D.Float(Path2D.WIND_EVEN_ODD, points.size() + 1);
+            Point first = points.get(0);
+            path.moveTo(first.x, first.y);
+            for (int i = 1; i < points.size(); i++) {
+                Point p = points.get(i);
+                path.lineTo(p.x, p.y);
             }
-            return false;
+            path.closePath();
+            fillPath = path;
+            fillPathCount = points.size();
         }
-        
-        // Closed stroke - use point-in-polygon test to check if click is INSIDE
-        return isPointInPolygon(p.x, p.y);
+        return path;
     }
 
     /**
-     * Finds the closest distance from a point to any point in the stroke.
+     * Returns the center line of the stroke, in local space.
+     * Built once and reused until the points change.
      *
-     * @param p The point to check
-     * @return The minimum distance
+     * @return The center line
      */
-    private double getClosestDistance(Point p) {
-        double minDist = Double.MAX_VALUE;
-        for (Point pt : points) {
-            minDist = Math.min(minDist, pt.distance(p));
+    private Path2D getLinePath() {
+        Path2D path = linePath;
+        if (path == null || linePathCount != points.size()) {
+            path = new Path2D.Float(Path2D.WIND_NON_ZERO, points.size());
+            Point first = points.get(0);
+            path.moveTo(first.x, first.y);
+            for (int i = 1; i < points.size(); i++) {
+                Point p = points.get(i);
+                path.lineTo(p.x, p.y);
+            }
+            linePath = path;
+            linePathCount = points.size();
         }
-        return minDist;
+        return path;
     }
 
-    @Override
-    public void moveBy(int dx, int dy) {
-        // Move current points
-        for (Point pt : points) {
-            pt.translate(dx, dy);
+    /**
+     * Returns the filled outlines of a variable-width stroke, in local space,
+     * with the opacity of each in {@link #outlineAlphas}. Points whose
+     * opacities round to the same step share one outline, so a stroke
+     * without per-point opacity is a single outline. Neighbouring outlines
+     * are split at their shared point so it is painted once.
+     * Built once and reused until the points change.
+     *
+     * @return The outlines
+     */
+    private Path2D[] getOutlines() {
+        Path2D[] runs = outlines;
+        if (runs != null && outlineCount == points.size()) {
+            return runs;
         }
-        
-        // Move original points
-        for (Point pt : originalPoints) {
-            pt.translate(dx, dy);
+        int n = points.size();
+        float[] w = getOutlineWidths();
+        if (pointAlphas == null || n == 1) {
+            runs = new Path2D[] { StrokeOutline.build(points, w, 0, n - 1) };
+            outlineAlphas = new float[] { pointAlphas == null ? 1.0f : pointAlphas[0] };
+        } else {
+            List<Path2D> list = new ArrayList<>();
+            float[] levels = new float[n - 1];
+            int start = 0;
+            int level = alphaLevel(0);
+            for (int i = 1; i < n; i++) {
+                int next = i < n - 1 ? alphaLevel(i) : level;
+                if (next != level || i == n - 1) {
+                    levels[list.size()] = (float) level / ALPHA_LEVELS;
+                    list.add(StrokeOutline.build(points, w, start, i, start > 0, i < n - 1));
+                    start = i;
+                    level = next;
+                }
+            }
+            runs = list.toArray(new Path2D[0]);
+            outlineAlphas = Arrays.copyOf(levels, runs.length);
         }
-        
-        // Update original bounds
-        originalMinX += dx;
-        originalMinY += dy;
-        originalMaxX += dx;
-        originalMaxY += dy;
+        outlines = runs;
+        outlineCount = n;
+        return runs;
     }
-    
-    @Override
-    public Rectangle getBounds() {
-        if (points.isEmpty()) return new Rectangle();
-        
-        int minX = Integer.MAX_VALUE;
-        int minY = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE;
-        int maxY = Integer.MIN_VALUE;
-        
-        for (Point p : points) {
-            minX = Math.min(minX, p.x);
-            minY = Math.min(minY, p.y);
-            maxX = Math.max(maxX, p.x);
-            maxY = Math.max(maxY, p.y);
+
+    /**
+     * Returns the width at each point for building the outline. Point lists
+     * edited in place through {@link #getPoints()} are matched first.
+     *
+     * @return One width per point
+     */
+    private float[] getOutlineWidths() {
+        widths = matchCount(widths);
+        pointAlphas = matchCount(pointAlphas);
+        if (widths != null) return widths;
+        float[] w = new float[points.size()];
+        Arrays.fill(w, size);
+        return w;
+    }
+
+    /**
+     * Resizes per-point values to the point count, repeating the last value
+     * for points that were added.
+     */
+    private float[] matchCount(float[] values) {
+        int n = points.size();
+        if (values == null || values.length == n) return values;
+        float[] result = Arrays.copyOf(values, n);
+        if (values.length > 0) {
+            Arrays.fill(result, Math.min(values.length, n), n, values[values.length - 1]);
         }
+        return result;
+    }
+
+    /**
+     * Rounds the opacity of the segment starting at a point to a step.
+     */
+    private int alphaLevel(int i) {
+        float a = (pointAlphas[i] + pointAlphas[i + 1]) / 2;
+        return Math.max(1, Math.round(a * ALPHA_LEVELS));
+    }
+
+    /**
+     * Erases the part of this stroke covered by a round eraser dragged in a
+     * straight line. Only the segments near the eraser are visited, through
+     * the segment grid. The stroke itself is not changed; the parts that
+     * survive are returned as new strokes with the same style and transform.
+     *
+     * @param from Start of the eraser movement, in canvas coordinates
+     * @param to End of the eraser movement, in canvas coordinates
+     * @param radius Eraser radius in canvas pixels
+     * @return null if the eraser missed this stroke, otherwise the remaining
+     *         pieces (empty if the whole stroke was erased)
+     */
+    public List<StrokeObject> erase(Point2D from, Point2D to, double radius) {
+        if (points.isEmpty()) return null;
         
-        Rectangle unrotated = new Rectangle(
-            minX - size,
-            minY - size,
-            (maxX - minX) + size * 2,
-            (maxY - minY) + size * 2
-        );
+        Point2D a = transform.toLocal(from);
+        Point2D b = transform.toLocal(to);
+        double scale = transform.getScale();
+        if (a == null || b == null || scale <= 0) return null;
+        
+        // The eraser removes ink it touches, not just the center line
+        double r = radius / scale + getMaxWidth() / 2.0;
         
-        if (rotation == 0) {
-            return unrotated;
+        if (points.size() == 1) {
+            Point p = points.get(0);
+            boolean hit = Line2D.ptSegDist(a.getX(), a.getY(), b.getX(), b.getY(), p.x, p.y) <= r;
+            return hit ? new ArrayList<>() : null;
         }
         
-        // Calculate rotated bounds
-        double rad = Math.toRadians(rotation);
-        double cos = Math.abs(Math.cos(rad));
-        double sin = Math.abs(Math.sin(rad));
+        // Erased part of each touched segment, as {start, end} in 0..1
+        Map<Integer, double[]> cuts = new HashMap<>();
+        double minX = Math.min(a.getX(), b.getX()) - r;
+        double minY = Math.min(a.getY(), b.getY()) - r;
+        double w = Math.abs(a.getX() - b.getX()) + r * 2;
+        double h = Math.abs(a.getY() - b.getY()) + r * 2;
+        getSegmentGrid().forEachSegment(minX, minY, w, h, i -> {
+            Point p1 = points.get(i);
+            Point p2 = points.get(i + 1);
+            double[] cut = capsuleInterval(p1.x, p1.y, p2.x, p2.y,
+                a.getX(), a.getY(), b.getX(), b.getY(), r);
+            if (cut != null) {
+                cuts.put(i, cut);
+            }
+        });
+        if (cuts.isEmpty()) return null;
         
-        int newWidth = (int)(unrotated.width * cos + unrotated.height * sin);
-        int newHeight = (int)(unrotated.width * sin + unrotated.height * cos);
+        // Walk the segments, closing a piece at every cut. Where each piece
+        // point lies along the stroke (segment index plus fraction) is kept
+        // so per-point widths and opacities can be carried over
+        List<StrokeObject> pieces = new ArrayList<>();
+        List<Point> current = new ArrayList<>();
+        double[] at = new double[points.size() + 1];
+        current.add(new Point(points.get(0)));
+        for (int i = 0; i < points.size() - 1; i++) {
+            Point p1 = points.get(i);
+            Point p2 = points.get(i + 1);
+            double[] cut = cuts.get(i);
+            if (cut == null) {
+                at[current.size()] = i + 1;
+                current.add(new Point(p2));
+                continue;
+            }
+            if (cut[0] > 0) {
+                at[current.size()] = i + cut[0];
+                current.add(lerp(p1, p2, cut[0]));
+            }
+            addPiece(pieces, current, at);
+            current = new ArrayList<>();
+            if (cut[1] < 1) {
+                at[0] = i + cut[1];
+                at[1] = i + 1;
+                current.add(lerp(p1, p2, cut[1]));
+                current.add(new Point(p2));
+            }
+        }
+        addPiece(pieces, current, at);
+        return pieces;
+    }
+
+    /**
+     * Adds a remaining piece as a new stroke, if it still draws something.
+     *
+     * @param at Position of each piece point along this stroke
+     */
+    private void addPiece(List<StrokeObject> pieces, List<Point> pts, double[] at) {
+        if (pts.size() < 2) return;
+        StrokeObject piece = new StrokeObject(pts, color, size, highlight, alpha);
+        piece.widths = sample(matchCount(widths), at, pts.size());
+        piece.pointAlphas = sample(matchCount(pointAlphas), at, pts.size());
+        piece.transform.set(transform.matrix());
+        pieces.add(piece);
+    }
+
+    /**
+     * Interpolates per-point values at positions along the stroke.
+     *
+     * @return The values, or null if {@code values} is null
+     */
+    private static float[] sample(float[] values, double[] at, int count) {
+        if (values == null) return null;
+        float[] result = new float[count];
+        for (int i = 0; i < count; i++) {
+            int k = (int) at[i];
+            float t = (float) (at[i] - k);
+            float v = values[k];
+            result[i] = t > 0 ? v + (values[k + 1] - v) * t : v;
+        }
+        return result;
+    }
+
+    private static Point lerp(Point a, Point b, double t) {
+        return new Point(
+            (int) Math.round(a.x + (b.x - a.x) * t),
+            (int) Math.round(a.y + (b.y - a.y) * t));
+    }
+
+    /**
+     * Returns the part of segment (x1,y1)-(x2,y2) within distance {@code r}
+     * of segment (ex1,ey1)-(ex2,ey2). The covered area is convex (a capsule),
+     * so the part is a single interval: the union of the hits on the two end
+     * circles and on the body rectangle.
+     *
+     * @return {start, end} as fractions of the first segment, or null if it misses
+     */
+    static double[] capsuleInterval(double x1, double y1, double x2, double y2,
+                                    double ex1, double ey1, double ex2, double ey2, double r) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        if (dx == 0 && dy == 0) {
+            return Line2D.ptSegDist(ex1, ey1, ex2, ey2, x1, y1) <= r ? new double[] {0, 1} : null;
+        }
         
-        int centerX = unrotated.x + unrotated.width/2;
-        int centerY = unrotated.y + unrotated.height/2;
+        double[] range = {Double.MAX_VALUE, -Double.MAX_VALUE};
+        circleInterval(x1, y1, dx, dy, ex1, ey1, r, range);
+        circleInterval(x1, y1, dx, dy, ex2, ey2, r, range);
         
-        int newX = centerX - newWidth/2;
-        int newY = centerY - newHeight/2;
+        double len = Math.hypot(ex2 - ex1, ey2 - ey1);
+        if (len > 0) {
+            // Body in the eraser's frame: 0 <= u <= len, -r <= v <= r
+            double ux = (ex2 - ex1) / len;
+            double uy = (ey2 - ey1) / len;
+            double u0 = (x1 - ex1) * ux + (y1 - ey1) * uy;
+            double du = dx * ux + dy * uy;
+            double v0 = (y1 - ey1) * ux - (x1 - ex1) * uy;
+            double dv = dy * ux - dx * uy;
+            double[] t = {-Double.MAX_VALUE, Double.MAX_VALUE};
+            if (clip(u0, du, 0, len, t) && clip(v0, dv, -r, r, t)) {
+                range[0] = Math.min(range[0], t[0]);
+                range[1] = Math.max(range[1], t[1]);
+            }
+        }
         
-        return new Rectangle(newX, newY, newWidth, newHeight);
+        double start = Math.max(0, range[0]);
+        double end = Math.min(1, range[1]);
+        return start <= end ? new double[] {start, end} : null;
+    }
+
+    /**
+     * Widens {@code range} by where the line (x,y)+t(dx,dy) is inside a circle.
+     */
+    private static void circleInterval(double x, double y, double dx, double dy,
+                                       double cx, double cy, double r, double[] range) {
+        double fx = x - cx;
+        double fy = y - cy;
+        double qa = dx * dx + dy * dy;
+        double qb = 2 * (fx * dx + fy * dy);
+        double qc = fx * fx + fy * fy - r * r;
+        double disc = qb * qb - 4 * qa * qc;
+        if (disc < 0) return;
+        double root = Math.sqrt(disc);
+        range[0] = Math.min(range[0], (-qb - root) / (2 * qa));
+        range[1] = Math.max(range[1], (-qb + root) / (2 * qa));
+    }
+
+    /**
+     * Narrows {@code t} to where min <= p0 + t*dp <= max.
+     *
+     * @return false if nothing is left
+     */
+    private static boolean clip(double p0, double dp, double min, double max, double[] t) {
+        if (dp == 0) {
+            return p0 >= min && p0 <= max;
+        }
+        double t1 = (min - p0) / dp;
+        double t2 = (max - p0) / dp;
+        t[0] = Math.max(t[0], Math.min(t1, t2));
+        t[1] = Math.min(t[1], Math.max(t1, t2));
+        return t[0] <= t[1];
+    }
+
+    @Override
+    public void moveBy(int dx, int dy) {
+        transform.translate(dx, dy);
+    }
+    
+    @Override
+    public Rectangle getBounds() {
+        if (points.isEmpty()) return new Rectangle();
+        return transform.bounds(getLocalBounds());
+    }
+
+    /**
+     * Returns the filled polygon of a closed stroke, or the area covered
+     * by the brush for an open one.
+     */
+    @Override
+    public Shape toShape() {
+        if (points.isEmpty()) return new Rectangle();
+        Shape local;
+        if (isClosed()) {
+            local = getFillPath();
+        } else if (hasVariableWidth()) {
+            local = StrokeOutline.build(points, getOutlineWidths(), 0, points.size() - 1);
+        } else {
+            local = RenderState.roundStroke(Math.max(1, size)).createStrokedShape(getLinePath());
+        }
+        return transform.matrix().createTransformedShape(local);
     }
 
     @Override
     public void resize(double scaleX, double scaleY) {
+        if (points.isEmpty()) return;
         double scale = Math.min(scaleX, scaleY);
-        Rectangle bounds = getBounds();
-        int newWidth = (int)(bounds.width * scale);
-        int newHeight = (int)(bounds.height * scale);
-        resizeAbsolute(newWidth, newHeight);
+        Rectangle local = getLocalBounds();
+        transform.scaleLocal(scale, scale, local.x, local.y);
+    }
+
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+    
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+    
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
+    }
+
+    /**
+     * Applies the transform to the points and resets it to identity.
+     * The brush size is scaled by the transform's average scale.
+     * Use before editing points directly, for example when splitting strokes.
+     */
+    public void bakeTransform() {
+        if (transform.isIdentity()) return;
+        
+        transformPoints(points, transform.matrix());
+        double scale = transform.getScale();
+        size = Math.max(1, (int) Math.round(size * scale));
+        if (widths != null) {
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] *= (float) scale;
+            }
+            maxWidth = 0;
+        }
+        transform.set(null);
+        pointsChanged();
+    }
+
+    /**
+     * Transforms a list of points in place with one packed-array pass.
+     *
+     * @param pts The points to transform
+     * @param at The transform
+     */
+    private static void transformPoints(List<Point> pts, AffineTransform at) {
+        int n = pts.size();
+        double[] coords = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            Point p = pts.get(i);
+            coords[i * 2] = p.x;
+            coords[i * 2 + 1] = p.y;
+        }
+        
+        at.transform(coords, 0, coords, 0, n);
+        
+        for (int i = 0; i < n; i++) {
+            Point p = pts.get(i);
+            p.x = (int) Math.round(coords[i * 2]);
+            p.y = (int) Math.round(coords[i * 2 + 1]);
+        }
     }
 
     /**
      * Sets a fixed anchor point for resizing operations.
+     * {@link #resizeAbsolute} always keeps the top-left corner of the
+     * stroke's box in place, so the anchor is no longer needed; this is
+     * kept for existing callers and has no effect.
      *
      * @param anchor The anchor point
+     * @deprecated Resizing keeps the box corner in place by itself
      */
+    @Deprecated
     public void setFixedAnchor(Point anchor) {
         this.fixedAnchor = new Point(anchor);
     }
 
+    /**
+     * Resizes the stroke to a canvas size measured along its own axes.
+     * Strokes scale uniformly, by the smaller factor, so brush widths keep
+     * their proportions. The top-left corner of the box stays in place and
+     * rotation, shear and mirroring are kept.
+     */
     @Override
     public void resizeAbsolute(int newWidth, int newHeight) {
-        if (originalPoints.isEmpty()) return;
-        
-        // Use the FIXED anchor that was set at the start of drag
-        if (fixedAnchor == null) {
-            // Fallback - should not happen
-            Rectangle bounds = getBounds();
-            fixedAnchor = new Point(bounds.x + size/2, bounds.y + size/2);
-        }
+        if (points.isEmpty()) return;
         
         if (DEBUG) {
             System.out.println("\n=== StrokeObject " + id + " Resize ===");
-            System.out.println("Using FIXED anchor: " + fixedAnchor);
             System.out.println("Current bounds: " + getBounds());
         }
         
-        int origWidth = originalMaxX - originalMinX;
-        int origHeight = originalMaxY - originalMinY;
-        
-        if (origWidth == 0 && origHeight == 0) {
-            double scale = Math.min(
-                (double)newWidth / (size * 2),
-                (double)newHeight / (size * 2)
-            );
-            size = Math.max(1, (int)(originalSize * scale));
-            return;
-        }
-        
-        // Calculate scale factors
-        double scaleX = (double)(newWidth - size * 2) / origWidth;
-        double scaleY = (double)(newHeight - size * 2) / origHeight;
-        double scale = Math.min(scaleX, scaleY);
-        
-        // Clear and rebuild points
-        points.clear();
-        
-        // Scale points from original, anchored at the FIXED position
-        for (Point orig : originalPoints) {
-            int relX = orig.x - originalMinX;
-            int relY = orig.y - originalMinY;
-            
-            int scaledRelX = (int)(relX * scale);
-            int scaledRelY = (int)(relY * scale);
-            
-            points.add(new Point(
-                fixedAnchor.x + scaledRelX,
-                fixedAnchor.y + scaledRelY
-            ));
-        }
-        
-        // Scale brush size
-        size = Math.max(1, (int)(originalSize * scale));
+        // Scale relative to the local geometry, so every drag tick is O(1)
+        transform.resizeTo(getLocalBounds(), newWidth, newHeight, true);
     }
 
     /**
      * Clears the fixed anchor point after resizing is complete.
+     *
+     * @deprecated Resizing keeps the box corner in place by itself
      */
+    @Deprecated
     public void clearFixedAnchor() {
         fixedAnchor = null;
     }
 
+    /**
+     * Fills a closed stroke. The fill is kept with the stroke, saved with the
+     * document and drawn by {@link #draw}. Open strokes are recolored instead.
+     *
+     * @param g Graphics context to draw the result on (may be null)
+     * @param fillColor The color to fill with
+     */
     @Override
     public void fill(Graphics2D g, Color fillColor) {
-        System.out.println("  StrokeObject.fill() called");
-        System.out.println("  Points size: " + points.size());
-        
-        if (points.size() < 3) {
-            System.out.println("  Less than 3 points - can't fill, just recolor");
+        if (isClosed()) {
+            if (DEBUG) {
+                System.out.println("[StrokeObject " + id + "] Filled with " + fillColor);
+            }
+            this.fillColor = fillColor;
+        } else {
+            if (DEBUG) {
+                System.out.println("[StrokeObject " + id + "] Stroke is open - recolored");
+            }
             this.color = fillColor;
-            draw(g);
-            return;
         }
         
-        // Check if stroke is approximately closed
-        Point first = points.get(0);
-        Point last = points.get(points.size() - 1);
-        double distance = first.distance(last);
-        System.out.println("  Distance between first and last point: " + distance);
-        System.out.println("  Brush size: " + size);
-        
-        if (distance > size * 2) {
-            System.out.println("  Stroke is open - can't fill, just recolor");
-            this.color = fillColor;
+        if (g != null) {
             draw(g);
-            return;
-        }
-        
-        System.out.println("  Stroke is closed - filling polygon");
-        
-        // Create a closed polygon from the points
-        int[] xPoints = new int[points.size()];
-        int[] yPoints = new int[points.size()];
-        
-        for (int i = 0; i < points.size(); i++) {
-            Point p = points.get(i);
-            xPoints[i] = p.x;
-            yPoints[i] = p.y;
         }
-        
-        // Save original color
-        Color originalColor = color;
-        
-        // Fill the polygon
-        g.setColor(fillColor);
-        g.fillPolygon(xPoints, yPoints, points.size());
-        
-        // Restore original color for the outline
-        g.setColor(originalColor);
-        g.setStroke(new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        g.drawPolygon(xPoints, yPoints, points.size());
-        
-        System.out.println("  Polygon fill complete");
     }
 
     /**
-     * Checks if a point is inside the closed stroke polygon.
+     * Sets the fill color of a closed stroke.
      *
-     * @param x The X coordinate
-     * @param y The Y coordinate
-     * @return true if the point is inside
+     * @param fillColor The fill color, or null to remove the fill
      */
-    private boolean isPointInPolygon(int x, int y) {
-        if (points.size() < 3) return false;
-        
-        // Ray casting algorithm - count intersections with polygon edges
-        int intersections = 0;
-        int n = points.size();
-        
-        for (int i = 0; i < n; i++) {
-            Point p1 = points.get(i);
-            Point p2 = points.get((i + 1) % n);
-            
-            // Check if the ray from (x,y) to infinity intersects this edge
-            if (((p1.y > y) != (p2.y > y)) &&
-                (x < (p2.x - p1.x) * (y - p1.y) / (p2.y - p1.y) + p1.x)) {
-                intersections++;
-            }
-        }
-        
-        return (intersections % 2) == 1;
+    public void setFillColor(Color fillColor) {
+        this.fillColor = fillColor;
+    }
+
+    /**
+     * Returns the fill color.
+     *
+     * @return The fill color, or null if the stroke is not filled
+     */
+    public Color getFillColor() {
+        return fillColor;
+    }
+
+    /**
+     * Checks if this stroke is drawn filled.
+     *
+     * @return true if it has a fill and is closed
+     */
+    public boolean isFilled() {
+        return fillColor != null && isClosed();
     }
 
     /**
@@ -430,14 +872,128 @@ public class StrokeObject implements DrawableObject, Serializable {
     }
 
     /**
-     * Sets the brush size.
+     * Sets the brush size. Per-point widths are scaled along with it,
+     * so a tapered stroke keeps its shape.
      *
      * @param size The new size in pixels
      */
     public void setBrushSize(int size) {
+        if (widths != null && this.size > 0 && size != this.size) {
+            float factor = (float) size / this.size;
+            for (int i = 0; i < widths.length; i++) {
+                widths[i] *= factor;
+            }
+            outlines = null;
+            maxWidth = 0;
+        }
         this.size = size;
     }
 
+    /**
+     * Sets the width at each point, for example from
+     * {@link #pressureWidths}. The brush size is kept as the width the
+     * stroke would have at full pressure.
+     *
+     * @param widths One width in local pixels per point, or null to draw
+     *               the whole stroke at the brush size
+     * @throws IllegalArgumentException If the count does not match the points
+     */
+    public void setWidths(float[] widths) {
+        checkCount(widths);
+        this.widths = widths != null ? widths.clone() : null;
+        outlines = null;
+        maxWidth = 0;
+    }
+
+    /**
+     * Returns the width at each point.
+     *
+     * @return A copy of the widths, or null if the stroke has one width
+     */
+    public float[] getWidths() {
+        return widths != null ? widths.clone() : null;
+    }
+
+    /**
+     * Sets the opacity at each point, on top of the stroke's opacity.
+     * Opacity changes are drawn in 16 steps.
+     *
+     * @param alphas One opacity (0.0 - 1.0) per point, or null for none
+     * @throws IllegalArgumentException If the count does not match the points
+     */
+    public void setPointAlphas(float[] alphas) {
+        checkCount(alphas);
+        if (alphas == null) {
+            pointAlphas = null;
+        } else {
+            pointAlphas = new float[alphas.length];
+            for (int i = 0; i < alphas.length; i++) {
+                pointAlphas[i] = Math.max(0.0f, Math.min(1.0f, alphas[i]));
+            }
+        }
+        outlines = null;
+    }
+
+    /**
+     * Returns the opacity at each point.
+     *
+     * @return A copy of the opacities, or null if they do not vary
+     */
+    public float[] getPointAlphas() {
+        return pointAlphas != null ? pointAlphas.clone() : null;
+    }
+
+    /**
+     * Checks if the stroke has per-point widths or opacities, and is
+     * drawn as a filled outline.
+     *
+     * @return true if the width or opacity varies along the stroke
+     */
+    public boolean hasVariableWidth() {
+        return (widths != null || pointAlphas != null) && !points.isEmpty();
+    }
+
+    private void checkCount(float[] values) {
+        if (values != null && values.length != points.size()) {
+            throw new IllegalArgumentException("Expected " + points.size()
+                + " values, one per point, but got " + values.length);
+        }
+    }
+
+    /**
+     * Works out per-point widths from pen pressure and drawing speed,
+     * the same way the raster brush sizes its dabs. The speed is smoothed
+     * over the samples so single jittery events do not pinch the line.
+     *
+     * @param pts The stroke's points
+     * @param pressures Pen pressure at each point (0 - 1), or null for full pressure
+     * @param times Event time of each point in milliseconds, or null to ignore speed
+     * @param size Width at full pressure and rest
+     * @param pressureSize How much pressure shrinks the width (0 none - 1 down to nothing)
+     * @param velocityThinning How much fast strokes thin out (0 none - 1 down to nothing)
+     * @return One width per point, never below one pixel
+     */
+    public static float[] pressureWidths(List<Point> pts, float[] pressures, long[] times,
+                                         float size, float pressureSize, float velocityThinning) {
+        int n = pts.size();
+        float[] result = new float[n];
+        float speed = 0;
+        for (int i = 0; i < n; i++) {
+            float p = pressures != null ? Math.max(0, Math.min(1, pressures[i])) : 1;
+            float w = size * (1 - pressureSize * (1 - p));
+            if (times != null && i > 0) {
+                long dt = times[i] - times[i - 1];
+                if (dt > 0) {
+                    float d = (float) pts.get(i).distance(pts.get(i - 1));
+                    speed += (d / dt - speed) * SPEED_SMOOTHING;
+                }
+                w *= 1 - velocityThinning * Math.min(1, speed / THINNING_SPEED);
+            }
+            result[i] = Math.max(1, w);
+        }
+        return result;
+    }
+
     /**
      * Sets the opacity level.
      *
@@ -458,18 +1014,18 @@ public class StrokeObject implements DrawableObject, Serializable {
 
     @Override
     public void setRotation(double degrees) {
-        this.rotation = degrees;
+        rotate(degrees - getRotation());
     }
 
     @Override
     public double getRotation() {
-        return rotation;
+        return transform.getRotation();
     }
 
     @Override
     public void rotate(double delta) {
-        rotation += delta;
-        rotation = rotation % 360;
+        if (points.isEmpty()) return;
+        transform.rotate(delta, getLocalBounds());
     }
 
     /**
@@ -493,4 +1049,24 @@ public class StrokeObject implements DrawableObject, Serializable {
     public void removeGradient() {
         // Nothing to remove
     }
+
+    /**
+     * Custom deserialization that converts objects from older files
+     * to the current model.
+     *
+     * @param in The object input stream
+     * @throws java.io.IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (transform == null) {
+            // Saved before the transform model: geometry is in canvas space
+            transform = new ObjectTransform();
+            if (rotation != 0) {
+                transform.rotate(rotation, getLocalBounds());
+            }
+            rotation = 0;
+        }
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Point;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the filled outline of a stroke whose width changes from point to
+ * point. The outline is the union of a round disc at the points and, for
+ * every segment, the quad between the two lines that touch both discs.
+ * Discs inside straight runs, where neighbouring quads already meet, are
+ * left out.
+ * All pieces wind the same way, so one non-zero fill paints the union with
+ * round caps and joins and no seams, without clipping the pieces against
+ * each other.
+ *
+ * <p>A stroke drawn as several outlines (one per opacity) is split at each
+ * joint along the bisector of its two segments. Pieces reaching across
+ * that line are clipped to their own side, so the outlines meet without
+ * overlapping and the joint is not painted twice.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+final class StrokeOutline {
+
+    /** Widest gap, in local pixels, left between two quads before the joint's disc is added */
+    static final double JOIN_TOLERANCE = 0.05;
+
+    /** Largest distance, in local pixels, between a clipped disc and its polygon */
+    static final double CLIP_FLATNESS = 0.05;
+
+    // Control point distance of a quarter circle drawn as one cubic
+    private static final double KAPPA = 0.5522847498;
+
+    private StrokeOutline() {
+    }
+
+    /**
+     * Builds the outline of part of a stroke.
+     *
+     * @param pts The stroke's points
+     * @param widths Width at each point, in the same units as the points
+     * @param from Index of the first point
+     * @param to Index of the last point (inclusive)
+     * @return The outline, in the points' coordinates
+     */
+    static Path2D build(List<Point> pts, float[] widths, int from, int to) {
+        return build(pts, widths, from, to, false, false);
+    }
+
+    /**
+     * Builds the outline of one of several consecutive parts of a stroke.
+     * Where the part continues another one, only the side of the joint
+     * facing this part is included.
+     *
+     * @param pts The stroke's points
+     * @param widths Width at each point, in the same units as the points
+     * @param from Index of the first point
+     * @param to Index of the last point (inclusive)
+     * @param splitStart true if another part ends at {@code from}
+     * @param splitEnd true if another part starts at {@code to}
+     * @return The outline, in the points' coordinates
+     */
+    static Path2D build(List<Point> pts, float[] widths, int from, int to, boolean splitStart, boolean splitEnd) {
+        int count = to - from + 1;
+        Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO, count * 12);
+        if (count == 1) {
+            Point p = pts.get(from);
+            disc(path, p.x, p.y, widths[from] / 2.0);
+            return path;
+        }
+
+        // Cut lines at the joints and the points close enough to reach them
+        double[] startCut = splitStart ? cut(pts, from, 1) : null;
+        double[] endCut = splitEnd ? cut(pts, to, -1) : null;
+        int startReach = splitStart ? reach(pts, widths, from, to, 1) : from - 1;
+        int endReach = splitEnd ? reach(pts, widths, to, from, -1) : to + 1;
+        double[] quad = new double[8];
+
+        // Unit normals from each point to where the tangent lines touch its
+        // disc, left and right of the segment that starts there
+        double[] left = new double[count * 2];
+        double[] right = new double[count * 2];
+        boolean[] touching = new boolean[count];
+        for (int i = from; i < to; i++) {
+            Point a = pts.get(i);
+            Point b = pts.get(i + 1);
+            double r0 = widths[i] / 2.0;
+            double r1 = widths[i + 1] / 2.0;
+            double dx = b.x - a.x;
+            double dy = b.y - a.y;
+            double d = Math.sqrt(dx * dx + dy * dy);
+            int k = i - from;
+            if (d <= Math.abs(r1 - r0)) {
+                // One disc holds the other; the discs alone cover the segment
+                continue;
+            }
+            touching[k] = true;
+            double ux = dx / d;
+            double uy = dy / d;
+            // The tangents lean toward the smaller disc
+            double s = (r1 - r0) / d;
+            double c = Math.sqrt(1 - s * s);
+            left[k * 2] = -uy * c - ux * s;
+            left[k * 2 + 1] = ux * c - uy * s;
+            right[k * 2] = uy * c - ux * s;
+            right[k * 2 + 1] = -ux * c - uy * s;
+
+            // Counter-clockwise on screen, the same as the discs
+            quad[0] = a.x + left[k * 2] * r0;
+            quad[1] = a.y + left[k * 2 + 1] * r0;
+            quad[2] = b.x + left[k * 2] * r1;
+            quad[3] = b.y + left[k * 2 + 1] * r1;
+            quad[4] = b.x + right[k * 2] * r1;
+            quad[5] = b.y + right[k * 2 + 1] * r1;
+            quad[6] = a.x + right[k * 2] * r0;
+            quad[7] = a.y + right[k * 2 + 1] * r0;
+            polygon(path, quad, 4, i <= startReach ? startCut : null, i + 1 >= endReach ? endCut : null);
+        }
+
+        for (int i = from; i <= to; i++) {
+            int k = i - from;
+            double r = widths[i] / 2.0;
+            boolean needed = i == from || i == to || !touching[k] || !touching[k - 1];
+            if (!needed) {
+                // The two quads end on the disc; unless their ends line up,
+                // as on a straight run, the disc fills the wedge between them
+                double gapLeft = Math.hypot(left[k * 2] - left[k * 2 - 2], left[k * 2 + 1] - left[k * 2 - 1]);
+                double gapRight = Math.hypot(right[k * 2] - right[k * 2 - 2], right[k * 2 + 1] - right[k * 2 - 1]);
+                needed = r * Math.max(gapLeft, gapRight) > JOIN_TOLERANCE;
+            }
+            if (needed) {
+                Point p = pts.get(i);
+                double[] a = i <= startReach && crosses(startCut, p, r) ? startCut : null;
+                double[] b = i >= endReach && crosses(endCut, p, r) ? endCut : null;
+                if (a == null && b == null) {
+                    disc(path, p.x, p.y, r);
+                } else {
+                    double[] circle = circle(p.x, p.y, r);
+                    polygon(path, circle, circle.length / 2, a, b);
+                }
+            }
+        }
+        return path;
+    }
+
+    // ------------------ Joints ------------------
+
+    /**
+     * Returns the line a stroke is split along at a joint: through the
+     * point, along the bisector of the segments before and after it.
+     *
+     * @param side 1 to keep the part after the joint, -1 for the part before
+     * @return The point and the normal of the line, pointing to the kept side
+     */
+    private static double[] cut(List<Point> pts, int joint, int side) {
+        Point p = pts.get(joint);
+        double nx = 0;
+        double ny = 0;
+        for (int i = joint - 1; i >= 0; i--) {
+            Point q = pts.get(i);
+            double d = Math.hypot(p.x - q.x, p.y - q.y);
+            if (d > 0) {
+                nx += (p.x - q.x) / d;
+                ny += (p.y - q.y) / d;
+                break;
+            }
+        }
+        for (int i = joint + 1; i < pts.size(); i++) {
+            Point q = pts.get(i);
+            double d = Math.hypot(q.x - p.x, q.y - p.y);
+            if (d > 0) {
+                double ux = (q.x - p.x) / d;
+                double uy = (q.y - p.y) / d;
+                if (Math.hypot(nx + ux, ny + uy) > 1e-9) {
+                    // The stroke may turn back on itself, then keep the way out
+                    nx += ux;
+                    ny += uy;
+                }
+                break;
+            }
+        }
+        double len = Math.hypot(nx, ny);
+        if (len == 0) {
+            nx = 1;
+            len = 1;
+        }
+        return new double[] { p.x, p.y, side * nx / len, side * ny / len };
+    }
+
+    /**
+     * Walks from a joint into the part while the discs still overlap the
+     * joint's disc. Pieces further away are left unclipped, so a stroke
+     * looping back over the cut line is not cut there.
+     *
+     * @param step 1 to walk forward from {@code joint}, -1 to walk back
+     * @return The last index reached
+     */
+    private static int reach(List<Point> pts, float[] widths, int joint, int end, int step) {
+        Point p = pts.get(joint);
+        double r = widths[joint] / 2.0;
+        int i = joint;
+        while (i != end) {
+            Point q = pts.get(i + step);
+            if (Math.hypot(q.x - p.x, q.y - p.y) >= r + widths[i + step] / 2.0) break;
+            i += step;
+        }
+        return i;
+    }
+
+    /**
+     * Checks if a disc reaches past a cut line.
+     */
+    private static boolean crosses(double[] cut, Point p, double r) {
+        return cut != null && (p.x - cut[0]) * cut[2] + (p.y - cut[1]) * cut[3] < r;
+    }
+
+    /**
+     * Adds a convex polygon clipped to the kept side of up to two cut lines.
+     * Clipping keeps the winding of the polygon.
+     */
+    private static void polygon(Path2D path, double[] xy, int n, double[] a, double[] b) {
+        if (a != null) {
+            xy = clip(xy, n, a);
+            n = xy.length / 2;
+        }
+        if (b != null) {
+            xy = clip(xy, n, b);
+            n = xy.length / 2;
+        }
+        if (n < 3) return;
+        path.moveTo(xy[0], xy[1]);
+        for (int i = 1; i < n; i++) {
+            path.lineTo(xy[i * 2], xy[i * 2 + 1]);
+        }
+        path.closePath();
+    }
+
+    /**
+     * Clips a convex polygon to one side of a line (Sutherland-Hodgman).
+     */
+    private static double[] clip(double[] xy, int n, double[] cut) {
+        double[] out = new double[(n + 1) * 2];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int j = (i + 1) % n;
+            double x0 = xy[i * 2];
+            double y0 = xy[i * 2 + 1];
+            double x1 = xy[j * 2];
+            double y1 = xy[j * 2 + 1];
+            double d0 = (x0 - cut[0]) * cut[2] + (y0 - cut[1]) * cut[3];
+            double d1 = (x1 - cut[0]) * cut[2] + (y1 - cut[1]) * cut[3];
+            if (d0 >= 0) {
+                out[m++] = x0;
+                out[m++] = y0;
+            }
+            if ((d0 >= 0) != (d1 >= 0)) {
+                double t = d0 / (d0 - d1);
+                out[m++] = x0 + (x1 - x0) * t;
+                out[m++] = y0 + (y1 - y0) * t;
+            }
+        }
+        return Arrays.copyOf(out, m);
+    }
+
+    /**
+     * Returns a circle as a polygon within {@link #CLIP_FLATNESS} of it,
+     * counter-clockwise on screen like {@link #disc}.
+     */
+    private static double[] circle(double cx, double cy, double r) {
+        int n = 8;
+        if (r > CLIP_FLATNESS) {
+            n = Math.max(n, (int) Math.ceil(Math.PI / Math.acos(1 - CLIP_FLATNESS / r)));
+        }
+        double[] xy = new double[n * 2];
+        for (int i = 0; i < n; i++) {
+            double t = 2 * Math.PI * i / n;
+            xy[i * 2] = cx + r * Math.cos(t);
+            xy[i * 2 + 1] = cy - r * Math.sin(t);
+        }
+        return xy;
+    }
+
+    /**
+     * Adds a circle as four cubics, counter-clockwise on screen.
+     */
+    private static void disc(Path2D path, double cx, double cy, double r) {
+        if (r <= 0) return;
+        double k = r * KAPPA;
+        path.moveTo(cx + r, cy);
+        path.curveTo(cx + r, cy - k, cx + k, cy - r, cx, cy - r);
+        path.curveTo(cx - k, cy - r, cx - r, cy - k, cx - r, cy);
+        path.curveTo(cx - r, cy + k, cx - k, cy + r, cx, cy + r);
+        path.curveTo(cx + k, cy + r, cx + r, cy + k, cx + r, cy);
+        path.closePath();
+    }
+}
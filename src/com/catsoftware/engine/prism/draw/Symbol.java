@@ -0,0 +1,269 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A reusable drawing shared by any number of {@link SymbolObject} instances.
+ * The geometry is stored once, in symbol space. The combined outline and
+ * pre-rendered bitmaps are built once per symbol and shared by all
+ * instances, so stamping a symbol thousands of times costs one transform
+ * per copy.
+ *
+ * <p>The parts belong to the symbol and must not be changed directly;
+ * use {@link #redefine} so the caches are rebuilt.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class Symbol implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Bitmaps are rendered at powers of two between these scale levels */
+    static final int MIN_LEVEL = -3;
+    static final int MAX_LEVEL = 3;
+
+    /** Largest bitmap side in pixels; larger renderings draw the parts instead */
+    static final int MAX_BITMAP_SIZE = 2048;
+
+    /** Extra pixels around the bounds so stroke edges are not cut off */
+    private static final int BITMAP_PADDING = 4;
+
+    private final String id;
+    private String name;
+    private List<DrawableObject> parts;
+
+    private transient Rectangle bounds;
+    private transient Area outline;
+    private transient OutlineSegments outlineSegments;
+    private transient Map<Integer, BufferedImage> bitmaps = new HashMap<>();
+    private transient int references;
+
+    /**
+     * Creates a symbol. The objects become the symbol's parts.
+     *
+     * @param name The display name
+     * @param parts The objects, bottom first, in symbol space
+     */
+    public Symbol(String name, Collection<? extends DrawableObject> parts) {
+        this.id = UUID.randomUUID().toString();
+        this.name = name;
+        this.parts = new ArrayList<>(parts);
+    }
+
+    /** @return The unique id of this symbol */
+    public String getId() {
+        return id;
+    }
+
+    /** @return The display name */
+    public String getName() {
+        return name;
+    }
+
+    /** @param name The new display name */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the parts of this symbol.
+     *
+     * @return The parts, bottom first (unmodifiable)
+     */
+    public List<DrawableObject> getParts() {
+        return Collections.unmodifiableList(parts);
+    }
+
+    /**
+     * Replaces the parts of this symbol. Every instance shows the new
+     * drawing on its next repaint.
+     *
+     * @param parts The new objects, bottom first, in symbol space
+     */
+    public synchronized void redefine(Collection<? extends DrawableObject> parts) {
+        this.parts = new ArrayList<>(parts);
+        bounds = null;
+        outline = null;
+        outlineSegments = null;
+        bitmaps.clear();
+    }
+
+    /**
+     * Returns the combined bounds of the parts in symbol space.
+     *
+     * @return A copy of the cached bounds
+     */
+    public synchronized Rectangle getBounds() {
+        if (bounds == null) {
+            Rectangle b = null;
+            for (DrawableObject part : parts) {
+                if (b == null) {
+                    b = part.getBounds();
+                } else {
+                    b.add(part.getBounds());
+                }
+            }
+            bounds = b != null ? b : new Rectangle();
+        }
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * Returns the combined outline of the parts in symbol space.
+     * Built once per symbol and shared by all instances.
+     *
+     * @return The shared outline (do not modify)
+     */
+    public synchronized Shape getOutline() {
+        if (outline == null) {
+            // Merged, so parts wound in opposite directions do not cancel out
+            Area area = new Area();
+            for (DrawableObject part : parts) {
+                area.add(new Area(part.toShape()));
+            }
+            outline = area;
+        }
+        return outline;
+    }
+
+    /**
+     * Returns the flattened outline for distance queries.
+     */
+    synchronized OutlineSegments getOutlineSegments() {
+        if (outlineSegments == null) {
+            outlineSegments = new OutlineSegments(getOutline());
+        }
+        return outlineSegments;
+    }
+
+    /**
+     * Draws the parts in symbol space.
+     *
+     * @param g The graphics context
+     */
+    public void draw(Graphics2D g) {
+        for (DrawableObject part : parts) {
+            part.draw(g);
+        }
+    }
+
+    // ------------------ Bitmap Cache ------------------
+
+    /**
+     * Returns the scale level whose bitmap is sharp at a drawing scale:
+     * the smallest power of two that is not below it.
+     *
+     * @param scale The scale from symbol space to device pixels
+     * @return The level, clamped to the cached range
+     */
+    static int levelFor(double scale) {
+        if (!(scale > 0)) return MIN_LEVEL;
+        int level = (int) Math.ceil(Math.log(scale) / Math.log(2) - 1e-9);
+        return Math.max(MIN_LEVEL, Math.min(MAX_LEVEL, level));
+    }
+
+    /**
+     * Returns the symbol pre-rendered at a scale level, rendering it on
+     * first use. Pixel (0, 0) of the bitmap is at
+     * {@link #getBitmapArea()} in symbol space.
+     *
+     * @param level The scale level (bitmap pixels per unit are 2^level)
+     * @return The bitmap, or null if it would be larger than {@link #MAX_BITMAP_SIZE}
+     */
+    synchronized BufferedImage getBitmap(int level) {
+        BufferedImage img = bitmaps.get(level);
+        if (img != null || bitmaps.containsKey(level)) {
+            return img;
+        }
+        Rectangle area = getBitmapArea();
+        double scale = Math.pow(2, level);
+        int w = (int) Math.ceil(area.width * scale);
+        int h = (int) Math.ceil(area.height * scale);
+        if (w > 0 && h > 0 && w <= MAX_BITMAP_SIZE && h <= MAX_BITMAP_SIZE) {
+            img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.scale(scale, scale);
+            g.translate(-area.x, -area.y);
+            draw(g);
+            g.dispose();
+        }
+        // Oversized levels are remembered as null so they are not retried
+        bitmaps.put(level, img);
+        return img;
+    }
+
+    /**
+     * Returns the area of symbol space covered by the cached bitmaps.
+     *
+     * @return The bounds, padded for stroke edges
+     */
+    synchronized Rectangle getBitmapArea() {
+        Rectangle area = getBounds();
+        area.add(getOutline().getBounds());
+        area.grow(BITMAP_PADDING, BITMAP_PADDING);
+        return area;
+    }
+
+    // ------------------ References ------------------
+
+    /**
+     * Registers a new instance of this symbol.
+     */
+    public synchronized void retain() {
+        references++;
+    }
+
+    /**
+     * Releases an instance of this symbol.
+     * The cached bitmaps are dropped when the last instance releases it.
+     */
+    public synchronized void release() {
+        if (references > 0 && --references == 0) {
+            bitmaps.clear();
+        }
+    }
+
+    /**
+     * Returns the number of instances currently using this symbol.
+     *
+     * @return The reference count
+     */
+    public synchronized int getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Restores the transient caches after deserialization.
+     *
+     * @param in The object input stream
+     * @throws IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        bitmaps = new HashMap<>();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.draw;
+
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.Serializable;
+
+/**
+ * One placed copy of a {@link Symbol}. The instance only holds a reference
+ * to the symbol, its own transform, an optional color override and an
+ * opacity; the geometry and its caches are shared with every other
+ * instance of the same symbol.
+ *
+ * <p>Instances are drawn from the symbol's cached bitmap at the nearest
+ * sharper scale, or from its parts when the bitmap would be too large.
+ * With a color override the symbol's shared outline is filled as a
+ * silhouette in that color.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SymbolObject implements DrawableObject, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Symbol symbol;
+    private ObjectTransform transform = new ObjectTransform();
+    private Color colorOverride;
+    private float alpha = 1.0f;
+
+    /**
+     * Creates an instance drawn where the symbol's parts are.
+     *
+     * @param symbol The symbol to show
+     */
+    public SymbolObject(Symbol symbol) {
+        setSymbol(symbol);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param symbol The symbol to show
+     * @param at The transform from symbol space to canvas coordinates
+     */
+    public SymbolObject(Symbol symbol, AffineTransform at) {
+        setSymbol(symbol);
+        transform.set(at);
+    }
+
+    @Override
+    public void draw(Graphics2D g) {
+        if (symbol == null) return;
+
+        // Save original composite
+        Composite originalComposite = g.getComposite();
+
+        // Apply alpha
+        if (alpha < 1.0f) {
+            g.setComposite(RenderState.composite(alpha));
+        }
+
+        // Draw in symbol space
+        AffineTransform original = transform.begin(g);
+
+        if (colorOverride != null) {
+            g.setColor(colorOverride);
+            g.fill(symbol.getOutline());
+        } else if (!drawBitmap(g)) {
+            symbol.draw(g);
+        }
+
+        // Restore transform and composite
+        g.setTransform(original);
+        g.setComposite(originalComposite);
+    }
+
+    /**
+     * Draws the symbol's cached bitmap for the current device scale.
+     *
+     * @return false if no bitmap is sharp enough at this scale
+     */
+    private boolean drawBitmap(Graphics2D g) {
+        AffineTransform device = g.getTransform();
+        double scale = Math.sqrt(Math.max(
+                device.getScaleX() * device.getScaleX() + device.getShearY() * device.getShearY(),
+                device.getShearX() * device.getShearX() + device.getScaleY() * device.getScaleY()));
+        int level = Symbol.levelFor(scale);
+        double levelScale = Math.pow(2, level);
+        if (levelScale < scale) return false;
+
+        BufferedImage img = symbol.getBitmap(level);
+        if (img == null) return false;
+
+        Rectangle area = symbol.getBitmapArea();
+        Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.translate(area.x, area.y);
+        g.scale(1 / levelScale, 1 / levelScale);
+        g.drawImage(img, 0, 0, null);
+        if (interpolation != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Point p) {
+        return hitDistance(p) >= 0;
+    }
+
+    @Override
+    public double hitDistance(Point p) {
+        return hitDistance(p, HIT_TOLERANCE);
+    }
+
+    /**
+     * Measures how close a point is to the symbol's outline.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Slack for near hits, in the units of {@code p}
+     * @return 0 inside the outline, otherwise the distance to it in canvas
+     *         pixels; -1 if the point misses
+     */
+    @Override
+    public double hitDistance(Point2D p, double tolerance) {
+        if (symbol == null) return -1;
+
+        // Bounding box pre-reject
+        Rectangle box = getBounds();
+        box.grow((int) Math.ceil(tolerance), (int) Math.ceil(tolerance));
+        if (!box.contains(p)) return -1;
+
+        Point2D local = transform.toLocal(p);
+        if (local == null) return -1;
+
+        if (symbol.getOutline().contains(local)) return 0;
+
+        double distance = symbol.getOutlineSegments().distance(local.getX(), local.getY())
+                * transform.getScale();
+        return distance <= tolerance ? distance : -1;
+    }
+
+    @Override
+    public void moveBy(int dx, int dy) {
+        transform.translate(dx, dy);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        if (symbol == null) return new Rectangle();
+        return transform.bounds(symbol.getBounds());
+    }
+
+    @Override
+    public Shape toShape() {
+        if (symbol == null) return new Rectangle();
+        return transform.matrix().createTransformedShape(symbol.getOutline());
+    }
+
+    @Override
+    public void resize(double scaleX, double scaleY) {
+        if (symbol == null) return;
+        Rectangle local = symbol.getBounds();
+        transform.scaleLocal(scaleX, scaleY, local.getX(), local.getY());
+    }
+
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
+    }
+
+    @Override
+    public void resizeAbsolute(int newWidth, int newHeight) {
+        if (symbol == null) return;
+        transform.resizeTo(symbol.getBounds(), newWidth, newHeight, false);
+    }
+
+    /**
+     * Sets the color override. The symbol itself is not changed.
+     */
+    @Override
+    public void fill(Graphics2D g, Color fillColor) {
+        this.colorOverride = fillColor;
+        if (g != null) {
+            draw(g);
+        }
+    }
+
+    /**
+     * Returns the symbol this object shows.
+     *
+     * @return The shared symbol
+     */
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Replaces the symbol this object shows.
+     * The old symbol is released and the new one retained.
+     *
+     * @param symbol The new symbol (may be null)
+     */
+    public void setSymbol(Symbol symbol) {
+        if (symbol == this.symbol) return;
+        if (symbol != null) {
+            symbol.retain();
+        }
+        if (this.symbol != null) {
+            this.symbol.release();
+        }
+        this.symbol = symbol;
+    }
+
+    /**
+     * Releases the shared symbol. Call when the object is removed for good.
+     */
+    public void dispose() {
+        setSymbol(null);
+    }
+
+    /**
+     * Sets the color override.
+     *
+     * @param color The color the whole symbol is drawn in, or null to show its own colors
+     */
+    public void setColorOverride(Color color) {
+        this.colorOverride = color;
+    }
+
+    /** @return The color override, or null if the symbol's own colors are shown */
+    public Color getColorOverride() {
+        return colorOverride;
+    }
+
+    /**
+     * Sets the opacity level.
+     *
+     * @param alpha Value between 0.1 and 1.0
+     */
+    public void setAlpha(float alpha) {
+        this.alpha = Math.max(0.1f, Math.min(1.0f, alpha));
+    }
+
+    /** @return The current opacity level */
+    public float getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setRotation(double degrees) {
+        rotate(degrees - getRotation());
+    }
+
+    @Override
+    public double getRotation() {
+        return transform.getRotation();
+    }
+
+    @Override
+    public void rotate(double delta) {
+        if (symbol == null) return;
+        transform.rotate(delta, symbol.getBounds());
+    }
+
+    /**
+     * Sets a gradient (not supported for instances - falls back to a color override).
+     */
+    @Override
+    public void setGradient(Color color1, Color color2, boolean horizontal) {
+        this.colorOverride = color1;
+    }
+
+    @Override
+    public boolean hasGradient() {
+        return false;
+    }
+
+    @Override
+    public void removeGradient() {
+        // Nothing to remove
+    }
+
+    /**
+     * Custom deserialization to re-register with the shared symbol.
+     * Symbols used by several instances are written once per stream.
+     *
+     * @param in The object input stream
+     * @throws java.io.IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (symbol != null) {
+            symbol.retain();
+        }
+    }
+}
@@ -4,7 +4,6 @@
  */
 package com.catsoftware.engine.prism.draw;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Font;
@@ -12,8 +11,11 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.Toolkit;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
 import java.io.Serializable;
 
 /**
@@ -25,11 +27,17 @@ import java.io.Serializable;
  * @since Prism B1
  */
 public class TextObject implements DrawableObject, Serializable {
+    /** Same as the computed ID of the first format, so older documents still load */
+    private static final long serialVersionUID = 836486965180553324L;
+    
     private String text;
     private int x, y;
     private Font font;
     private Color color;
-    private double rotation = 0;
+    private ObjectTransform transform = new ObjectTransform();
+    
+    /** Rotation slot of files saved before the transform model, only set while reading them */
+    private double rotation;
     private float alpha = 1.0f;
 
     /**
@@ -58,13 +66,11 @@ public class TextObject implements DrawableObject, Serializable {
         
         // Apply alpha
         if (alpha < 1.0f) {
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+            g.setComposite(RenderState.composite(alpha));
         }
         
-        // Save transform for rotation
-        AffineTransform original = g.getTransform();
-        Rectangle bounds = getBounds();
-        g.rotate(Math.toRadians(rotation), bounds.getCenterX(), bounds.getCenterY());
+        // Draw in local space
+        AffineTransform original = transform.begin(g);
         
         g.setFont(font);
         g.setColor(color);
@@ -77,68 +83,94 @@ public class TextObject implements DrawableObject, Serializable {
 
     @Override
     public boolean contains(Point p) {
+        Point2D local = transform.toLocal(p);
+        if (local == null) return false;
+        
         Rectangle r = new Rectangle(
             x - 4, 
             y - font.getSize(), 
             text.length() * font.getSize(), 
             font.getSize()
         );
-        return r.contains(p);
+        return r.contains(local);
     }
 
     @Override
     public void moveBy(int dx, int dy) {
-        x += dx;
-        y += dy;
+        transform.translate(dx, dy);
     }
     
-    @Override
-    public Rectangle getBounds() {
+    /**
+     * Returns the bounds of the text in local space.
+     *
+     * @return The untransformed bounding box
+     */
+    private Rectangle getLocalBounds() {
         FontMetrics fm = Toolkit.getDefaultToolkit().getFontMetrics(font);
         int w = fm.stringWidth(text);
         int h = fm.getHeight();
-        Rectangle unrotated = new Rectangle(x, y - h, w, h);
-        
-        if (rotation == 0) {
-            return unrotated;
-        }
-        
-        // Calculate rotated bounds
-        double rad = Math.toRadians(rotation);
-        double cos = Math.abs(Math.cos(rad));
-        double sin = Math.abs(Math.sin(rad));
-        
-        int newWidth = (int)(unrotated.width * cos + unrotated.height * sin);
-        int newHeight = (int)(unrotated.width * sin + unrotated.height * cos);
-        
-        int centerX = unrotated.x + unrotated.width/2;
-        int centerY = unrotated.y + unrotated.height/2;
-        
-        int newX = centerX - newWidth/2;
-        int newY = centerY - newHeight/2;
-        
-        return new Rectangle(newX, newY, newWidth, newHeight);
+        return new Rectangle(x, y - h, w, h);
+    }
+    
+    @Override
+    public Rectangle getBounds() {
+        return transform.bounds(getLocalBounds());
+    }
+    
+    @Override
+    public Shape toShape() {
+        FontRenderContext frc = new FontRenderContext(null, true, true);
+        Shape glyphs = font.createGlyphVector(frc, text).getOutline(x, y);
+        return transform.matrix().createTransformedShape(glyphs);
     }
     
     @Override
     public void resize(double scaleX, double scaleY) {
-        // Scale the font size
-        int newSize = (int)(font.getSize() * Math.min(scaleX, scaleY));
-        font = font.deriveFont((float)newSize);
+        scaleFont(Math.min(scaleX, scaleY));
+    }
+
+    @Override
+    public void applyTransform(AffineTransform at) {
+        transform.concatenate(at);
+    }
+    
+    @Override
+    public AffineTransform getTransform() {
+        return transform.get();
+    }
+    
+    @Override
+    public void setTransform(AffineTransform at) {
+        transform.set(at);
     }
 
+    /**
+     * Resizes the text to a canvas size measured along its own axes.
+     * Text scales uniformly, by the smaller factor, through its font size.
+     * The top-left corner of the box stays in place and rotation, shear
+     * and mirroring are kept.
+     */
     @Override
     public void resizeAbsolute(int newWidth, int newHeight) {
-        Rectangle bounds = getBounds();
-        if (bounds.width == 0 || bounds.height == 0) return;
-        
-        double scale = Math.min(
-            (double)newWidth / bounds.width,
-            (double)newHeight / bounds.height
-        );
+        Rectangle local = getLocalBounds();
+        double width = local.width * transform.axisScaleX();
+        double height = local.height * transform.axisScaleY();
+        if (width == 0 || height == 0) return;
         
-        int newSize = (int)(font.getSize() * scale);
-        font = font.deriveFont((float)newSize);
+        scaleFont(Math.min(
+            Math.max(1, newWidth) / width,
+            Math.max(1, newHeight) / height
+        ));
+    }
+
+    /**
+     * Scales the font size, moving the baseline so the top-left corner of
+     * the text box stays where it was.
+     */
+    private void scaleFont(double scale) {
+        int top = y - getLocalBounds().height;
+        font = font.deriveFont((float) Math.max(1, font.getSize2D() * scale));
+        y = top + getLocalBounds().height;
     }
 
     @Override
@@ -146,7 +178,9 @@ public class TextObject implements DrawableObject, Serializable {
         System.out.println("  TextObject.fill() called");
         System.out.println("  Changing color from " + color + " to " + fillColor);
         this.color = fillColor;
-        draw(g);
+        if (g != null) {
+            draw(g);
+        }
         System.out.println("  Text fill complete");
     }
 
@@ -167,14 +201,14 @@ public class TextObject implements DrawableObject, Serializable {
     public String getText() { return text; }
     
     /**
-     * Returns the X coordinate.
+     * Returns the X coordinate (local space).
      *
      * @return The X coordinate
      */
     public int getX() { return x; }
     
     /**
-     * Returns the Y coordinate.
+     * Returns the Y coordinate (local space).
      *
      * @return The Y coordinate
      */
@@ -232,18 +266,17 @@ public class TextObject implements DrawableObject, Serializable {
 
     @Override
     public void setRotation(double degrees) {
-        this.rotation = degrees;
+        rotate(degrees - getRotation());
     }
 
     @Override
     public double getRotation() {
-        return rotation;
+        return transform.getRotation();
     }
 
     @Override
     public void rotate(double delta) {
-        rotation += delta;
-        rotation = rotation % 360;
+        transform.rotate(delta, getLocalBounds());
     }
 
     /**
@@ -268,4 +301,24 @@ public class TextObject implements DrawableObject, Serializable {
     public void removeGradient() {
         // Nothing to remove
     }
+
+    /**
+     * Custom deserialization that converts objects from older files
+     * to the current model.
+     *
+     * @param in The object input stream
+     * @throws java.io.IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (transform == null) {
+            // Saved before the transform model: geometry is in canvas space
+            transform = new ObjectTransform();
+            if (rotation != 0) {
+                transform.rotate(rotation, getLocalBounds());
+            }
+            rotation = 0;
+        }
+    }
 }
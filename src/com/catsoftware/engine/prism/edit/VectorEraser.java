@@ -0,0 +1,155 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.edit;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.StrokeObject;
+import com.catsoftware.engine.prism.model.ObjectStore;
+import com.catsoftware.engine.prism.model.SpatialIndex;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Erases parts of vector strokes along the eraser's path.
+ * Strokes under the eraser are split into the pieces that remain, instead
+ * of being deleted whole or painted over. One eraser is used per drag: the
+ * strokes of the document are indexed once when it starts, and each mouse
+ * move only tests the strokes and segments near the new eraser segment.
+ *
+ * <p>Shapes, text and images are left alone.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class VectorEraser {
+
+    private final ObjectStore store;
+    private final double radius;
+    private final SpatialIndex index;
+    private Point last;
+
+    /**
+     * Starts an eraser drag.
+     *
+     * @param store The document's objects
+     * @param radius Eraser radius in canvas pixels
+     */
+    public VectorEraser(ObjectStore store, double radius) {
+        this.store = store;
+        this.radius = Math.max(0.5, radius);
+        this.index = new SpatialIndex();
+        indexStrokes();
+    }
+
+    /**
+     * Adds the strokes currently in the store to the index.
+     */
+    private void indexStrokes() {
+        for (DrawableObject obj : store.snapshot()) {
+            if (obj instanceof StrokeObject) {
+                index.insert(obj);
+            }
+        }
+    }
+
+    /**
+     * Returns the eraser radius.
+     *
+     * @return The radius in canvas pixels
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Moves the eraser to a point, erasing along the way from the previous
+     * point (or just around the point on the first call).
+     *
+     * @param p The eraser position in canvas coordinates
+     * @return true if any stroke changed
+     */
+    public boolean eraseTo(Point p) {
+        Point from = last != null ? last : p;
+        last = new Point(p);
+        return erase(from, p);
+    }
+
+    /**
+     * Ends the current drag segment, so the next {@link #eraseTo} starts fresh.
+     */
+    public void lift() {
+        last = null;
+    }
+
+    /**
+     * Erases along one straight eraser movement.
+     *
+     * @param from Start point in canvas coordinates
+     * @param to End point in canvas coordinates
+     * @return true if any stroke changed
+     */
+    public boolean erase(Point from, Point to) {
+        return erase(from, to, true);
+    }
+
+    private boolean erase(Point from, Point to, boolean retry) {
+        int r = (int) Math.ceil(radius);
+        Rectangle area = new Rectangle(from);
+        area.add(to);
+        area.grow(r, r);
+
+        Map<DrawableObject, List<StrokeObject>> replaced = new IdentityHashMap<>();
+        for (DrawableObject obj : index.query(area)) {
+            List<StrokeObject> pieces = ((StrokeObject) obj).erase(from, to, radius);
+            if (pieces != null) {
+                replaced.put(obj, pieces);
+            }
+        }
+        if (replaced.isEmpty()) {
+            return false;
+        }
+
+        // One copy of the object list for all strokes hit by this movement.
+        // Strokes swapped out since the drag started (copied for editing,
+        // undone or deleted) are no longer in the list and stay as they are
+        Map<DrawableObject, List<StrokeObject>> applied = new IdentityHashMap<>();
+        store.edit(list -> {
+            List<DrawableObject> result = new ArrayList<>(list.size() + replaced.size());
+            for (DrawableObject obj : list) {
+                List<StrokeObject> pieces = replaced.get(obj);
+                if (pieces == null) {
+                    result.add(obj);
+                } else {
+                    result.addAll(pieces);
+                    applied.put(obj, pieces);
+                }
+            }
+            list.clear();
+            list.addAll(result);
+        });
+
+        for (Map.Entry<DrawableObject, List<StrokeObject>> e : applied.entrySet()) {
+            index.remove(e.getKey());
+            for (StrokeObject piece : e.getValue()) {
+                index.insert(piece);
+            }
+        }
+        if (applied.size() < replaced.size()) {
+            // The index is out of date; pick up the strokes that replaced the
+            // missing ones and give them the same eraser movement
+            index.clear();
+            indexStrokes();
+            if (applied.isEmpty() && retry) {
+                return erase(from, to, false);
+            }
+        }
+        return !applied.isEmpty();
+    }
+}
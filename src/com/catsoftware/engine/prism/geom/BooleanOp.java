@@ -0,0 +1,26 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.geom;
+
+/**
+ * Enumeration of the boolean operations that combine vector outlines.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public enum BooleanOp {
+    /** Area covered by any of the outlines */
+    UNION,
+    
+    /** Area covered by all of the outlines */
+    INTERSECT,
+    
+    /** Area of the first (bottom) outline minus all the others */
+    SUBTRACT,
+    
+    /** Area covered by an odd number of outlines */
+    XOR
+}
@@ -0,0 +1,325 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.geom;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.ImageObject;
+import com.catsoftware.engine.prism.draw.PathObject;
+import com.catsoftware.engine.prism.draw.ShapeObject;
+import com.catsoftware.engine.prism.draw.StrokeObject;
+import com.catsoftware.engine.prism.draw.TextObject;
+import com.catsoftware.engine.prism.model.ObjectStore;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boolean operations (union, intersect, subtract, xor) on vector outlines.
+ *
+ * <p>Chaining {@link Area} operations one outline at a time makes every
+ * step pay for all the outlines merged so far. Instead, outlines are first
+ * grouped with a sweep over their bounding boxes: groups that do not touch
+ * cannot interact, so each group is combined on its own and the results are
+ * simply appended. Inside a group, outlines are merged pairwise as a
+ * balanced tree, so each {@code Area} operation works on inputs of similar
+ * size.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class PathBoolean {
+
+    /**
+     * Combines outlines.
+     *
+     * @param shapes The outlines, bottom first (the order matters for {@link BooleanOp#SUBTRACT})
+     * @param op The operation
+     * @return The combined outline
+     */
+    public static Shape combine(List<? extends Shape> shapes, BooleanOp op) {
+        if (shapes.isEmpty()) {
+            return new Path2D.Double();
+        }
+        switch (op) {
+            case UNION:
+            case XOR:
+                return combineGroups(shapes, op);
+            case INTERSECT:
+                return intersect(shapes);
+            case SUBTRACT:
+                return subtract(shapes);
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + op);
+        }
+    }
+
+    /**
+     * Combines objects into a new compound path object styled like the
+     * bottom object.
+     *
+     * @param objects The objects, bottom first
+     * @param op The operation
+     * @return The new path object
+     */
+    public static PathObject combineObjects(List<? extends DrawableObject> objects, BooleanOp op) {
+        List<Shape> shapes = new ArrayList<>(objects.size());
+        for (DrawableObject obj : objects) {
+            shapes.add(obj.toShape());
+        }
+        Shape result = combine(shapes, op);
+        return styledLike(objects.isEmpty() ? null : objects.get(0), result);
+    }
+
+    /**
+     * Replaces objects of a store with their combination, placed where
+     * the topmost of them was.
+     *
+     * @param store The document's objects
+     * @param selection The objects to combine (any order)
+     * @param op The operation
+     * @return The new path object, or null if fewer than two selected objects are in the store
+     */
+    public static PathObject apply(ObjectStore store, Collection<? extends DrawableObject> selection,
+                                   BooleanOp op) {
+        // Order the operands bottom first, as they appear in the store
+        List<DrawableObject> current = store.snapshot();
+        Map<DrawableObject, Integer> order = new IdentityHashMap<>();
+        for (int i = 0; i < current.size(); i++) {
+            order.put(current.get(i), i);
+        }
+        List<DrawableObject> operands = new ArrayList<>();
+        for (DrawableObject obj : selection) {
+            if (order.containsKey(obj)) {
+                operands.add(obj);
+            }
+        }
+        if (operands.size() < 2) {
+            return null;
+        }
+        operands.sort(Comparator.comparingInt(order::get));
+
+        PathObject result = combineObjects(operands, op);
+        Map<DrawableObject, Boolean> remove = new IdentityHashMap<>();
+        for (DrawableObject obj : operands) {
+            remove.put(obj, Boolean.TRUE);
+        }
+        DrawableObject top = operands.get(operands.size() - 1);
+        store.edit(list -> {
+            List<DrawableObject> next = new ArrayList<>(list.size());
+            for (DrawableObject obj : list) {
+                if (obj == top) {
+                    next.add(result);
+                } else if (!remove.containsKey(obj)) {
+                    next.add(obj);
+                }
+            }
+            list.clear();
+            list.addAll(next);
+        });
+        return result;
+    }
+
+    // ------------------ Operations ------------------
+
+    /**
+     * Union or xor: outlines in separate bounding-box groups do not overlap,
+     * so their results are appended without further area operations.
+     */
+    private static Shape combineGroups(List<? extends Shape> shapes, BooleanOp op) {
+        List<List<Shape>> groups = overlapGroups(shapes);
+        if (groups.size() == 1) {
+            return mergeTree(groups.get(0), op);
+        }
+        Path2D.Double result = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        for (List<Shape> group : groups) {
+            result.append(mergeTree(group, op), false);
+        }
+        return result;
+    }
+
+    private static Shape intersect(List<? extends Shape> shapes) {
+        // Empty as soon as the bounding boxes share no area
+        Rectangle2D common = shapes.get(0).getBounds2D();
+        for (Shape s : shapes) {
+            common = common.createIntersection(s.getBounds2D());
+            if (common.isEmpty()) {
+                return new Area();
+            }
+        }
+
+        // Smallest first, so the running result shrinks early
+        List<Shape> sorted = new ArrayList<>(shapes);
+        sorted.sort(Comparator.comparingDouble(PathBoolean::boxArea));
+        Area result = new Area(sorted.get(0));
+        for (int i = 1; i < sorted.size() && !result.isEmpty(); i++) {
+            result.intersect(new Area(sorted.get(i)));
+        }
+        return result;
+    }
+
+    private static Shape subtract(List<? extends Shape> shapes) {
+        Shape base = shapes.get(0);
+        Rectangle2D box = base.getBounds2D();
+
+        // Only outlines touching the base can cut it
+        List<Shape> cutters = new ArrayList<>();
+        for (int i = 1; i < shapes.size(); i++) {
+            if (shapes.get(i).getBounds2D().intersects(box)) {
+                cutters.add(shapes.get(i));
+            }
+        }
+        Area result = new Area(base);
+        if (!cutters.isEmpty()) {
+            result.subtract(new Area(combineGroups(cutters, BooleanOp.UNION)));
+        }
+        return result;
+    }
+
+    /**
+     * Merges a group pairwise, level by level, like a balanced tree.
+     */
+    private static Area mergeTree(List<Shape> group, BooleanOp op) {
+        // Groups are sorted left to right, so the pairs merged first are close in space
+        List<Area> level = new ArrayList<>(group.size());
+        for (Shape s : group) {
+            level.add(new Area(s));
+        }
+        while (level.size() > 1) {
+            List<Area> next = new ArrayList<>((level.size() + 1) / 2);
+            for (int i = 0; i < level.size(); i += 2) {
+                Area a = level.get(i);
+                if (i + 1 < level.size()) {
+                    if (op == BooleanOp.XOR) {
+                        a.exclusiveOr(level.get(i + 1));
+                    } else {
+                        a.add(level.get(i + 1));
+                    }
+                }
+                next.add(a);
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Splits outlines into groups whose bounding boxes are connected,
+     * using a sweep along x and a union-find over overlapping boxes.
+     * Each group is sorted left to right.
+     */
+    static List<List<Shape>> overlapGroups(List<? extends Shape> shapes) {
+        int n = shapes.size();
+        Rectangle2D[] boxes = new Rectangle2D[n];
+        Integer[] byX = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxes[i] = shapes.get(i).getBounds2D();
+            byX[i] = i;
+        }
+        Arrays.sort(byX, Comparator.comparingDouble(i -> boxes[i].getMinX()));
+
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+
+        List<Integer> active = new ArrayList<>();
+        for (int i : byX) {
+            double minX = boxes[i].getMinX();
+            // Boxes ending before this one starts can no longer overlap anything
+            active.removeIf(j -> boxes[j].getMaxX() < minX);
+            for (int j : active) {
+                if (boxes[j].getMinY() <= boxes[i].getMaxY() && boxes[i].getMinY() <= boxes[j].getMaxY()) {
+                    union(parent, i, j);
+                }
+            }
+            active.add(i);
+        }
+
+        Map<Integer, List<Shape>> groups = new LinkedHashMap<>();
+        for (int i : byX) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(shapes.get(i));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    private static double boxArea(Shape s) {
+        Rectangle2D b = s.getBounds2D();
+        return b.getWidth() * b.getHeight();
+    }
+
+    // ------------------ Styling ------------------
+
+    /**
+     * Creates the result object with the fill, outline and opacity of the
+     * given object. Outlines that came from ink (open strokes, text) are
+     * filled with the ink color.
+     */
+    private static PathObject styledLike(DrawableObject source, Shape shape) {
+        Color fill = null;
+        Color color = Color.BLACK;
+        int strokeSize = 0;
+        float alpha = 1.0f;
+
+        if (source instanceof ShapeObject) {
+            ShapeObject s = (ShapeObject) source;
+            fill = s.isFilled() ? s.getFillColor() : null;
+            color = s.getColor();
+            strokeSize = s.getStrokeSize();
+            alpha = s.getAlpha();
+        } else if (source instanceof StrokeObject) {
+            StrokeObject s = (StrokeObject) source;
+            if (s.isFilled()) {
+                fill = s.getFillColor();
+                color = s.getColor();
+                strokeSize = s.getBrushSize();
+            } else {
+                fill = s.getColor();
+            }
+            alpha = s.getAlpha();
+        } else if (source instanceof PathObject) {
+            PathObject s = (PathObject) source;
+            fill = s.getFillColor();
+            color = s.getColor();
+            strokeSize = s.getStrokeSize();
+            alpha = s.getAlpha();
+        } else if (source instanceof TextObject) {
+            TextObject s = (TextObject) source;
+            fill = s.getColor();
+            alpha = s.getAlpha();
+        } else if (source instanceof ImageObject) {
+            fill = Color.GRAY;
+            alpha = ((ImageObject) source).getAlpha();
+        }
+
+        if (fill == null && strokeSize <= 0) {
+            // Keep the result visible
+            fill = color;
+        }
+        return new PathObject(shape, fill, color, strokeSize, alpha);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.io;
+
+import com.catsoftware.engine.prism.assets.ImageAssetStore;
+import com.catsoftware.engine.prism.assets.SymbolLibrary;
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.model.ObjectStore;
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * A read-only view of a Prism document frozen at one version.
+ * Exports, autosave and thumbnails can use it on a background thread while
+ * the user keeps editing: the object list is shared and only objects the
+ * user edits afterwards are copied (see {@link ObjectStore#editable}).
+ * Close the snapshot when done so editing stops copying.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class DocumentSnapshot implements AutoCloseable {
+
+    private final ObjectStore.Snapshot objects;
+
+    final int canvasWidth;
+    final int canvasHeight;
+    final Color backgroundColor;
+    final boolean infinite;
+    final boolean gridEnabled;
+    final String creatorVersion;
+    final int creatorVersionCode;
+    final long timestamp;
+    final ImageAssetStore imageAssets;
+    final SymbolLibrary symbols;
+    final int rasterWidth;
+    final int rasterHeight;
+    final int[] raster;
+    final boolean rasterMissing;
+
+    // Document to hand the raster back to on close, null once closed
+    private PrismDocument rasterOwner;
+
+    DocumentSnapshot(PrismDocument doc, ObjectStore.Snapshot objects, ImageAssetStore imageAssets,
+                     SymbolLibrary symbols, int[] raster) {
+        this.objects = objects;
+        this.canvasWidth = doc.canvasWidth;
+        this.canvasHeight = doc.canvasHeight;
+        this.backgroundColor = doc.backgroundColor;
+        this.infinite = doc.infinite;
+        this.gridEnabled = doc.gridEnabled;
+        this.creatorVersion = doc.getCreatorVersion();
+        this.creatorVersionCode = doc.getCreatorVersionCode();
+        this.timestamp = doc.getTimestamp();
+        this.imageAssets = imageAssets;
+        this.symbols = symbols;
+        this.rasterWidth = doc.getRasterWidth();
+        this.rasterHeight = doc.getRasterHeight();
+        this.raster = raster;
+        this.rasterMissing = raster == null && doc.getRasterPixels() != null;
+        this.rasterOwner = raster != null ? doc : null;
+    }
+
+    /** @return The document version this snapshot was taken at */
+    public long getVersion() { return objects.getVersion(); }
+
+    /** @return The frozen objects, bottom first */
+    public List<DrawableObject> getObjects() { return objects.getObjects(); }
+
+    /** @return The canvas width in pixels */
+    public int getCanvasWidth() { return canvasWidth; }
+
+    /** @return The canvas height in pixels */
+    public int getCanvasHeight() { return canvasHeight; }
+
+    /** @return The background color */
+    public Color getBackgroundColor() { return backgroundColor; }
+
+    /** @return true if the canvas is infinite */
+    public boolean isInfinite() { return infinite; }
+
+    /** @return true if the grid is enabled */
+    public boolean isGridEnabled() { return gridEnabled; }
+
+    /** @return The width of the raster image in pixels */
+    public int getRasterWidth() { return rasterWidth; }
+
+    /** @return The height of the raster image in pixels */
+    public int getRasterHeight() { return rasterHeight; }
+
+    /**
+     * Returns the frozen raster pixels.
+     * Only present if the snapshot was taken with the raster included.
+     * The array is shared with the document until it is next painted, and
+     * the document paints into a copy from then on.
+     *
+     * @return Array of ARGB pixel values (do not modify), or null
+     */
+    public int[] getRasterPixels() { return raster; }
+
+    /**
+     * Checks if the document had raster pixels that were left out of this
+     * snapshot. Such a snapshot cannot be saved without losing them.
+     *
+     * @return true if the snapshot was taken without the document's raster
+     */
+    public boolean isRasterMissing() { return rasterMissing; }
+
+    /**
+     * Builds a standalone document from this snapshot, for example to save it.
+     * The objects are shared with the snapshot, not copied.
+     *
+     * @return A new document with the frozen state
+     */
+    public PrismDocument toDocument() {
+        return new PrismDocument(this);
+    }
+
+    /**
+     * Releases the snapshot so the live document can be edited in place again.
+     */
+    @Override
+    public synchronized void close() {
+        objects.close();
+        if (rasterOwner != null) {
+            rasterOwner.releaseRaster(raster);
+            rasterOwner = null;
+        }
+    }
+}
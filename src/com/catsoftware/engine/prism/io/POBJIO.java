@@ -4,6 +4,7 @@
  */
 package com.catsoftware.engine.prism.io;
 
+import com.catsoftware.engine.prism.assets.SymbolLibrary;
 import com.catsoftware.engine.prism.draw.DrawableObject;
 import java.io.File;
 import java.io.FileInputStream;
@@ -58,4 +59,45 @@ public class POBJIO {
             return (List<DrawableObject>) ois.readObject();
         }
     }
+
+    /**
+     * Opens a streaming writer that appends objects one at a time.
+     * Use this instead of {@link #saveObjects} for very large object sets.
+     *
+     * @param file The destination file
+     * @return The writer (must be closed)
+     * @throws IOException If the file cannot be created
+     */
+    public static POBJWriter openWriter(File file) throws IOException {
+        return new POBJWriter(file);
+    }
+
+    /**
+     * Opens a streaming reader over a .pobj file.
+     * Accepts both streaming files and files from {@link #saveObjects}.
+     *
+     * @param file The source file
+     * @return The reader (must be closed)
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If a legacy file contains unknown classes
+     */
+    public static POBJReader openReader(File file) throws IOException, ClassNotFoundException {
+        return new POBJReader(file);
+    }
+
+    /**
+     * Opens a streaming reader that merges the file's symbols into a
+     * library, typically the one of the document being imported into.
+     *
+     * @param file The source file
+     * @param symbols The library symbols are interned into
+     * @return The reader (must be closed)
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If a legacy file contains unknown classes
+     */
+    public static POBJReader openReader(File file, SymbolLibrary symbols) throws IOException, ClassNotFoundException {
+        POBJReader reader = new POBJReader(file);
+        reader.setSymbolLibrary(symbols);
+        return reader;
+    }
 }
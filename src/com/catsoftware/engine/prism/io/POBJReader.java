@@ -0,0 +1,403 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.io;
+
+import com.catsoftware.engine.prism.assets.SymbolLibrary;
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads Prism objects from a .pobj file one at a time.
+ * Only the current object is held in memory, so huge files can be filtered
+ * or imported with bounded heap. Files written with an index support
+ * jumping to any object through {@link #seek}.
+ *
+ * <p>Symbols are read once from their own records and shared by every
+ * object that uses them. Set a {@link SymbolLibrary} to merge them with the
+ * symbols of the document the objects are imported into.</p>
+ *
+ * <p>Files written by {@link POBJIO#saveObjects} are also accepted; they are
+ * loaded in full since that format has no record boundaries.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class POBJReader implements Closeable, Iterable<DrawableObject> {
+
+    private final FileChannel channel;
+    private final List<DrawableObject> legacy;
+    private final Inflater inflater = new Inflater();
+    private final Map<String, Symbol> symbols = new HashMap<>();
+    private SymbolLibrary library;
+    private DataInputStream in;
+    private byte[] buffer = new byte[8192];
+    private long indexOffset = -1;
+    private int count = -1;
+    private int symbolCount;
+    private boolean symbolsLoaded;
+    private int next;
+    private boolean finished;
+
+    /**
+     * Opens a .pobj file for reading.
+     *
+     * @param file The source file
+     * @throws IOException If the file cannot be read or is not a .pobj file
+     * @throws ClassNotFoundException If a legacy file contains unknown classes
+     */
+    public POBJReader(File file) throws IOException, ClassNotFoundException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.remaining() >= 2 && (header.getShort(0) & 0xFFFF) == 0x1F8B) {
+                // Older GZIP list format
+                legacy = POBJIO.loadObjects(file);
+                count = legacy.size();
+                return;
+            }
+            legacy = null;
+
+            if (header.remaining() < 8 || header.getInt() != POBJWriter.MAGIC) {
+                throw new StreamCorruptedException("Not a Prism object file: " + file);
+            }
+            int version = header.getInt();
+            if (version > POBJWriter.FORMAT_VERSION) {
+                throw new StreamCorruptedException("Unsupported .pobj version: " + version);
+            }
+
+            readTrailer(version);
+            position(8);
+        } catch (IOException | ClassNotFoundException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the trailer, if the file was closed properly.
+     */
+    private void readTrailer(int version) throws IOException {
+        int trailerSize = version < 2 ? POBJWriter.V1_TRAILER_SIZE : POBJWriter.TRAILER_SIZE;
+        long size = channel.size();
+        if (size < 8 + 4 + trailerSize) {
+            return;
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(trailerSize);
+        channel.read(trailer, size - trailerSize);
+        trailer.flip();
+        long offset = trailer.getLong();
+        int n = trailer.getInt();
+        int symbolN = version < 2 ? 0 : trailer.getInt();
+        if (trailer.getInt() == POBJWriter.END_MAGIC) {
+            indexOffset = offset;
+            count = n;
+            symbolCount = symbolN;
+        }
+    }
+
+    private void position(long pos) throws IOException {
+        channel.position(pos);
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    }
+
+    /**
+     * Sets the library symbols are merged into as they are read. A symbol
+     * the library already holds (same id) is used instead of the file's
+     * copy, so importing the same objects twice does not duplicate it.
+     * Call before reading.
+     *
+     * @param library The target library, or null to keep the file's symbols apart
+     */
+    public void setSymbolLibrary(SymbolLibrary library) {
+        this.library = library;
+    }
+
+    /**
+     * Returns the number of objects in the file.
+     *
+     * @return The object count, or -1 if unknown (file was not closed properly)
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Checks if the file has a record index.
+     *
+     * @return true if {@link #seek} can jump directly to an object
+     */
+    public boolean hasIndex() {
+        return legacy != null || indexOffset >= 0;
+    }
+
+    /**
+     * Positions the reader so the next {@link #read} returns object {@code n}.
+     * Uses the index when present, otherwise skips object records without
+     * deserializing them (symbol records on the way are still read).
+     *
+     * @param n The zero-based object number
+     * @throws IOException If an I/O error occurs or {@code n} is out of range
+     */
+    public void seek(int n) throws IOException {
+        if (n < 0 || (count >= 0 && n > count)) {
+            throw new IOException("Object index out of range: " + n);
+        }
+
+        if (legacy != null) {
+            next = n;
+            return;
+        }
+
+        finished = false;
+        if (indexOffset >= 0) {
+            loadSymbols();
+            if (n == count) {
+                finished = true;
+            } else {
+                ByteBuffer entry = ByteBuffer.allocate(8);
+                channel.read(entry, indexOffset + 8L * n);
+                entry.flip();
+                position(entry.getLong());
+            }
+            next = n;
+            return;
+        }
+
+        if (n < next) {
+            position(8);
+            next = 0;
+        }
+        try {
+            while (next < n) {
+                int length = nextRecord();
+                if (length < 0) {
+                    throw new EOFException("Object index out of range: " + n);
+                }
+                skipFully(length);
+                next++;
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void skipFully(int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated object record");
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * Reads the next object.
+     *
+     * @return The object, or null at the end of the file
+     * @throws IOException If an I/O error occurs
+     * @throws ClassNotFoundException If the serialized class cannot be found
+     */
+    public DrawableObject read() throws IOException, ClassNotFoundException {
+        if (legacy != null) {
+            return next < legacy.size() ? legacy.get(next++) : null;
+        }
+        if (finished) {
+            return null;
+        }
+
+        int length;
+        try {
+            length = nextRecord();
+        } catch (EOFException e) {
+            // Truncated file without end marker
+            length = -1;
+        }
+        if (length < 0) {
+            finished = true;
+            return null;
+        }
+
+        DrawableObject obj = (DrawableObject) inflate(length);
+        next++;
+        return obj;
+    }
+
+    /**
+     * Reads the symbol records in front of the next object record.
+     *
+     * @return The length of the object record, or -1 at the end marker
+     */
+    private int nextRecord() throws IOException, ClassNotFoundException {
+        int length = in.readInt();
+        while (length == POBJWriter.SYMBOL_RECORD) {
+            int symbolLength = in.readInt();
+            if (symbolsLoaded) {
+                skipFully(symbolLength);
+            } else {
+                define((Symbol) inflate(symbolLength));
+            }
+            length = in.readInt();
+        }
+        return length;
+    }
+
+    /**
+     * Reads every symbol record through the index, so objects can be read
+     * in any order.
+     */
+    private void loadSymbols() throws IOException {
+        if (symbolsLoaded) return;
+        try {
+            ByteBuffer entry = ByteBuffer.allocate(8);
+            for (int i = 0; i < symbolCount; i++) {
+                entry.clear();
+                channel.read(entry, indexOffset + 8L * (count + i));
+                entry.flip();
+                position(entry.getLong());
+                if (in.readInt() != POBJWriter.SYMBOL_RECORD) {
+                    throw new StreamCorruptedException("Index does not point to a symbol record");
+                }
+                define((Symbol) inflate(in.readInt()));
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+        symbolsLoaded = true;
+    }
+
+    private void define(Symbol symbol) {
+        if (symbols.containsKey(symbol.getId())) return;
+        symbols.put(symbol.getId(), library != null ? library.intern(symbol) : symbol);
+    }
+
+    /**
+     * Reads and deserializes one record body.
+     */
+    private Object inflate(int length) throws IOException, ClassNotFoundException {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+
+        inflater.reset();
+        try (ObjectInputStream ois = new SymbolRefInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(buffer, 0, length), inflater))) {
+            return ois.readObject();
+        }
+    }
+
+    /**
+     * Returns an iterator over the remaining objects.
+     * I/O errors are rethrown as {@link UncheckedIOException}.
+     *
+     * @return The iterator
+     */
+    @Override
+    public Iterator<DrawableObject> iterator() {
+        return new Iterator<DrawableObject>() {
+            private DrawableObject pending;
+
+            @Override
+            public boolean hasNext() {
+                if (pending == null) {
+                    try {
+                        pending = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (ClassNotFoundException e) {
+                        throw new UncheckedIOException(new IOException(e));
+                    }
+                }
+                return pending != null;
+            }
+
+            @Override
+            public DrawableObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DrawableObject obj = pending;
+                pending = null;
+                return obj;
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential stream over the remaining objects.
+     * Closing the stream does not close this reader.
+     *
+     * @return The stream of objects
+     */
+    public Stream<DrawableObject> stream() {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+            false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    /**
+     * Resolves symbol ids written by {@link POBJWriter} to the symbols read
+     * so far.
+     */
+    private class SymbolRefInputStream extends ObjectInputStream {
+
+        SymbolRefInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof POBJWriter.SymbolRef) {
+                String id = ((POBJWriter.SymbolRef) obj).id;
+                Symbol symbol = symbols.get(id);
+                if (symbol == null) {
+                    throw new InvalidObjectException("Unknown symbol: " + id);
+                }
+                return symbol;
+            }
+            return obj;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.io;
+
+import com.catsoftware.engine.prism.assets.SymbolLibrary;
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes Prism objects to a streaming .pobj file one record at a time.
+ * Each object is serialized and compressed on its own, so memory use does
+ * not grow with the number of objects written. An optional index of record
+ * offsets lets {@link POBJReader} jump straight to any object.
+ *
+ * <p>Symbols are written once, in a record of their own placed before the
+ * first object that uses them; object records only hold the symbol id.</p>
+ *
+ * <p>Layout: header ({@code MAGIC}, {@code FORMAT_VERSION}), records
+ * (length + deflated object, or {@code SYMBOL_RECORD} + length + deflated
+ * symbol), an end marker, the optional index (object offsets, then symbol
+ * offsets) and a fixed-size trailer (index offset, object count, symbol
+ * count, {@code END_MAGIC}).</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class POBJWriter implements Closeable {
+
+    /** Magic number at the start of streaming .pobj files ("PObS") */
+    static final int MAGIC = 0x504F4253;
+
+    /** Magic number at the very end of streaming .pobj files ("PObE") */
+    static final int END_MAGIC = 0x504F4245;
+
+    /** Streaming format version */
+    static final int FORMAT_VERSION = 2;
+
+    /** Size of the trailer in bytes */
+    static final int TRAILER_SIZE = 20;
+
+    /** Size of the trailer in version 1 files, which had no symbol records */
+    static final int V1_TRAILER_SIZE = 16;
+
+    /** Tag in place of a record length that starts a symbol record */
+    static final int SYMBOL_RECORD = -2;
+
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final boolean writeIndex;
+    private final Set<String> writtenSymbols = new HashSet<>();
+    private long[] offsets;
+    private long[] symbolOffsets;
+    private long position;
+    private int count;
+    private int symbolCount;
+    private boolean closed;
+
+    /**
+     * Opens a writer that also writes a record index.
+     *
+     * @param file The destination file
+     * @throws IOException If the file cannot be created
+     */
+    public POBJWriter(File file) throws IOException {
+        this(file, true);
+    }
+
+    /**
+     * Opens a writer.
+     *
+     * @param file The destination file
+     * @param writeIndex true to write an index for random access
+     * @throws IOException If the file cannot be created
+     */
+    public POBJWriter(File file, boolean writeIndex) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        this.writeIndex = writeIndex;
+        this.offsets = writeIndex ? new long[64] : null;
+        this.symbolOffsets = writeIndex ? new long[16] : null;
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        position = 8;
+    }
+
+    /**
+     * Appends one object to the file. Symbols it uses that are not in the
+     * file yet are written first.
+     *
+     * @param obj The object to write
+     * @throws IOException If an I/O error occurs
+     */
+    public void write(DrawableObject obj) throws IOException {
+        if (closed) {
+            throw new IOException("Writer is closed");
+        }
+
+        for (Symbol symbol : SymbolLibrary.collect(Collections.singletonList(obj)).values()) {
+            if (writtenSymbols.add(symbol.getId())) {
+                writeSymbol(symbol);
+            }
+        }
+
+        serialize(obj, null);
+        if (writeIndex) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count] = position;
+        }
+
+        out.writeInt(record.size());
+        record.writeTo(out);
+        position += 4 + record.size();
+        count++;
+    }
+
+    /**
+     * Writes a symbol record. Symbols placed in its parts must be written
+     * before it.
+     */
+    private void writeSymbol(Symbol symbol) throws IOException {
+        serialize(symbol, symbol);
+        if (writeIndex) {
+            if (symbolCount == symbolOffsets.length) {
+                symbolOffsets = Arrays.copyOf(symbolOffsets, symbolCount * 2);
+            }
+            symbolOffsets[symbolCount] = position;
+        }
+
+        out.writeInt(SYMBOL_RECORD);
+        out.writeInt(record.size());
+        record.writeTo(out);
+        position += 8 + record.size();
+        symbolCount++;
+    }
+
+    /**
+     * Serializes and compresses one record into the record buffer.
+     *
+     * @param obj The object to write
+     * @param defining The symbol the record defines, or null for an object record
+     */
+    private void serialize(Object obj, Symbol defining) throws IOException {
+        record.reset();
+        deflater.reset();
+        DeflaterOutputStream zip = new DeflaterOutputStream(record, deflater);
+        try (ObjectOutputStream oos = new SymbolRefOutputStream(zip, defining)) {
+            oos.writeObject(obj);
+        }
+    }
+
+    /**
+     * Returns the number of objects written so far.
+     *
+     * @return The object count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the end marker, index and trailer and closes the file.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            // End of records
+            out.writeInt(-1);
+            position += 4;
+
+            long indexOffset = -1;
+            if (writeIndex) {
+                indexOffset = position;
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(offsets[i]);
+                }
+                for (int i = 0; i < symbolCount; i++) {
+                    out.writeLong(symbolOffsets[i]);
+                }
+            }
+
+            out.writeLong(indexOffset);
+            out.writeInt(count);
+            out.writeInt(symbolCount);
+            out.writeInt(END_MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    // ------------------ Symbol references ------------------
+
+    /**
+     * Placeholder written in place of a symbol already in the file.
+     */
+    static final class SymbolRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String id;
+
+        SymbolRef(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class SymbolRefOutputStream extends ObjectOutputStream {
+        private final Symbol defining;
+
+        SymbolRefOutputStream(OutputStream out, Symbol defining) throws IOException {
+            super(out);
+            this.defining = defining;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj instanceof Symbol && obj != defining) {
+                return new SymbolRef(((Symbol) obj).getId());
+            }
+            return obj;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package com.catsoftware.engine.prism.io;
 
+import com.catsoftware.engine.prism.assets.ImageAssetStore;
+import com.catsoftware.engine.prism.assets.SymbolLibrary;
 import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.GroupObject;
+import com.catsoftware.engine.prism.draw.ImageObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import com.catsoftware.engine.prism.draw.SymbolObject;
+import com.catsoftware.engine.prism.model.ObjectStore;
+import com.catsoftware.engine.prism.raster.FloodFill;
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a complete Prism document containing both raster and vector data.
@@ -20,7 +35,10 @@ public class PrismDocument implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
-    private int version = 1;
+    /** Format version written by this engine (2 = encoded raster layer) */
+    private static final int FORMAT_VERSION = 2;
+
+    private int version = FORMAT_VERSION;
 
     public int canvasWidth;
     public int canvasHeight;
@@ -34,11 +52,20 @@ public class PrismDocument implements Serializable {
     public boolean infinite;
     public boolean gridEnabled;
 
-    public List<DrawableObject> objects = 
-        Collections.synchronizedList(new ArrayList<>());
+    public List<DrawableObject> objects = new ObjectStore();
+
+    private ImageAssetStore imageAssets = new ImageAssetStore();
+
+    private SymbolLibrary symbols = new SymbolLibrary();
 
     private int rasterWidth;
     private int rasterHeight;
+    private transient int[] raster;
+
+    // Open snapshots sharing the raster array; it is copied before the next write
+    private transient int rasterShares;
+
+    /** Raw pixel slot of version 1 files, only set while reading them */
     private int[] rasterPixels;
 
     /**
@@ -51,25 +78,181 @@ public class PrismDocument implements Serializable {
         this.timestamp = System.currentTimeMillis();
     }
 
+    /**
+     * Creates a document holding the state of a snapshot.
+     *
+     * @param s The snapshot to copy from
+     */
+    PrismDocument(DocumentSnapshot s) {
+        this.creatorVersion = s.creatorVersion;
+        this.creatorVersionCode = s.creatorVersionCode;
+        this.timestamp = s.timestamp;
+        this.canvasWidth = s.canvasWidth;
+        this.canvasHeight = s.canvasHeight;
+        this.backgroundColor = s.backgroundColor;
+        this.infinite = s.infinite;
+        this.gridEnabled = s.gridEnabled;
+        this.objects = new ObjectStore(s.getObjects());
+        this.imageAssets = s.imageAssets;
+        this.symbols = s.symbols;
+        this.rasterWidth = s.rasterWidth;
+        this.rasterHeight = s.rasterHeight;
+        this.raster = s.raster;
+        // The array still belongs to the snapshot
+        this.rasterShares = s.raster != null ? 1 : 0;
+    }
+
     // ------------------ Objects ------------------
 
     /**
      * Returns the list of vector objects in this document.
-     * The list is thread-safe (synchronized).
+     * The list is thread-safe: iteration works on a snapshot and needs no locking.
      *
      * @return The list of drawable objects
      */
     public List<DrawableObject> getObjects() {
-        return objects;
+        return getObjectStore();
     }
 
     /**
-     * Sets the list of vector objects in this document.
+     * Returns the copy-on-write store holding this document's objects.
+     * Use {@link ObjectStore#edit} to apply several changes as one batch.
+     *
+     * @return The object store
+     */
+    public ObjectStore getObjectStore() {
+        List<DrawableObject> current = objects;
+        if (current instanceof ObjectStore) {
+            return (ObjectStore) current;
+        }
+        // The public field was replaced with a plain list
+        ObjectStore store = new ObjectStore(current != null ? current : Collections.emptyList());
+        objects = store;
+        return store;
+    }
+
+    /**
+     * Replaces the vector objects in this document.
+     * The objects are copied into the document's store.
      *
      * @param objects The new list of objects (null becomes empty list)
      */
     public void setObjects(List<DrawableObject> objects) {
-        this.objects = objects != null ? objects : new ArrayList<>();
+        getObjectStore().setAll(objects != null ? objects : Collections.emptyList());
+    }
+
+    /**
+     * Freezes the current document state for a background reader such as
+     * export, autosave or thumbnail generation.
+     * While the snapshot is open, get objects to mutate through
+     * {@link ObjectStore#editable} so the frozen objects stay untouched.
+     *
+     * <p>The raster is not copied: the snapshot shares the pixel array, and
+     * the first write through {@link #editableRasterPixels} while it is open
+     * copies the array for the document instead.</p>
+     *
+     * @param includeRaster true to include the raster pixels in the snapshot
+     * @return The snapshot (must be closed)
+     */
+    public DocumentSnapshot snapshot(boolean includeRaster) {
+        int[] pixels = null;
+        if (includeRaster) {
+            synchronized (this) {
+                pixels = raster;
+                if (pixels != null) {
+                    rasterShares++;
+                }
+            }
+        }
+        return new DocumentSnapshot(this, getObjectStore().freeze(), imageAssets.copy(), symbols.copy(), pixels);
+    }
+
+    /**
+     * Called by a snapshot when it is closed, so the raster array can be
+     * written in place again once no snapshot shares it.
+     *
+     * @param pixels The array the snapshot was given
+     */
+    synchronized void releaseRaster(int[] pixels) {
+        // After a copy the document has a new array and old shares no longer count
+        if (pixels == raster && rasterShares > 0) {
+            rasterShares--;
+        }
+    }
+
+    // ------------------ Assets ------------------
+
+    /**
+     * Returns the store of images shared by this document's image objects.
+     * Intern images here so that identical images are stored once.
+     *
+     * @return The image asset store
+     */
+    public ImageAssetStore getImageAssets() {
+        return imageAssets;
+    }
+
+    /**
+     * Returns the library of symbols placed in this document.
+     *
+     * @return The symbol library
+     */
+    public SymbolLibrary getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Removes symbols that no object in the document uses anymore.
+     * Snapshots taken earlier keep their own copy of the library.
+     *
+     * @return The number of removed symbols
+     */
+    public int purgeSymbols() {
+        return symbols.purge(getObjectStore().snapshot());
+    }
+
+    /**
+     * Turns objects into a new symbol and replaces them with one instance
+     * of it, placed where the topmost of them was.
+     *
+     * @param name The symbol name
+     * @param selection The objects to turn into a symbol (any order)
+     * @return The new instance, or null if no selected object is in the document
+     */
+    public SymbolObject createSymbol(String name, Collection<? extends DrawableObject> selection) {
+        ObjectStore store = getObjectStore();
+        Map<DrawableObject, Boolean> selected = new IdentityHashMap<>();
+        for (DrawableObject obj : selection) {
+            selected.put(obj, Boolean.TRUE);
+        }
+
+        // Keep the parts in their drawing order
+        List<DrawableObject> parts = new ArrayList<>();
+        for (DrawableObject obj : store.snapshot()) {
+            if (selected.containsKey(obj)) {
+                parts.add(obj);
+            }
+        }
+        if (parts.isEmpty()) {
+            return null;
+        }
+
+        Symbol symbol = symbols.define(name, parts);
+        SymbolObject instance = new SymbolObject(symbol);
+        DrawableObject top = parts.get(parts.size() - 1);
+        store.edit(list -> {
+            List<DrawableObject> next = new ArrayList<>(list.size());
+            for (DrawableObject obj : list) {
+                if (obj == top) {
+                    next.add(instance);
+                } else if (!selected.containsKey(obj)) {
+                    next.add(obj);
+                }
+            }
+            list.clear();
+            list.addAll(next);
+        });
+        return instance;
     }
 
     // ------------------ Raster ------------------
@@ -88,18 +271,56 @@ public class PrismDocument implements Serializable {
 
     /**
      * Returns the raw pixel data of the raster image.
-     * Each int represents an ARGB pixel.
+     * Each int represents an ARGB pixel. The array may be shared with open
+     * snapshots, so only read it; use {@link #editableRasterPixels} to paint.
      *
      * @return Array of pixel values
      */
-    public int[] getRasterPixels() { return rasterPixels; }
+    public synchronized int[] getRasterPixels() { return raster; }
+
+    /**
+     * Returns the raw pixel data of the raster image for writing, for
+     * example as the target of a brush engine. If an open snapshot shares
+     * the array, the document switches to a copy first, so call this again
+     * after taking a snapshot instead of keeping the array.
+     *
+     * @return Array of pixel values, or null if there is no raster
+     */
+    public synchronized int[] editableRasterPixels() {
+        if (rasterShares > 0 && raster != null) {
+            raster = raster.clone();
+            rasterShares = 0;
+        }
+        return raster;
+    }
     
     /**
      * Sets the raw pixel data of the raster image.
+     * To be saved, the array must hold exactly raster width times height
+     * pixels, so set the size as well.
      *
      * @param p Array of ARGB pixel values
      */
-    public void setRasterPixels(int[] p) { rasterPixels = p; }
+    public synchronized void setRasterPixels(int[] p) {
+        raster = p;
+        rasterShares = 0;
+    }
+
+    /**
+     * Bucket-fills the raster region connected to a pixel.
+     *
+     * @param x Seed X
+     * @param y Seed Y
+     * @param argb The fill color
+     * @param tolerance Largest per-channel difference still filled (0 - 255)
+     * @param antialias true for soft edges
+     * @return The changed area for undo and repaint, or null if nothing changed
+     */
+    public Rectangle floodFill(int x, int y, int argb, int tolerance, boolean antialias) {
+        int[] pixels = editableRasterPixels();
+        if (pixels == null) return null;
+        return new FloodFill(tolerance, antialias).fill(pixels, rasterWidth, rasterHeight, x, y, argb);
+    }
 
     // ------------------ Grid ------------------
 
@@ -139,4 +360,87 @@ public class PrismDocument implements Serializable {
     public void setCanvasHeight(int canvasHeight) {
         this.canvasHeight = canvasHeight;
     }
-}
\ No newline at end of file
+
+    // ------------------ Serialization ------------------
+
+    /**
+     * Writes the document, storing the raster through {@link RasterCodec}
+     * instead of as a raw int array. The asset store is brought in line
+     * with the objects first: assets of all objects and symbols are
+     * interned and assets no longer shown are dropped, so the file holds
+     * each image in use once and no deleted ones.
+     *
+     * @param out The object output stream
+     * @throws IOException If writing fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        version = FORMAT_VERSION;
+        // The whole symbol library is written, used or not
+        List<DrawableObject> live = new ArrayList<>(objects);
+        for (Symbol symbol : symbols.getSymbols()) {
+            live.addAll(symbol.getParts());
+        }
+        internAssets(live);
+        imageAssets.purge(live);
+        out.defaultWriteObject();
+        RasterCodec.write(out, raster, rasterWidth, rasterHeight);
+    }
+
+    /**
+     * Adds the assets of image objects, including those inside groups,
+     * to the document's asset store. Assets are canonical by content, so
+     * the objects already share the stored instance and are not changed.
+     */
+    private void internAssets(Collection<? extends DrawableObject> list) {
+        for (DrawableObject obj : list) {
+            if (obj instanceof ImageObject) {
+                ImageObject img = (ImageObject) obj;
+                if (img.getAsset() != null) {
+                    imageAssets.intern(img.getAsset());
+                }
+            } else if (obj instanceof GroupObject) {
+                internAssets(((GroupObject) obj).getChildren());
+            }
+        }
+    }
+
+    /**
+     * Reads the document, decoding the raster straight into a new pixel array.
+     * Version 1 files still carry the raw pixel array and are used as is.
+     *
+     * @param in The object input stream
+     * @throws IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (!(objects instanceof ObjectStore)) {
+            // Version 1 files store a synchronized list
+            objects = new ObjectStore(objects != null ? objects : Collections.emptyList());
+        }
+        if (imageAssets == null) {
+            imageAssets = new ImageAssetStore();
+        }
+        if (symbols == null) {
+            // Saved before symbols existed
+            symbols = new SymbolLibrary();
+        }
+        if (version >= 2) {
+            raster = RasterCodec.read(in, rasterWidth, rasterHeight);
+        } else {
+            raster = rasterPixels;
+            rasterPixels = null;
+        }
+        if (version < 2) {
+            // Images of older files were embedded per object; share equal ones
+            for (DrawableObject obj : objects) {
+                if (obj instanceof ImageObject) {
+                    ImageObject img = (ImageObject) obj;
+                    if (img.getAsset() != null) {
+                        img.setAsset(imageAssets.intern(img.getAsset()));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -4,27 +4,44 @@
  */
 package com.catsoftware.engine.prism.io;
 
+import com.catsoftware.engine.prism.render.PreviewRenderer;
+import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import javax.imageio.ImageIO;
 
 /**
  * Handles saving and loading of complete Prism documents (.prism files).
  * Uses Java serialization with buffered streams for better performance.
+ * Files start with a small PNG preview chunk so file browsers can show a
+ * thumbnail without loading the document (see {@link #loadPreview}).
  *
  * @author lynxjr
  * @version 1.0.00
  * @since Prism B1
  */
 public class PrismIO {
-    
+
+    /** Magic number of the preview chunk ("PRVW") */
+    private static final int PREVIEW_MAGIC = 0x50525657;
+
+    /** Maximum width and height of the embedded preview */
+    public static final int PREVIEW_SIZE = 256;
+
     /**
-     * Saves a Prism document to a file.
+     * Saves a Prism document to a file, with an embedded preview.
      * The document is serialized using Java's object serialization.
      *
      * @param file The destination file
@@ -32,11 +49,49 @@ public class PrismIO {
      * @throws IOException If an I/O error occurs
      */
     public static void save(File file, PrismDocument doc) throws IOException {
-        try (ObjectOutputStream out =
-                 new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        save(file, doc, true);
+    }
+
+    /**
+     * Saves a Prism document to a file.
+     *
+     * @param file The destination file
+     * @param doc The PrismDocument to save
+     * @param writePreview true to embed a preview image for thumbnails
+     * @throws IOException If an I/O error occurs
+     */
+    public static void save(File file, PrismDocument doc, boolean writePreview) throws IOException {
+        byte[] preview = writePreview ? encodePreview(doc) : null;
+
+        try (BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(file))) {
+            if (preview != null) {
+                DataOutputStream header = new DataOutputStream(bos);
+                header.writeInt(PREVIEW_MAGIC);
+                header.writeInt(preview.length);
+                header.write(preview);
+            }
 
+            ObjectOutputStream out = new ObjectOutputStream(bos);
             out.writeObject(doc);
+            out.flush();
+        }
+    }
+
+    /**
+     * Saves a frozen document state to a file.
+     * Safe to call on a background thread while the live document is edited.
+     *
+     * @param file The destination file
+     * @param snapshot The snapshot to save, taken with the raster included
+     * @throws IOException If an I/O error occurs
+     * @throws IllegalArgumentException If the snapshot left out the document's raster
+     */
+    public static void save(File file, DocumentSnapshot snapshot) throws IOException {
+        if (snapshot.isRasterMissing()) {
+            throw new IllegalArgumentException("Snapshot was taken without the raster layer; "
+                + "use snapshot(true) to save it");
         }
+        save(file, snapshot.toDocument());
     }
 
     /**
@@ -49,11 +104,76 @@ public class PrismIO {
      * @throws ClassNotFoundException If the serialized class cannot be found
      */
     public static PrismDocument load(File file) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in =
-                 new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
-
+        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file))) {
+            skipPreview(bis);
+            ObjectInputStream in = new ObjectInputStream(bis);
             return (PrismDocument) in.readObject();
         }
     }
-}
 
+    /**
+     * Reads only the embedded preview of a Prism file.
+     * The document itself is not read.
+     *
+     * @param file The source file
+     * @return The preview image, or null if the file has no preview
+     * @throws IOException If an I/O error occurs
+     */
+    public static BufferedImage loadPreview(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 8192))) {
+            if (file.length() < 8 || in.readInt() != PREVIEW_MAGIC) {
+                return null;
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return ImageIO.read(new ByteArrayInputStream(data));
+        }
+    }
+
+    /**
+     * Skips the preview chunk, if any. Files saved before previews were
+     * added start directly with the serialization header.
+     */
+    private static void skipPreview(InputStream in) throws IOException {
+        in.mark(8);
+        DataInputStream data = new DataInputStream(in);
+        int magic;
+        try {
+            magic = data.readInt();
+        } catch (EOFException e) {
+            magic = 0;
+        }
+        if (magic != PREVIEW_MAGIC) {
+            in.reset();
+            return;
+        }
+        long remaining = data.readInt();
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Truncated preview chunk");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Renders and encodes the preview. A document that cannot be rendered
+     * is still saved, just without a preview.
+     */
+    private static byte[] encodePreview(PrismDocument doc) {
+        try {
+            BufferedImage preview = PreviewRenderer.render(
+                doc.getCanvasWidth(), doc.getCanvasHeight(), doc.backgroundColor,
+                doc.getRasterPixels(), doc.getRasterWidth(), doc.getRasterHeight(),
+                doc.getObjectStore().snapshot(), PREVIEW_SIZE);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(preview, "png", baos);
+            return baos.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact encoder for the raster layer of a Prism document.
+ * Each row is split into runs of identical pixels (transparent or solid)
+ * and literal spans. Literal spans are stored as PNG-style filter
+ * residuals (none, left or up) and the whole stream is deflated.
+ * Decoding writes straight into the destination pixel array.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class RasterCodec {
+
+    /** Row is stored as raw pixel values */
+    private static final int FILTER_NONE = 0;
+
+    /** Row is stored as the difference to the pixel on the left */
+    private static final int FILTER_SUB = 1;
+
+    /** Row is stored as the difference to the pixel above */
+    private static final int FILTER_UP = 2;
+
+    /** Shortest span of identical pixels worth encoding as a run */
+    private static final int MIN_RUN = 4;
+
+    private static final int OP_RUN = 0;
+    private static final int OP_LITERAL = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Encodes a pixel array and writes it to a stream.
+     * The stream is not closed.
+     *
+     * @param pixels ARGB pixel values, row by row
+     * @param width The raster width
+     * @param height The raster height
+     * @param out The destination stream
+     * @throws IOException If an I/O error occurs
+     */
+    public static void encode(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        checkSize(pixels, width, height);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            DeflaterOutputStream zip = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(zip, BUFFER_SIZE));
+
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                int filter = chooseFilter(pixels, row, width, y > 0);
+                data.writeByte(filter);
+
+                int i = 0;
+                while (i < width) {
+                    int run = runLength(pixels, row + i, width - i);
+                    if (run >= MIN_RUN) {
+                        writeVarInt(data, (run << 1) | OP_RUN);
+                        data.writeInt(pixels[row + i]);
+                        i += run;
+                        continue;
+                    }
+
+                    // Literal span until the next run worth encoding
+                    int start = i;
+                    while (i < width && runLength(pixels, row + i, Math.min(MIN_RUN, width - i)) < MIN_RUN) {
+                        i++;
+                    }
+                    writeVarInt(data, ((i - start) << 1) | OP_LITERAL);
+                    for (int x = start; x < i; x++) {
+                        data.writeInt(residual(pixels, row, x, width, filter));
+                    }
+                }
+            }
+
+            data.flush();
+            zip.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decodes a stream produced by {@link #encode} into a pixel array.
+     * Pixels are written directly into {@code dest} without intermediate copies.
+     *
+     * @param in The source stream (read up to the end of the encoded data)
+     * @param dest The destination pixel array
+     * @param width The raster width
+     * @param height The raster height
+     * @throws IOException If an I/O error occurs or the data is corrupt
+     */
+    public static void decode(InputStream in, int[] dest, int width, int height) throws IOException {
+        checkSize(dest, width, height);
+
+        Inflater inflater = new Inflater();
+        try {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(in, inflater, BUFFER_SIZE), BUFFER_SIZE));
+
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                int filter = data.readUnsignedByte();
+                if (filter > FILTER_UP) {
+                    throw new StreamCorruptedException("Unknown raster filter: " + filter);
+                }
+
+                int x = 0;
+                while (x < width) {
+                    int op = readVarInt(data);
+                    int length = op >>> 1;
+                    if (length == 0 || length > width - x) {
+                        throw new StreamCorruptedException("Raster span overflows row " + y);
+                    }
+
+                    if ((op & 1) == OP_RUN) {
+                        int color = data.readInt();
+                        Arrays.fill(dest, row + x, row + x + length, color);
+                        x += length;
+                    } else {
+                        int end = x + length;
+                        for (; x < end; x++) {
+                            dest[row + x] = unfilter(data.readInt(), dest, row, x, width, filter);
+                        }
+                    }
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Writes an encoded raster as a length-prefixed block.
+     * A null array is written as an empty block.
+     *
+     * @param out The object stream
+     * @param pixels ARGB pixel values, or null
+     * @param width The raster width
+     * @param height The raster height
+     * @throws IOException If an I/O error occurs, or the array does not
+     *         hold exactly {@code width * height} pixels
+     */
+    public static void write(ObjectOutput out, int[] pixels, int width, int height) throws IOException {
+        if (pixels == null) {
+            out.writeInt(-1);
+            return;
+        }
+        if (width < 0 || height < 0 || pixels.length != (long) width * height) {
+            // Only width * height pixels are encoded; the rest would be lost
+            throw new IOException("Raster has " + pixels.length + " pixels but is "
+                                  + width + "x" + height);
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        encode(pixels, width, height, buffer);
+        out.writeInt(buffer.size());
+        if (out instanceof OutputStream) {
+            // Object streams are output streams; copy straight from the buffer
+            buffer.writeTo((OutputStream) out);
+        } else {
+            out.write(buffer.toByteArray());
+        }
+    }
+
+    /**
+     * Reads a block written by {@link #write}.
+     *
+     * @param in The object stream
+     * @param width The raster width
+     * @param height The raster height
+     * @return The decoded pixels, or null if none were stored
+     * @throws IOException If an I/O error occurs or the data is corrupt
+     */
+    public static int[] read(ObjectInput in, int width, int height) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        int[] pixels = new int[width * height];
+        BlockInputStream block = new BlockInputStream(in, length);
+        decode(block, pixels, width, height);
+        block.skipRemaining();
+        return pixels;
+    }
+
+    /**
+     * Picks the filter with the smallest residual sum for a row.
+     */
+    private static int chooseFilter(int[] pixels, int row, int width, boolean hasAbove) {
+        long none = 0;
+        long sub = 0;
+        long up = 0;
+
+        for (int x = 0; x < width; x++) {
+            none += weight(pixels[row + x]);
+            sub += weight(residual(pixels, row, x, width, FILTER_SUB));
+            if (hasAbove) {
+                up += weight(residual(pixels, row, x, width, FILTER_UP));
+            }
+        }
+
+        if (hasAbove && up < sub && up < none) return FILTER_UP;
+        return sub < none ? FILTER_SUB : FILTER_NONE;
+    }
+
+    /**
+     * Sums the channel magnitudes of a residual, treating bytes as signed.
+     */
+    private static int weight(int v) {
+        return Math.abs((byte) v) + Math.abs((byte) (v >> 8))
+             + Math.abs((byte) (v >> 16)) + Math.abs((byte) (v >> 24));
+    }
+
+    private static int runLength(int[] pixels, int offset, int max) {
+        int color = pixels[offset];
+        int n = 1;
+        while (n < max && pixels[offset + n] == color) {
+            n++;
+        }
+        return n;
+    }
+
+    private static int predictor(int[] pixels, int row, int x, int width, int filter) {
+        switch (filter) {
+            case FILTER_SUB:
+                return x > 0 ? pixels[row + x - 1] : 0;
+            case FILTER_UP:
+                return row > 0 ? pixels[row - width + x] : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private static int residual(int[] pixels, int row, int x, int width, int filter) {
+        return subtractBytes(pixels[row + x], predictor(pixels, row, x, width, filter));
+    }
+
+    private static int unfilter(int residual, int[] pixels, int row, int x, int width, int filter) {
+        return addBytes(residual, predictor(pixels, row, x, width, filter));
+    }
+
+    /**
+     * Per-channel subtraction modulo 256, like PNG filters.
+     */
+    private static int subtractBytes(int a, int b) {
+        return (((a >>> 24) - (b >>> 24)) & 0xFF) << 24
+             | (((a >>> 16) - (b >>> 16)) & 0xFF) << 16
+             | (((a >>> 8) - (b >>> 8)) & 0xFF) << 8
+             | ((a - b) & 0xFF);
+    }
+
+    /**
+     * Per-channel addition modulo 256, the inverse of {@link #subtractBytes}.
+     */
+    private static int addBytes(int a, int b) {
+        return (((a >>> 24) + (b >>> 24)) & 0xFF) << 24
+             | (((a >>> 16) + (b >>> 16)) & 0xFF) << 16
+             | (((a >>> 8) + (b >>> 8)) & 0xFF) << 8
+             | ((a + b) & 0xFF);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed raster span length");
+    }
+
+    private static void checkSize(int[] pixels, int width, int height) {
+        if (width < 0 || height < 0 || pixels.length < (long) width * height) {
+            throw new IllegalArgumentException(
+                "Pixel array too small for " + width + "x" + height + " raster");
+        }
+    }
+
+    /**
+     * Limits reads to one length-prefixed block of an object stream,
+     * so the inflater cannot consume data that belongs to later fields.
+     */
+    private static class BlockInputStream extends FilterInputStream {
+        private final ObjectInput source;
+        private int remaining;
+
+        BlockInputStream(ObjectInput source, int length) {
+            super(null);
+            this.source = source;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = source.read();
+            if (b < 0) throw new EOFException("Truncated raster block");
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = source.read(b, off, Math.min(len, remaining));
+            if (n < 0) throw new EOFException("Truncated raster block");
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return remaining;
+        }
+
+        @Override
+        public void close() {
+            // The underlying object stream stays open
+        }
+
+        void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                long n = source.skip(remaining);
+                if (n <= 0) {
+                    if (source.read() < 0) throw new EOFException("Truncated raster block");
+                    n = 1;
+                }
+                remaining -= (int) n;
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.io;
+
+import com.catsoftware.engine.prism.render.PreviewRenderer;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates thumbnails of .prism files for file browsers.
+ * Thumbnails come from the preview chunk embedded by {@link PrismIO#save},
+ * falling back to a reduced-detail render of the full document for files
+ * without one. Results are kept in an on-disk LRU cache keyed by file path,
+ * size and modification time, and generated in parallel on a fixed pool.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class ThumbnailService implements Closeable {
+
+    private final File cacheDir;
+    private final long maxCacheBytes;
+    private final ExecutorService pool;
+
+    // Cache key -> file size, in least-recently-used order
+    private final LinkedHashMap<String, Long> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cacheBytes;
+
+    private final Map<String, CompletableFuture<BufferedImage>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a thumbnail service.
+     *
+     * @param cacheDir Directory for cached thumbnails (created if missing)
+     * @param maxCacheBytes Maximum total size of the cache on disk
+     * @param threads Number of generator threads
+     * @throws IOException If the cache directory cannot be created
+     */
+    public ThumbnailService(File cacheDir, long maxCacheBytes, int threads) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("Cannot create thumbnail cache: " + cacheDir);
+        }
+        this.cacheDir = cacheDir;
+        this.maxCacheBytes = maxCacheBytes;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), daemonThreads());
+        loadCacheIndex();
+    }
+
+    /**
+     * Requests a thumbnail that fits in a square of {@code size} pixels.
+     * Requests for the same file and size that are still running are shared.
+     *
+     * @param file The .prism file
+     * @param size Maximum width and height
+     * @return A future completed with the thumbnail
+     */
+    public CompletableFuture<BufferedImage> request(File file, int size) {
+        String key = key(file, size);
+        CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> running = pending.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+
+        // Registered after the insert, so a fast completion still removes it
+        future.whenComplete((img, err) -> pending.remove(key, future));
+        try {
+            pool.execute(() -> {
+                try {
+                    future.complete(generate(file, size, key));
+                } catch (IOException | ClassNotFoundException e) {
+                    future.completeExceptionally(
+                        new IllegalStateException("Cannot create thumbnail for " + file, e));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Returns a thumbnail, blocking until it is ready.
+     *
+     * @param file The .prism file
+     * @param size Maximum width and height
+     * @return The thumbnail
+     * @throws IOException If the file cannot be read
+     * @throws ClassNotFoundException If the document contains unknown classes
+     */
+    public BufferedImage get(File file, int size) throws IOException, ClassNotFoundException {
+        return generate(file, size, key(file, size));
+    }
+
+    private BufferedImage generate(File file, int size, String key)
+            throws IOException, ClassNotFoundException {
+        File cached = new File(cacheDir, key + ".png");
+        if (touch(key, cached)) {
+            BufferedImage img = ImageIO.read(cached);
+            if (img != null) {
+                return img;
+            }
+        }
+
+        BufferedImage thumb = PrismIO.loadPreview(file);
+        if (thumb == null) {
+            // No embedded preview - render the document with reduced detail
+            PrismDocument doc = PrismIO.load(file);
+            thumb = PreviewRenderer.render(
+                doc.getCanvasWidth(), doc.getCanvasHeight(), doc.backgroundColor,
+                doc.getRasterPixels(), doc.getRasterWidth(), doc.getRasterHeight(),
+                doc.getObjectStore().snapshot(), size);
+        }
+        thumb = PreviewRenderer.fit(thumb, size);
+
+        File tmp = new File(cacheDir, key + ".tmp");
+        ImageIO.write(thumb, "png", tmp);
+        if (tmp.renameTo(cached) || cached.exists()) {
+            add(key, cached.length());
+        }
+        tmp.delete();
+        return thumb;
+    }
+
+    // ------------------ Disk cache ------------------
+
+    private void loadCacheIndex() {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        synchronized (cache) {
+            for (File f : files) {
+                String name = f.getName();
+                cache.put(name.substring(0, name.length() - 4), f.length());
+                cacheBytes += f.length();
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Marks a cache entry as used.
+     *
+     * @return true if the entry exists
+     */
+    private boolean touch(String key, File cached) {
+        synchronized (cache) {
+            if (cache.get(key) == null) {
+                return false;
+            }
+        }
+        // Persist the LRU order across restarts
+        cached.setLastModified(System.currentTimeMillis());
+        return cached.isFile();
+    }
+
+    private void add(String key, long bytes) {
+        synchronized (cache) {
+            Long old = cache.put(key, bytes);
+            cacheBytes += bytes - (old != null ? old : 0);
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = cache.entrySet().iterator();
+        while (cacheBytes > maxCacheBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(cacheDir, eldest.getKey() + ".png").delete();
+            cacheBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Builds the cache key from the file identity and thumbnail size.
+     */
+    private static String key(File file, int size) {
+        String id = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified() + '|' + size;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(40);
+            for (int i = 0; i < 20; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "prism-thumbnail-" + n.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+
+    /**
+     * Stops the generator threads. Cached thumbnails stay on disk.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
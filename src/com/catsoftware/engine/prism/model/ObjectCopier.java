@@ -0,0 +1,103 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.model;
+
+import com.catsoftware.engine.prism.assets.ImageAsset;
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.Symbol;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deep-copies drawable objects through serialization.
+ * Image assets and symbols are shared with the copy instead of being
+ * duplicated.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+class ObjectCopier {
+
+    /**
+     * Returns a deep copy of an object.
+     *
+     * @param obj The object to copy
+     * @return An independent copy
+     * @throws IllegalStateException If the object cannot be serialized
+     */
+    static DrawableObject copy(DrawableObject obj) {
+        List<Object> shared = new ArrayList<>();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (SharingOutputStream out = new SharingOutputStream(bytes, shared)) {
+                out.writeObject(obj);
+            }
+            try (SharingInputStream in = new SharingInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray()), shared)) {
+                return (DrawableObject) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Cannot copy " + obj.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Placeholder written in place of a shared asset or symbol.
+     */
+    private static class AssetRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int index;
+
+        AssetRef(int index) {
+            this.index = index;
+        }
+    }
+
+    private static class SharingOutputStream extends ObjectOutputStream {
+        private final List<Object> shared;
+
+        SharingOutputStream(OutputStream out, List<Object> shared) throws IOException {
+            super(out);
+            this.shared = shared;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj instanceof ImageAsset || obj instanceof Symbol) {
+                shared.add(obj);
+                return new AssetRef(shared.size() - 1);
+            }
+            return obj;
+        }
+    }
+
+    private static class SharingInputStream extends ObjectInputStream {
+        private final List<Object> shared;
+
+        SharingInputStream(InputStream in, List<Object> shared) throws IOException {
+            super(in);
+            this.shared = shared;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof AssetRef) {
+                return shared.get(((AssetRef) obj).index);
+            }
+            return obj;
+        }
+    }
+}
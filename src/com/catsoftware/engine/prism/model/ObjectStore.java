@@ -0,0 +1,463 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.model;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Z-ordered list of a document's vector objects, built for one writer and
+ * many readers. Every edit publishes a new immutable snapshot, so render,
+ * autosave and hit-test threads read without locking and always see a
+ * consistent list. Group several changes with {@link #edit} to pay for
+ * one copy per batch instead of one per change.
+ *
+ * <p>Background readers that need the objects themselves to stay unchanged
+ * (export, autosave, thumbnails) take a {@link Snapshot}. While one is open,
+ * the writer asks for {@link #editable} copies before mutating an object, so
+ * only the objects actually edited are copied.</p>
+ *
+ * <p>The first object is drawn first (bottom), the last is on top.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class ObjectStore extends AbstractList<DrawableObject> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final DrawableObject[] EMPTY = new DrawableObject[0];
+
+    private transient volatile DrawableObject[] items = EMPTY;
+    private transient volatile long version;
+    private transient Object lock = new Object();
+
+    // Number of open snapshots; objects are copied before editing while > 0
+    private transient int openSnapshots;
+
+    // Objects that no open snapshot can see and may be mutated in place
+    private transient Set<DrawableObject> owned = newIdentitySet();
+
+    /**
+     * Creates an empty store.
+     */
+    public ObjectStore() {
+    }
+
+    /**
+     * Creates a store holding the given objects.
+     *
+     * @param objects The initial objects, bottom first
+     */
+    public ObjectStore(Collection<? extends DrawableObject> objects) {
+        items = objects.toArray(EMPTY);
+    }
+
+    // ------------------ Readers ------------------
+
+    /**
+     * Returns the current objects as an immutable list.
+     * The list never changes, even while writers keep editing the store.
+     *
+     * @return The current snapshot, bottom first
+     */
+    public List<DrawableObject> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList(items));
+    }
+
+    /**
+     * Returns a number that changes every time the list is edited.
+     *
+     * @return The edit version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Finds the object closest to a point. Among overlapping hits the one
+     * with the smallest {@link DrawableObject#hitDistance} wins, and ties go
+     * to the topmost object.
+     *
+     * @param p The point in canvas coordinates
+     * @return The picked object, or null if nothing was hit
+     */
+    public DrawableObject pick(Point p) {
+        DrawableObject[] current = items;
+        DrawableObject best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = current.length - 1; i >= 0; i--) {
+            double d = current[i].hitDistance(p);
+            if (d >= 0 && d < bestDistance) {
+                best = current[i];
+                bestDistance = d;
+                if (d == 0) break;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public DrawableObject get(int index) {
+        return items[index];
+    }
+
+    @Override
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Iterates over the snapshot taken when this method is called.
+     * No locking is needed and concurrent edits are never seen.
+     *
+     * @return The iterator
+     */
+    @Override
+    public Iterator<DrawableObject> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return items.clone();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    /**
+     * Freezes the current objects for a background reader.
+     * Until the snapshot is closed, {@link #editable} hands out copies so
+     * the frozen objects are never mutated.
+     *
+     * @return The snapshot (must be closed)
+     */
+    public Snapshot freeze() {
+        synchronized (lock) {
+            openSnapshots++;
+            owned.clear();
+            return new Snapshot(items, version);
+        }
+    }
+
+    /**
+     * Returns an instance of {@code obj} that may be mutated without tearing
+     * open snapshots. If a snapshot can still see {@code obj}, a copy replaces
+     * it in the store and the copy is returned; callers must use the returned
+     * object (for example, update their selection) from then on.
+     *
+     * @param obj An object in this store
+     * @return {@code obj} itself or its replacement copy
+     */
+    public DrawableObject editable(DrawableObject obj) {
+        return editable(Collections.singletonList(obj)).get(0);
+    }
+
+    /**
+     * Returns mutable instances for several objects in one pass.
+     *
+     * @param objects Objects in this store
+     * @return The objects to mutate, in the same order
+     * @see #editable(DrawableObject)
+     */
+    public List<DrawableObject> editable(Collection<? extends DrawableObject> objects) {
+        synchronized (lock) {
+            List<DrawableObject> result = new ArrayList<>(objects);
+            if (openSnapshots == 0) {
+                return result;
+            }
+
+            Map<DrawableObject, DrawableObject> copies = new IdentityHashMap<>();
+            for (int i = 0; i < result.size(); i++) {
+                DrawableObject obj = result.get(i);
+                if (obj == null || owned.contains(obj)) continue;
+                DrawableObject copy = copies.computeIfAbsent(obj, ObjectCopier::copy);
+                result.set(i, copy);
+            }
+            if (copies.isEmpty()) {
+                return result;
+            }
+
+            DrawableObject[] next = items.clone();
+            for (int i = 0; i < next.length; i++) {
+                DrawableObject copy = copies.get(next[i]);
+                if (copy != null) {
+                    next[i] = copy;
+                }
+            }
+            owned.addAll(copies.values());
+            publish(next);
+            return result;
+        }
+    }
+
+    private void release() {
+        synchronized (lock) {
+            if (openSnapshots > 0 && --openSnapshots == 0) {
+                owned.clear();
+            }
+        }
+    }
+
+    private static Set<DrawableObject> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    // ------------------ Writers ------------------
+
+    /**
+     * Applies several changes and publishes them as one snapshot.
+     * Readers see either none or all of the changes.
+     *
+     * @param batch Receives a mutable copy of the list to change
+     */
+    public void edit(Consumer<List<DrawableObject>> batch) {
+        synchronized (lock) {
+            List<DrawableObject> copy = new ArrayList<>(Arrays.asList(items));
+            batch.accept(copy);
+            publish(copy.toArray(EMPTY));
+        }
+    }
+
+    /**
+     * Replaces all objects.
+     *
+     * @param objects The new objects, bottom first
+     */
+    public void setAll(Collection<? extends DrawableObject> objects) {
+        synchronized (lock) {
+            publish(objects.toArray(EMPTY));
+        }
+    }
+
+    @Override
+    public DrawableObject set(int index, DrawableObject obj) {
+        synchronized (lock) {
+            DrawableObject[] copy = items.clone();
+            DrawableObject old = copy[index];
+            copy[index] = obj;
+            own(obj);
+            publish(copy);
+            return old;
+        }
+    }
+
+    @Override
+    public void add(int index, DrawableObject obj) {
+        synchronized (lock) {
+            DrawableObject[] current = items;
+            if (index < 0 || index > current.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+            }
+            DrawableObject[] copy = new DrawableObject[current.length + 1];
+            System.arraycopy(current, 0, copy, 0, index);
+            copy[index] = obj;
+            System.arraycopy(current, index, copy, index + 1, current.length - index);
+            own(obj);
+            publish(copy);
+        }
+    }
+
+    @Override
+    public DrawableObject remove(int index) {
+        synchronized (lock) {
+            DrawableObject[] current = items;
+            DrawableObject old = current[index];
+            DrawableObject[] copy = new DrawableObject[current.length - 1];
+            System.arraycopy(current, 0, copy, 0, index);
+            System.arraycopy(current, index + 1, copy, index, current.length - index - 1);
+            publish(copy);
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        synchronized (lock) {
+            int index = indexOf(obj);
+            if (index < 0) return false;
+            remove(index);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends DrawableObject> objects) {
+        return addAll(size(), objects);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends DrawableObject> objects) {
+        if (objects.isEmpty()) return false;
+        edit(list -> list.addAll(index, objects));
+        return true;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super DrawableObject> filter) {
+        Objects.requireNonNull(filter);
+        boolean[] changed = new boolean[1];
+        edit(list -> changed[0] = list.removeIf(filter));
+        return changed[0];
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> objects) {
+        return removeIf(objects::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objects) {
+        return removeIf(o -> !objects.contains(o));
+    }
+
+    @Override
+    public void clear() {
+        setAll(Collections.emptyList());
+    }
+
+    /**
+     * Sorts a copy of the objects and publishes it as one snapshot.
+     * Readers never see a partly sorted list.
+     *
+     * @param c The order, or null for natural order
+     */
+    @Override
+    public void sort(Comparator<? super DrawableObject> c) {
+        synchronized (lock) {
+            DrawableObject[] copy = items.clone();
+            Arrays.sort(copy, c);
+            publish(copy);
+        }
+    }
+
+    /**
+     * Replaces every object with the operator's result and publishes the
+     * new objects as one snapshot.
+     *
+     * @param operator Returns the replacement for each object
+     */
+    @Override
+    public void replaceAll(UnaryOperator<DrawableObject> operator) {
+        Objects.requireNonNull(operator);
+        synchronized (lock) {
+            DrawableObject[] copy = items.clone();
+            for (int i = 0; i < copy.length; i++) {
+                DrawableObject obj = operator.apply(copy[i]);
+                if (obj != copy[i]) {
+                    own(obj);
+                }
+                copy[i] = obj;
+            }
+            publish(copy);
+        }
+    }
+
+    /**
+     * Marks a newly inserted object as invisible to open snapshots.
+     */
+    private void own(DrawableObject obj) {
+        if (openSnapshots > 0 && obj != null) {
+            owned.add(obj);
+        }
+    }
+
+    private void publish(DrawableObject[] next) {
+        items = next;
+        version++;
+    }
+
+    // ------------------ Serialization ------------------
+
+    /**
+     * Writes the current snapshot.
+     *
+     * @param out The object output stream
+     * @throws IOException If writing fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        DrawableObject[] current = items;
+        out.defaultWriteObject();
+        out.writeInt(current.length);
+        for (DrawableObject obj : current) {
+            out.writeObject(obj);
+        }
+    }
+
+    /**
+     * Reads the objects back into a fresh snapshot.
+     *
+     * @param in The object input stream
+     * @throws IOException If reading fails
+     * @throws ClassNotFoundException If class not found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        DrawableObject[] loaded = new DrawableObject[n];
+        for (int i = 0; i < n; i++) {
+            loaded[i] = (DrawableObject) in.readObject();
+        }
+        lock = new Object();
+        owned = newIdentitySet();
+        items = loaded;
+    }
+
+    /**
+     * Objects frozen at one version of the store.
+     * Neither the list nor (while open) the objects in it change.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final List<DrawableObject> objects;
+        private final long snapshotVersion;
+        private boolean closed;
+
+        private Snapshot(DrawableObject[] items, long version) {
+            this.objects = Collections.unmodifiableList(Arrays.asList(items));
+            this.snapshotVersion = version;
+        }
+
+        /** @return The frozen objects, bottom first */
+        public List<DrawableObject> getObjects() { return objects; }
+
+        /** @return The store version this snapshot was taken at */
+        public long getVersion() { return snapshotVersion; }
+
+        /**
+         * Releases the snapshot so the writer can edit objects in place again.
+         */
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+    }
+}
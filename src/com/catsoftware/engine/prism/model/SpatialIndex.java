@@ -0,0 +1,213 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.model;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A uniform hash grid over object bounds, for finding the objects near an
+ * area without testing every object in the document. Objects are listed in
+ * every cell their bounds touch; very large objects are kept in a separate
+ * list that every query returns, so they do not fill thousands of cells.
+ *
+ * <p>The index stores the bounds an object had when it was added. Call
+ * {@link #update} after moving or resizing an indexed object.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SpatialIndex {
+
+    /** Default cell size in canvas pixels */
+    public static final int DEFAULT_CELL_SIZE = 128;
+
+    // Objects covering more cells than this go to the oversized list
+    private static final int MAX_CELLS_PER_OBJECT = 256;
+
+    private final int cellSize;
+    private final Map<Long, List<DrawableObject>> cells = new HashMap<>();
+    private final Map<DrawableObject, Rectangle> indexed = new IdentityHashMap<>();
+    private final List<DrawableObject> oversized = new ArrayList<>();
+
+    /**
+     * Creates an empty index with the default cell size.
+     */
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param cellSize Cell size in canvas pixels
+     */
+    public SpatialIndex(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    /**
+     * Creates an index holding the given objects.
+     *
+     * @param objects The objects to index
+     * @param cellSize Cell size in canvas pixels
+     */
+    public SpatialIndex(Collection<? extends DrawableObject> objects, int cellSize) {
+        this(cellSize);
+        for (DrawableObject obj : objects) {
+            insert(obj);
+        }
+    }
+
+    /**
+     * Adds an object. Adding an object that is already indexed updates it.
+     *
+     * @param obj The object
+     */
+    public void insert(DrawableObject obj) {
+        if (indexed.containsKey(obj)) {
+            remove(obj);
+        }
+        Rectangle b = obj.getBounds();
+        indexed.put(obj, b);
+
+        if (cellCount(b) > MAX_CELLS_PER_OBJECT) {
+            oversized.add(obj);
+            return;
+        }
+        for (int cy = cell(b.y); cy <= cell(b.y + b.height); cy++) {
+            for (int cx = cell(b.x); cx <= cell(b.x + b.width); cx++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(obj);
+            }
+        }
+    }
+
+    /**
+     * Removes an object.
+     *
+     * @param obj The object
+     * @return true if it was indexed
+     */
+    public boolean remove(DrawableObject obj) {
+        Rectangle b = indexed.remove(obj);
+        if (b == null) {
+            return false;
+        }
+        if (cellCount(b) > MAX_CELLS_PER_OBJECT) {
+            removeIdentity(oversized, obj);
+            return true;
+        }
+        for (int cy = cell(b.y); cy <= cell(b.y + b.height); cy++) {
+            for (int cx = cell(b.x); cx <= cell(b.x + b.width); cx++) {
+                Long k = key(cx, cy);
+                List<DrawableObject> list = cells.get(k);
+                if (list != null) {
+                    removeIdentity(list, obj);
+                    if (list.isEmpty()) {
+                        cells.remove(k);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Re-indexes an object after its bounds changed.
+     *
+     * @param obj The object
+     */
+    public void update(DrawableObject obj) {
+        insert(obj);
+    }
+
+    /**
+     * Returns the objects whose bounds intersect an area.
+     *
+     * @param area The area in canvas coordinates
+     * @return The objects, each once, in no particular order
+     */
+    public List<DrawableObject> query(Rectangle area) {
+        Set<DrawableObject> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<DrawableObject> result = new ArrayList<>();
+        for (int cy = cell(area.y); cy <= cell(area.y + area.height); cy++) {
+            for (int cx = cell(area.x); cx <= cell(area.x + area.width); cx++) {
+                List<DrawableObject> list = cells.get(key(cx, cy));
+                if (list == null) continue;
+                for (DrawableObject obj : list) {
+                    if (seen.add(obj) && indexed.get(obj).intersects(area)) {
+                        result.add(obj);
+                    }
+                }
+            }
+        }
+        for (DrawableObject obj : oversized) {
+            if (indexed.get(obj).intersects(area)) {
+                result.add(obj);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if an object is indexed.
+     *
+     * @param obj The object
+     * @return true if indexed
+     */
+    public boolean contains(DrawableObject obj) {
+        return indexed.containsKey(obj);
+    }
+
+    /**
+     * Returns the number of indexed objects.
+     *
+     * @return The object count
+     */
+    public int size() {
+        return indexed.size();
+    }
+
+    /**
+     * Removes all objects.
+     */
+    public void clear() {
+        cells.clear();
+        indexed.clear();
+        oversized.clear();
+    }
+
+    private int cell(int v) {
+        return Math.floorDiv(v, cellSize);
+    }
+
+    private long cellCount(Rectangle b) {
+        long w = cell(b.x + b.width) - cell(b.x) + 1L;
+        long h = cell(b.y + b.height) - cell(b.y) + 1L;
+        return w * h;
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static void removeIdentity(List<DrawableObject> list, DrawableObject obj) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            if (list.get(i) == obj) {
+                list.remove(i);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,673 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.raster;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Paints brush strokes into a raster pixel array by stamping round dabs
+ * along the pointer path. Dab size and opacity can follow pen pressure,
+ * and strokes thin out when drawn fast. Dabs have a soft edge set by the
+ * hardness, and are placed at a spacing relative to their size.
+ *
+ * <p>Flow is the opacity of a single dab; opacity is the most a whole
+ * stroke can cover. Dabs only raise a per-stroke coverage mask, building
+ * up towards the opacity but never past it, so crossing the same spot
+ * twice within a stroke does not darken it further. The pixels are
+ * rewritten from the mask and a copy of the pixels from before the stroke
+ * when {@link #flush} is called, normally once per repaint, so each pixel
+ * is blended once per frame however many dabs overlap it.</p>
+ *
+ * <p>Pixels are blended in premultiplied form, and written back as
+ * premultiplied or straight ARGB to match the target (the document's
+ * raster layer is straight ARGB). The per-pixel loops do not allocate
+ * and use integer math: mask and backup tiles are created the first time
+ * a stroke reaches them and reused by later strokes.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class BrushEngine {
+
+    /** Default distance between dabs, as a fraction of the dab diameter */
+    public static final float DEFAULT_SPACING = 0.1f;
+
+    /** Pointer speed in pixels per millisecond at which thinning is strongest */
+    public static final float THINNING_SPEED = 4f;
+
+    // Closest dabs are ever placed, in pixels, however small the brush
+    private static final float MIN_STEP = 0.5f;
+
+    // Entries in the falloff table, indexed by squared distance
+    private static final int FALLOFF_SIZE = 1024;
+
+    // Weight of the newest sample in the smoothed pointer speed
+    private static final float SPEED_SMOOTHING = 0.3f;
+
+    // Dab centres and diameters are rounded to this fraction of a pixel, and
+    // flow to 1/FLOW_STEPS, so neighbouring dabs can share a stamp
+    private static final int SUBPIXEL = 4;
+    private static final int FLOW_STEPS = 256;
+
+    // Rendered dabs kept for reuse
+    private static final int STAMP_CACHE_SIZE = 32;
+
+    // Coverage mask tiles
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int MASK_MAX = 65535;
+
+    // Falloff values are fixed point with this many fraction bits
+    private static final int FALLOFF_BITS = 15;
+
+    private int[] pixels;
+    private int width;
+    private int height;
+    private boolean premultiplied;
+
+    // ------------------ Settings ------------------
+
+    private int color = 0xFF000000;
+    private float size = 16;
+    private float hardness = 0.5f;
+    private float spacing = DEFAULT_SPACING;
+    private float opacity = 1;
+    private float flow = 1;
+    private float pressureSize = 1;
+    private float pressureOpacity;
+    private float velocityThinning;
+
+    // Brush color as 0 - 1 straight components
+    private float colorR, colorG, colorB, colorA;
+
+    // ------------------ Stroke state ------------------
+
+    private boolean stroking;
+    private float lastX, lastY, lastPressure;
+    private long lastTime;
+    private float speed;
+    private float untilNextDab;
+    private int dabCount;
+
+    // Changed area of the current call and of the whole stroke: min x, min y, max x, max y (exclusive)
+    private int callX0, callY0, callX1, callY1;
+    private int strokeX0, strokeY0, strokeX1, strokeY1;
+
+    // Stroke coverage (0 - MASK_MAX) and the pixels before the stroke, per tile
+    private char[][] maskTiles;
+    private int[][] backupTiles;
+    private int tilesX;
+
+    // Tiles used by the current stroke, and those changed since the last flush
+    private int[] touched = new int[64];
+    private int touchedCount;
+    private boolean[] inStroke;
+    private int[] pending = new int[64];
+    private int pendingCount;
+    private boolean[] isPending;
+    private int flushX0, flushY0, flushX1, flushY1;
+
+    private final float[] falloff = new float[FALLOFF_SIZE + 1];
+
+    private final Stamp[] stamps = new Stamp[STAMP_CACHE_SIZE];
+    private long stampClock;
+
+    /**
+     * Creates an engine painting into a pixel array.
+     *
+     * @param pixels ARGB pixels, row by row
+     * @param width Image width
+     * @param height Image height
+     * @param premultiplied true if the pixels hold premultiplied ARGB
+     */
+    public BrushEngine(int[] pixels, int width, int height, boolean premultiplied) {
+        setTarget(pixels, width, height, premultiplied);
+        setColor(color);
+    }
+
+    /**
+     * Changes the pixel array painted into. Ends the current stroke.
+     *
+     * @param pixels ARGB pixels, row by row
+     * @param width Image width
+     * @param height Image height
+     * @param premultiplied true if the pixels hold premultiplied ARGB
+     */
+    public void setTarget(int[] pixels, int width, int height, boolean premultiplied) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array is smaller than " + width + "x" + height);
+        }
+        endStroke();
+        if (maskTiles == null || width != this.width || height != this.height) {
+            tilesX = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+            int tiles = tilesX * ((height + TILE_SIZE - 1) >> TILE_SHIFT);
+            maskTiles = new char[tiles][];
+            backupTiles = new int[tiles][];
+            inStroke = new boolean[tiles];
+            isPending = new boolean[tiles];
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.premultiplied = premultiplied;
+    }
+
+    /** @return The brush color (straight ARGB) */
+    public int getColor() { return color; }
+
+    /** @param argb The brush color (straight ARGB); its alpha scales the opacity */
+    public void setColor(int argb) {
+        color = argb;
+        colorA = (argb >>> 24) / 255f;
+        colorR = ((argb >> 16) & 0xFF) / 255f;
+        colorG = ((argb >> 8) & 0xFF) / 255f;
+        colorB = (argb & 0xFF) / 255f;
+    }
+
+    /** @return The dab diameter at full pressure, in pixels */
+    public float getSize() { return size; }
+
+    /** @param size The dab diameter at full pressure, in pixels */
+    public void setSize(float size) {
+        this.size = Math.max(0, size);
+    }
+
+    /** @return How much of the dab radius is fully opaque (0 - 1) */
+    public float getHardness() { return hardness; }
+
+    /** @param hardness How much of the dab radius is fully opaque (0 soft - 1 hard) */
+    public void setHardness(float hardness) {
+        this.hardness = clamp(hardness);
+    }
+
+    /** @return Distance between dabs as a fraction of the dab diameter */
+    public float getSpacing() { return spacing; }
+
+    /** @param spacing Distance between dabs as a fraction of the dab diameter */
+    public void setSpacing(float spacing) {
+        this.spacing = Math.max(0.01f, spacing);
+    }
+
+    /** @return The most a stroke covers (0 - 1) */
+    public float getOpacity() { return opacity; }
+
+    /** @param opacity The most a stroke covers (0 - 1) */
+    public void setOpacity(float opacity) {
+        this.opacity = clamp(opacity);
+    }
+
+    /** @return The opacity of a single dab (0 - 1) */
+    public float getFlow() { return flow; }
+
+    /** @param flow The opacity of a single dab (0 - 1) */
+    public void setFlow(float flow) {
+        this.flow = clamp(flow);
+    }
+
+    /** @return How much pressure shrinks the dabs (0 none - 1 down to nothing) */
+    public float getPressureSize() { return pressureSize; }
+
+    /** @param pressureSize How much pressure shrinks the dabs (0 none - 1 down to nothing) */
+    public void setPressureSize(float pressureSize) {
+        this.pressureSize = clamp(pressureSize);
+    }
+
+    /** @return How much pressure lowers the flow (0 none - 1 down to nothing) */
+    public float getPressureOpacity() { return pressureOpacity; }
+
+    /** @param pressureOpacity How much pressure lowers the flow (0 none - 1 down to nothing) */
+    public void setPressureOpacity(float pressureOpacity) {
+        this.pressureOpacity = clamp(pressureOpacity);
+    }
+
+    /** @return How much fast strokes thin out (0 - 1) */
+    public float getVelocityThinning() { return velocityThinning; }
+
+    /** @param velocityThinning How much fast strokes thin out (0 none - 1 down to nothing) */
+    public void setVelocityThinning(float velocityThinning) {
+        this.velocityThinning = clamp(velocityThinning);
+    }
+
+    /** @return The number of dabs painted since the engine was created */
+    public int getDabCount() { return dabCount; }
+
+    // ------------------ Strokes ------------------
+
+    /**
+     * Starts a stroke and paints its first dab. A stroke still in progress
+     * is ended first.
+     *
+     * @param x Pointer X in pixels
+     * @param y Pointer Y in pixels
+     * @param pressure Pen pressure (0 - 1; 1 for a mouse)
+     * @param time Event time in milliseconds
+     * @return The area to repaint, or null if nothing changed; the pixels
+     *         are updated by {@link #flush}
+     */
+    public Rectangle beginStroke(float x, float y, float pressure, long time) {
+        endStroke();
+        stroking = true;
+        lastX = x;
+        lastY = y;
+        lastPressure = clamp(pressure);
+        lastTime = time;
+        speed = 0;
+        strokeX0 = strokeY0 = Integer.MAX_VALUE;
+        strokeX1 = strokeY1 = Integer.MIN_VALUE;
+        flushX0 = flushY0 = Integer.MAX_VALUE;
+        flushX1 = flushY1 = Integer.MIN_VALUE;
+
+        startCall();
+        float diameter = diameter(lastPressure);
+        dab(x, y, diameter, dabFlow(lastPressure));
+        untilNextDab = step(diameter);
+        return endCall();
+    }
+
+    /**
+     * Continues the stroke to a new pointer position, painting dabs along
+     * the way with pressure interpolated between the two events.
+     *
+     * @param x Pointer X in pixels
+     * @param y Pointer Y in pixels
+     * @param pressure Pen pressure (0 - 1; 1 for a mouse)
+     * @param time Event time in milliseconds
+     * @return The area to repaint, or null if nothing changed; the pixels
+     *         are updated by {@link #flush}
+     * @throws IllegalStateException If no stroke was started
+     */
+    public Rectangle strokeTo(float x, float y, float pressure, long time) {
+        if (!stroking) {
+            throw new IllegalStateException("strokeTo called without beginStroke");
+        }
+        pressure = clamp(pressure);
+        float dx = x - lastX;
+        float dy = y - lastY;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        long dt = time - lastTime;
+        if (dt > 0) {
+            speed += (length / dt - speed) * SPEED_SMOOTHING;
+        }
+
+        startCall();
+        float pos = 0;
+        while (length - pos >= untilNextDab) {
+            pos += untilNextDab;
+            float t = pos / length;
+            float p = lastPressure + (pressure - lastPressure) * t;
+            float diameter = diameter(p);
+            dab(lastX + dx * t, lastY + dy * t, diameter, dabFlow(p));
+            untilNextDab = step(diameter);
+        }
+        untilNextDab -= length - pos;
+
+        lastX = x;
+        lastY = y;
+        lastPressure = pressure;
+        lastTime = time;
+        return endCall();
+    }
+
+    /**
+     * Writes the dabs painted since the last flush into the pixels.
+     * Call it before drawing the pixels, for example at the start of
+     * each repaint while a stroke is in progress.
+     *
+     * @return The area whose pixels were rewritten, or null if there was
+     *         nothing to write
+     */
+    public Rectangle flush() {
+        if (pendingCount == 0) return null;
+        for (int i = 0; i < pendingCount; i++) {
+            int t = pending[i];
+            int tx = (t % tilesX) << TILE_SHIFT;
+            int ty = (t / tilesX) << TILE_SHIFT;
+            compositeTile(t, tx, ty, Math.min(TILE_SIZE, width - tx), Math.min(TILE_SIZE, height - ty));
+            isPending[t] = false;
+        }
+        pendingCount = 0;
+        Rectangle area = new Rectangle(flushX0, flushY0, flushX1 - flushX0, flushY1 - flushY0);
+        flushX0 = flushY0 = Integer.MAX_VALUE;
+        flushX1 = flushY1 = Integer.MIN_VALUE;
+        return area;
+    }
+
+    /**
+     * Ends the current stroke, writing its remaining dabs into the pixels,
+     * and clears its coverage mask.
+     *
+     * @return The area the whole stroke changed, or null if there was no
+     *         stroke or it changed nothing
+     */
+    public Rectangle endStroke() {
+        if (!stroking) return null;
+        flush();
+        stroking = false;
+        for (int i = 0; i < touchedCount; i++) {
+            Arrays.fill(maskTiles[touched[i]], (char) 0);
+            inStroke[touched[i]] = false;
+        }
+        touchedCount = 0;
+        if (strokeX1 <= strokeX0) return null;
+        return new Rectangle(strokeX0, strokeY0, strokeX1 - strokeX0, strokeY1 - strokeY0);
+    }
+
+    /** @return true if a stroke is in progress */
+    public boolean isStroking() {
+        return stroking;
+    }
+
+    // ------------------ Dabs ------------------
+
+    private float diameter(float pressure) {
+        float d = size * (1 - pressureSize * (1 - pressure));
+        if (velocityThinning > 0) {
+            d *= 1 - velocityThinning * Math.min(1, speed / THINNING_SPEED);
+        }
+        return d;
+    }
+
+    private float dabFlow(float pressure) {
+        return flow * (1 - pressureOpacity * (1 - pressure));
+    }
+
+    private float step(float diameter) {
+        return Math.max(MIN_STEP, diameter * spacing);
+    }
+
+    /**
+     * Stamps one dab into the coverage mask, raising the coverage under it
+     * by the flow towards the opacity.
+     */
+    private void dab(float cx, float cy, float diameter, float dabFlow) {
+        dabCount++;
+        int cap = (int) (opacity * colorA * MASK_MAX + 0.5f);
+        if (dabFlow <= 0 || cap <= 0 || diameter <= 0) return;
+
+        diameter = Math.round(diameter * SUBPIXEL) / (float) SUBPIXEL;
+        dabFlow = Math.round(dabFlow * FLOW_STEPS) / (float) FLOW_STEPS;
+        if (diameter <= 0 || dabFlow <= 0) return;
+
+        int qx = Math.round(cx * SUBPIXEL);
+        int qy = Math.round(cy * SUBPIXEL);
+        int ix = Math.floorDiv(qx, SUBPIXEL);
+        int iy = Math.floorDiv(qy, SUBPIXEL);
+        Stamp stamp = getStamp(diameter, dabFlow, qx - ix * SUBPIXEL, qy - iy * SUBPIXEL);
+
+        int left = ix - stamp.reach;
+        int top = iy - stamp.reach;
+        int size = stamp.size;
+        int y0 = Math.max(0, top);
+        int y1 = Math.min(height, top + size);
+        if (y0 >= y1 || left >= width || left + size <= 0) return;
+
+        int[] values = stamp.values;
+        int x0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE;
+        for (int y = y0; y < y1; y++) {
+            int j = y - top;
+            int xs = Math.max(0, left + stamp.rowStart[j]);
+            int xe = Math.min(width, left + stamp.rowEnd[j]);
+            if (xs >= xe) continue;
+            x0 = Math.min(x0, xs);
+            x1 = Math.max(x1, xe);
+
+            int ty = y >> TILE_SHIFT;
+            int my = (y & (TILE_SIZE - 1)) << TILE_SHIFT;
+            int base = j * size - left;
+            for (int tx0 = xs; tx0 < xe; ) {
+                int tx = tx0 >> TILE_SHIFT;
+                int tx1 = Math.min(xe, (tx + 1) << TILE_SHIFT);
+                char[] tile = useTile(ty * tilesX + tx);
+                for (int x = tx0; x < tx1; x++) {
+                    int mi = my + (x & (TILE_SIZE - 1));
+                    int m = tile[mi];
+                    if (m < cap) {
+                        tile[mi] = (char) (m + (((cap - m) * values[base + x]) >>> FALLOFF_BITS));
+                    }
+                }
+                tx0 = tx1;
+            }
+        }
+        if (x1 <= x0) return;
+
+        callX0 = Math.min(callX0, x0);
+        callY0 = Math.min(callY0, y0);
+        callX1 = Math.max(callX1, x1);
+        callY1 = Math.max(callY1, y1);
+    }
+
+    /**
+     * A dab rendered as fixed-point coverage per pixel, for one diameter,
+     * flow, hardness and sub-pixel centre.
+     */
+    private static final class Stamp {
+        float diameter;
+        float flow;
+        float hardness;
+        int fx;
+        int fy;
+        long lastUse;
+
+        // Pixels from the centre pixel to the stamp edge, and the stamp width
+        int reach;
+        int size;
+        int[] values = new int[0];
+        int[] rowStart = new int[0];
+        int[] rowEnd = new int[0];
+    }
+
+    /**
+     * Returns the stamp for a dab, rendering it into the least recently
+     * used cache slot if it is not cached.
+     */
+    private Stamp getStamp(float diameter, float dabFlow, int fx, int fy) {
+        stampClock++;
+        Stamp oldest = null;
+        for (int i = 0; i < stamps.length; i++) {
+            Stamp st = stamps[i];
+            if (st == null) {
+                st = new Stamp();
+                st.diameter = -1;
+                stamps[i] = st;
+            }
+            if (st.diameter == diameter && st.flow == dabFlow && st.hardness == hardness
+                    && st.fx == fx && st.fy == fy) {
+                st.lastUse = stampClock;
+                return st;
+            }
+            if (oldest == null || st.lastUse < oldest.lastUse) {
+                oldest = st;
+            }
+        }
+        renderStamp(oldest, diameter, dabFlow, fx, fy);
+        oldest.lastUse = stampClock;
+        return oldest;
+    }
+
+    /**
+     * Renders a dab into a stamp, reusing its arrays when they are large enough.
+     */
+    private void renderStamp(Stamp st, float diameter, float dabFlow, int fx, int fy) {
+        float r = diameter / 2;
+        float outer = Math.max(0.5f, r);
+        int reach = (int) Math.ceil(outer) + 1;
+        int size = 2 * reach + 1;
+        if (st.values.length < size * size) {
+            st.values = new int[size * size];
+        }
+        if (st.rowStart.length < size) {
+            st.rowStart = new int[size];
+            st.rowEnd = new int[size];
+        }
+        st.diameter = diameter;
+        st.flow = dabFlow;
+        st.hardness = hardness;
+        st.fx = fx;
+        st.fy = fy;
+        st.reach = reach;
+        st.size = size;
+
+        buildFalloff(r, outer);
+        float outer2 = outer * outer;
+        float toIndex = FALLOFF_SIZE / outer2;
+        float scale = dabFlow * (1 << FALLOFF_BITS);
+        // Centre relative to the stamp's top-left pixel corner
+        float cx = reach + (float) fx / SUBPIXEL;
+        float cy = reach + (float) fy / SUBPIXEL;
+        int[] values = st.values;
+        for (int j = 0; j < size; j++) {
+            float dy = j + 0.5f - cy;
+            int start = size, end = 0;
+            for (int i = 0; i < size; i++) {
+                float dx = i + 0.5f - cx;
+                int fi = (int) ((dx * dx + dy * dy) * toIndex);
+                int v = fi < FALLOFF_SIZE ? (int) (falloff[fi] * scale + 0.5f) : 0;
+                values[j * size + i] = v;
+                if (v != 0) {
+                    start = Math.min(start, i);
+                    end = i + 1;
+                }
+            }
+            st.rowStart[j] = start;
+            st.rowEnd[j] = Math.max(start, end);
+        }
+    }
+
+    /**
+     * Returns a tile's coverage mask for painting, first saving the tile's
+     * pixels if the stroke has not used it yet, and marks it for the next flush.
+     */
+    private char[] useTile(int t) {
+        if (!inStroke[t]) {
+            if (maskTiles[t] == null) {
+                maskTiles[t] = new char[TILE_SIZE * TILE_SIZE];
+                backupTiles[t] = new int[TILE_SIZE * TILE_SIZE];
+            }
+            int tx = (t % tilesX) << TILE_SHIFT;
+            int ty = (t / tilesX) << TILE_SHIFT;
+            int w = Math.min(TILE_SIZE, width - tx);
+            int h = Math.min(TILE_SIZE, height - ty);
+            int[] backup = backupTiles[t];
+            for (int row = 0; row < h; row++) {
+                System.arraycopy(pixels, (ty + row) * width + tx, backup, row << TILE_SHIFT, w);
+            }
+            inStroke[t] = true;
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = t;
+        }
+        if (!isPending[t]) {
+            isPending[t] = true;
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = t;
+        }
+        return maskTiles[t];
+    }
+
+    /**
+     * Fills the falloff table for a radius: coverage (0 - 1) by squared
+     * distance from the centre, full inside the hard core and easing to 0
+     * at the radius. The easing is at least one pixel wide, which
+     * anti-aliases the rim of hard brushes.
+     */
+    private void buildFalloff(float r, float outer) {
+        float core = Math.max(0, Math.min(hardness * r, r - 1));
+        float soft = outer - core;
+        // Dabs under a pixel wide fade out instead of vanishing
+        float scale = Math.min(1, 2 * r);
+        float outer2 = outer * outer;
+        for (int i = 0; i <= FALLOFF_SIZE; i++) {
+            float dist = (float) Math.sqrt((float) i / FALLOFF_SIZE * outer2);
+            float f;
+            if (dist <= core) {
+                f = 1;
+            } else {
+                float t = Math.min(1, (dist - core) / soft);
+                f = 1 - t * t * (3 - 2 * t);
+            }
+            falloff[i] = f * scale;
+        }
+    }
+
+    // ------------------ Compositing ------------------
+
+    /**
+     * Rewrites the pixels of a tile as the brush color over the saved
+     * pixels, by the stroke coverage.
+     */
+    private void compositeTile(int t, int tx, int ty, int w, int h) {
+        int cr = (color >> 16) & 0xFF;
+        int cg = (color >> 8) & 0xFF;
+        int cb = color & 0xFF;
+        char[] mask = maskTiles[t];
+        int[] backup = backupTiles[t];
+        for (int y = 0; y < h; y++) {
+            int mi = y << TILE_SHIFT;
+            int p = (ty + y) * width + tx;
+            for (int x = 0; x < w; x++) {
+                int m = mask[mi + x];
+                if (m != 0) {
+                    pixels[p + x] = over(backup[mi + x], cr, cg, cb, m);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blends an opaque color over a pixel with coverage {@code m}
+     * (0 - MASK_MAX), in premultiplied form.
+     */
+    private int over(int dst, int cr, int cg, int cb, int m) {
+        int inv = MASK_MAX - m;
+        int da = dst >>> 24;
+        int dr = (dst >> 16) & 0xFF;
+        int dg = (dst >> 8) & 0xFF;
+        int db = dst & 0xFF;
+        if (!premultiplied && da != 255) {
+            dr = (dr * da + 127) / 255;
+            dg = (dg * da + 127) / 255;
+            db = (db * da + 127) / 255;
+        }
+        int oa = (255 * m + da * inv + 32767) / MASK_MAX;
+        int or = (cr * m + dr * inv + 32767) / MASK_MAX;
+        int og = (cg * m + dg * inv + 32767) / MASK_MAX;
+        int ob = (cb * m + db * inv + 32767) / MASK_MAX;
+        if (!premultiplied && oa != 255 && oa != 0) {
+            or = Math.min(255, (or * 255 + oa / 2) / oa);
+            og = Math.min(255, (og * 255 + oa / 2) / oa);
+            ob = Math.min(255, (ob * 255 + oa / 2) / oa);
+        }
+        return (oa << 24) | (or << 16) | (og << 8) | ob;
+    }
+
+    // ------------------ Helpers ------------------
+
+    private void startCall() {
+        callX0 = callY0 = Integer.MAX_VALUE;
+        callX1 = callY1 = Integer.MIN_VALUE;
+    }
+
+    private Rectangle endCall() {
+        if (callX1 <= callX0) return null;
+        flushX0 = Math.min(flushX0, callX0);
+        flushY0 = Math.min(flushY0, callY0);
+        flushX1 = Math.max(flushX1, callX1);
+        flushY1 = Math.max(flushY1, callY1);
+        strokeX0 = Math.min(strokeX0, callX0);
+        strokeY0 = Math.min(strokeY0, callY0);
+        strokeX1 = Math.max(strokeX1, callX1);
+        strokeY1 = Math.max(strokeY1, callY1);
+        return new Rectangle(callX0, callY0, callX1 - callX0, callY1 - callY0);
+    }
+
+    private static float clamp(float v) {
+        return Math.max(0, Math.min(1, v));
+    }
+}
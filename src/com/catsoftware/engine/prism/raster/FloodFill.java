@@ -0,0 +1,288 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.raster;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Bucket fill for the raster layer, working directly on ARGB pixel arrays.
+ * The region is found with a span-based scanline search that keeps its own
+ * stack of spans (no recursion, so large regions cannot overflow the thread
+ * stack) and records the region in a bit mask. The mask is then written out
+ * row by row, in parallel for large regions, with optional soft edges.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class FloodFill {
+
+    /** Regions with at least this many pixels in their bounds are written in parallel */
+    public static final int PARALLEL_THRESHOLD = 1 << 18;
+
+    /** Color difference over the tolerance across which soft edges fade out */
+    public static final int EDGE_SOFTNESS = 64;
+
+    private int tolerance;
+    private boolean antialias;
+
+    /**
+     * Creates a fill with zero tolerance and hard edges.
+     */
+    public FloodFill() {
+    }
+
+    /**
+     * Creates a fill.
+     *
+     * @param tolerance Largest per-channel difference to the seed color that is still filled (0 - 255)
+     * @param antialias true to blend the fill into the pixels just outside the region
+     */
+    public FloodFill(int tolerance, boolean antialias) {
+        setTolerance(tolerance);
+        this.antialias = antialias;
+    }
+
+    /** @return The color tolerance (0 - 255) */
+    public int getTolerance() { return tolerance; }
+
+    /** @param tolerance Largest per-channel difference to the seed color that is still filled */
+    public void setTolerance(int tolerance) {
+        this.tolerance = Math.max(0, Math.min(255, tolerance));
+    }
+
+    /** @return true if edges are anti-aliased */
+    public boolean isAntialias() { return antialias; }
+
+    /** @param antialias true to blend the fill into the pixels just outside the region */
+    public void setAntialias(boolean antialias) {
+        this.antialias = antialias;
+    }
+
+    /**
+     * Fills the region connected to a seed pixel.
+     *
+     * @param pixels ARGB pixels, row by row
+     * @param width Image width
+     * @param height Image height
+     * @param x Seed X
+     * @param y Seed Y
+     * @param argb The fill color
+     * @return The bounding box of the changed pixels, or null if nothing changed
+     */
+    public Rectangle fill(int[] pixels, int width, int height, int x, int y, int argb) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return null;
+        }
+        int seed = pixels[y * width + x];
+        if (seed == argb && !antialias && tolerance == 0) {
+            // Only pixels equal to the fill color would be filled
+            return null;
+        }
+
+        Region region = new Region(pixels, width, height, seed, tolerance);
+        region.scan(x, y);
+
+        Rectangle bounds = region.getBounds();
+        if (antialias) {
+            // Soft edges reach one pixel outside the region
+            bounds.grow(1, 1);
+            bounds = bounds.intersection(new Rectangle(width, height));
+        }
+
+        final Rectangle b = bounds;
+        IntStream rows = IntStream.range(b.y, b.y + b.height);
+        if ((long) b.width * b.height >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        // Rows are independent: each one only writes its own pixels
+        rows.forEach(row -> writeRow(region, pixels, width, row, b.x, b.x + b.width, seed, argb));
+        return b;
+    }
+
+    /**
+     * Writes one row: fills region pixels and blends edge pixels.
+     */
+    private void writeRow(Region region, int[] pixels, int width,
+                          int y, int x0, int x1, int seed, int argb) {
+        int offset = y * width;
+        for (int x = x0; x < x1; x++) {
+            if (region.isSet(x, y)) {
+                pixels[offset + x] = argb;
+            } else if (antialias && region.touches(x, y)) {
+                int p = pixels[offset + x];
+                int over = distance(p, seed) - tolerance;
+                if (over < EDGE_SOFTNESS) {
+                    pixels[offset + x] = blend(p, argb, (EDGE_SOFTNESS - over) / (float) (EDGE_SOFTNESS * 2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest per-channel difference between two ARGB colors.
+     */
+    static int distance(int a, int b) {
+        int da = Math.abs((a >>> 24) - (b >>> 24));
+        int dr = Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF));
+        int dg = Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+        int db = Math.abs((a & 0xFF) - (b & 0xFF));
+        return Math.max(Math.max(da, dr), Math.max(dg, db));
+    }
+
+    /**
+     * Mixes {@code src} into {@code dst} by {@code t} (0 - 1), per channel.
+     */
+    static int blend(int dst, int src, float t) {
+        int a = mix(dst >>> 24, src >>> 24, t);
+        int r = mix((dst >> 16) & 0xFF, (src >> 16) & 0xFF, t);
+        int g = mix((dst >> 8) & 0xFF, (src >> 8) & 0xFF, t);
+        int b = mix(dst & 0xFF, src & 0xFF, t);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int mix(int d, int s, float t) {
+        return Math.round(d + (s - d) * t);
+    }
+
+    /**
+     * The pixels connected to the seed that are within the tolerance,
+     * stored as one bit per pixel.
+     */
+    private static final class Region {
+
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final int seed;
+        private final int tolerance;
+        private final long[] mask;
+
+        private int minX, minY, maxX, maxY;
+
+        // Pending spans: y, left, right, dy
+        private int[] stack = new int[256];
+        private int top;
+
+        Region(int[] pixels, int width, int height, int seed, int tolerance) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+            this.tolerance = tolerance;
+            this.mask = new long[(int) (((long) width * height + 63) >>> 6)];
+            minX = width;
+            minY = height;
+            maxX = -1;
+            maxY = -1;
+        }
+
+        boolean isSet(int x, int y) {
+            int i = y * width + x;
+            return (mask[i >>> 6] & (1L << i)) != 0;
+        }
+
+        /** @return true if a 4-neighbour is in the region */
+        boolean touches(int x, int y) {
+            return (x > 0 && isSet(x - 1, y))
+                || (x < width - 1 && isSet(x + 1, y))
+                || (y > 0 && isSet(x, y - 1))
+                || (y < height - 1 && isSet(x, y + 1));
+        }
+
+        private boolean inside(int x, int y) {
+            int i = y * width + x;
+            if ((mask[i >>> 6] & (1L << i)) != 0) return false;
+            int p = pixels[i];
+            return p == seed || (tolerance > 0 && distance(p, seed) <= tolerance);
+        }
+
+        private void set(int x, int y) {
+            int i = y * width + x;
+            mask[i >>> 6] |= 1L << i;
+        }
+
+        private void span(int left, int right, int y) {
+            if (left < minX) minX = left;
+            if (right > maxX) maxX = right;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+
+        private void push(int y, int left, int right, int dy) {
+            if (y + dy < 0 || y + dy >= height || left > right) return;
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = y;
+            stack[top++] = left;
+            stack[top++] = right;
+            stack[top++] = dy;
+        }
+
+        /**
+         * Span seed fill: each stack entry is a span that was filled on one
+         * row and the direction of the next row to scan beneath it. Runs
+         * that stick out past the parent span are also scanned backwards,
+         * so regions that wrap around obstacles are found.
+         */
+        void scan(int sx, int sy) {
+            // The second entry scans the seed row and is popped first
+            push(sy, sx, sx, 1);
+            push(sy + 1, sx, sx, -1);
+
+            while (top > 0) {
+                int dy = stack[--top];
+                int x2 = stack[--top];
+                int x1 = stack[--top];
+                int y = stack[--top] + dy;
+
+                // Extend left from x1
+                int x = x1;
+                while (x >= 0 && inside(x, y)) {
+                    set(x, y);
+                    x--;
+                }
+                int left;
+                boolean skip = x >= x1;
+                if (!skip) {
+                    left = x + 1;
+                    if (left < x1) {
+                        push(y, left, x1 - 1, -dy);
+                    }
+                    x = x1 + 1;
+                } else {
+                    left = x1;
+                }
+
+                do {
+                    if (!skip) {
+                        while (x < width && inside(x, y)) {
+                            set(x, y);
+                            x++;
+                        }
+                        span(left, x - 1, y);
+                        push(y, left, x - 1, dy);
+                        if (x > x2 + 1) {
+                            push(y, x2 + 1, x - 1, -dy);
+                        }
+                    }
+                    skip = false;
+                    for (x++; x <= x2 && !inside(x, y); x++) {
+                        // Skip pixels outside the region
+                    }
+                    left = x;
+                } while (x <= x2);
+            }
+        }
+
+        Rectangle getBounds() {
+            if (maxX < 0) return new Rectangle();
+            return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        }
+    }
+}
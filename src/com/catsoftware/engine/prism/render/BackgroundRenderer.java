@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.render;
+
+import com.catsoftware.engine.prism.transform.SnapGuides;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.TexturePaint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Paints the canvas background and grid for an editor view.
+ * The grid is drawn from a small tile rendered once per on-screen grid
+ * size and repeated with a {@link TexturePaint}, so a frame costs one
+ * fill of the visible area however many grid lines it shows. When zoomed
+ * out, grid lines are thinned out by the major-line factor so they never
+ * get closer than {@link #MIN_SPACING} screen pixels.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class BackgroundRenderer {
+
+    /** Closest on-screen spacing of grid lines in pixels */
+    public static final int MIN_SPACING = 8;
+
+    /** Every this many grid lines one is drawn as a major line */
+    public static final int MAJOR_EVERY = 5;
+
+    // Larger tiles are not cached; the major lines are drawn one by one instead
+    private static final int MAX_TILE_SIZE = 1024;
+
+    // Tiles kept for recently used zoom levels
+    private static final int CACHED_TILES = 8;
+
+    private int gridSize = SnapGuides.DEFAULT_GRID_SIZE;
+    private Color gridColor = new Color(0, 0, 0, 24);
+    private Color majorColor = new Color(0, 0, 0, 56);
+
+    private final Map<Integer, BufferedImage> tiles = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+            return size() > CACHED_TILES;
+        }
+    };
+
+    /**
+     * Paints the background and grid of the visible part of the canvas.
+     *
+     * @param g The graphics context, in screen coordinates
+     * @param view The transform from canvas to screen coordinates (zoom and pan)
+     * @param visible The visible area in screen coordinates
+     * @param canvasWidth Canvas width (ignored when infinite)
+     * @param canvasHeight Canvas height (ignored when infinite)
+     * @param background The canvas color (null for transparent)
+     * @param infinite true if the canvas has no edges
+     * @param gridEnabled true to draw the grid
+     */
+    public void paint(Graphics2D g, AffineTransform view, Rectangle visible,
+                      int canvasWidth, int canvasHeight, Color background,
+                      boolean infinite, boolean gridEnabled) {
+        Rectangle2D area;
+        try {
+            area = view.createInverse().createTransformedShape(visible).getBounds2D();
+        } catch (NoninvertibleTransformException e) {
+            return;
+        }
+        if (!infinite) {
+            Rectangle2D.intersect(area, new Rectangle2D.Double(0, 0, canvasWidth, canvasHeight), area);
+            if (area.isEmpty()) return;
+        }
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.transform(view);
+            if (background != null) {
+                g2.setColor(background);
+                g2.fill(area);
+            }
+            if (gridEnabled) {
+                paintGrid(g2, area, Math.sqrt(Math.abs(view.getDeterminant())));
+            }
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Fills an area of the canvas with the grid pattern.
+     *
+     * @param g The graphics context, in canvas coordinates
+     * @param area The area to fill, in canvas coordinates
+     * @param zoom Screen pixels per canvas pixel
+     */
+    private void paintGrid(Graphics2D g, Rectangle2D area, double zoom) {
+        if (!(zoom > 0)) return;
+
+        // Thin out the lines until they are far enough apart on screen
+        double step = gridSize;
+        while (step * zoom < MIN_SPACING) {
+            step *= MAJOR_EVERY;
+        }
+
+        double period = step * MAJOR_EVERY;
+        boolean withMajor = Math.round(period * zoom) <= MAX_TILE_SIZE;
+        if (!withMajor) {
+            period = step;
+        }
+        int tilePx = (int) Math.max(1, Math.min(MAX_TILE_SIZE, Math.round(period * zoom)));
+
+        // Anchored at the canvas origin, so the lines stay put while panning
+        BufferedImage tile = getTile(tilePx, withMajor);
+        g.setPaint(new TexturePaint(tile, new Rectangle2D.Double(0, 0, period, period)));
+        g.fill(area);
+
+        if (!withMajor) {
+            // Zoomed far in: few major lines are visible, draw them directly
+            double major = step * MAJOR_EVERY;
+            g.setColor(majorColor);
+            g.setStroke(new BasicStroke((float) (1 / zoom)));
+            for (double x = Math.ceil(area.getMinX() / major) * major; x <= area.getMaxX(); x += major) {
+                g.draw(new Line2D.Double(x, area.getMinY(), x, area.getMaxY()));
+            }
+            for (double y = Math.ceil(area.getMinY() / major) * major; y <= area.getMaxY(); y += major) {
+                g.draw(new Line2D.Double(area.getMinX(), y, area.getMaxX(), y));
+            }
+        }
+    }
+
+    /**
+     * Returns the grid tile of a given on-screen size, rendering it on first use.
+     * Lines are one screen pixel wide along the tile's top and left edges.
+     */
+    private synchronized BufferedImage getTile(int size, boolean withMajor) {
+        int key = withMajor ? size : -size;
+        BufferedImage tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
+        tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        g.setColor(gridColor);
+        if (withMajor) {
+            for (int i = 1; i < MAJOR_EVERY; i++) {
+                int p = (int) Math.round((double) i * size / MAJOR_EVERY);
+                g.fillRect(p, 0, 1, size);
+                g.fillRect(0, p, size, 1);
+            }
+            g.setColor(majorColor);
+        }
+        g.fillRect(0, 0, 1, size);
+        g.fillRect(1, 0, size - 1, 1);
+        g.dispose();
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    // ------------------ Settings ------------------
+
+    /** @return The grid spacing in canvas pixels */
+    public int getGridSize() { return gridSize; }
+
+    /** @param gridSize The grid spacing in canvas pixels */
+    public void setGridSize(int gridSize) {
+        this.gridSize = Math.max(1, gridSize);
+    }
+
+    /** @return The color of regular grid lines */
+    public Color getGridColor() { return gridColor; }
+
+    /** @param gridColor The color of regular grid lines */
+    public synchronized void setGridColor(Color gridColor) {
+        this.gridColor = gridColor;
+        tiles.clear();
+    }
+
+    /** @return The color of major grid lines */
+    public Color getMajorColor() { return majorColor; }
+
+    /** @param majorColor The color of major grid lines */
+    public synchronized void setMajorColor(Color majorColor) {
+        this.majorColor = majorColor;
+        tiles.clear();
+    }
+}
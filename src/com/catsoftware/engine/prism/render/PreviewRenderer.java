@@ -0,0 +1,135 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.render;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Renders small previews of a document for thumbnails and file browsers.
+ * The raster layer is sampled straight from its pixel array at preview
+ * resolution, and objects that would be smaller than a pixel are skipped.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class PreviewRenderer {
+
+    /**
+     * Renders a preview that fits in a square of {@code maxSize} pixels.
+     *
+     * @param canvasWidth Canvas width (0 to use the content bounds)
+     * @param canvasHeight Canvas height (0 to use the content bounds)
+     * @param background Background color (null for transparent)
+     * @param raster Raster ARGB pixels, or null
+     * @param rasterWidth Raster width
+     * @param rasterHeight Raster height
+     * @param objects Vector objects, bottom first
+     * @param maxSize Maximum width and height of the preview
+     * @return The preview image
+     */
+    public static BufferedImage render(int canvasWidth, int canvasHeight, Color background,
+                                       int[] raster, int rasterWidth, int rasterHeight,
+                                       List<DrawableObject> objects, int maxSize) {
+        Rectangle area = new Rectangle(0, 0, canvasWidth, canvasHeight);
+        if (area.isEmpty()) {
+            // Infinite or unsized canvas - preview whatever has been drawn
+            area = new Rectangle(0, 0, rasterWidth, rasterHeight);
+            for (DrawableObject obj : objects) {
+                area.add(obj.getBounds());
+            }
+        }
+        if (area.isEmpty()) {
+            area.setSize(1, 1);
+        }
+
+        double scale = Math.min(1.0, (double) maxSize / Math.max(area.width, area.height));
+        int w = Math.max(1, (int) Math.round(area.width * scale));
+        int h = Math.max(1, (int) Math.round(area.height * scale));
+
+        BufferedImage preview = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = preview.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            if (background != null) {
+                g.setColor(background);
+                g.fillRect(0, 0, w, h);
+            }
+
+            if (raster != null && rasterWidth > 0 && rasterHeight > 0) {
+                g.drawImage(sampleRaster(raster, rasterWidth, rasterHeight, area, scale, w, h), 0, 0, null);
+            }
+
+            g.scale(scale, scale);
+            g.translate(-area.x, -area.y);
+            double minSize = 1.0 / scale;
+            for (DrawableObject obj : objects) {
+                Rectangle b = obj.getBounds();
+                if (b.width < minSize && b.height < minSize) {
+                    continue;
+                }
+                if (!b.intersects(area)) {
+                    continue;
+                }
+                obj.draw(g);
+            }
+        } finally {
+            g.dispose();
+        }
+        return preview;
+    }
+
+    /**
+     * Nearest-neighbour samples the raster at preview resolution.
+     */
+    private static BufferedImage sampleRaster(int[] raster, int rasterWidth, int rasterHeight,
+                                              Rectangle area, double scale, int w, int h) {
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            int sy = area.y + (int) (y / scale);
+            if (sy < 0 || sy >= rasterHeight) continue;
+            int offset = sy * rasterWidth;
+            for (int x = 0; x < w; x++) {
+                int sx = area.x + (int) (x / scale);
+                row[x] = (sx >= 0 && sx < rasterWidth) ? raster[offset + sx] : 0;
+            }
+            img.setRGB(0, y, w, 1, row, 0, w);
+        }
+        return img;
+    }
+
+    /**
+     * Scales an image down to fit in a square of {@code maxSize} pixels.
+     * Images that already fit are returned unchanged.
+     *
+     * @param src The source image
+     * @param maxSize Maximum width and height
+     * @return The scaled image
+     */
+    public static BufferedImage fit(BufferedImage src, int maxSize) {
+        double scale = (double) maxSize / Math.max(src.getWidth(), src.getHeight());
+        if (scale >= 1.0) {
+            return src;
+        }
+        int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                           RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        return scaled;
+    }
+}
@@ -0,0 +1,522 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.render;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.RenderState;
+import com.catsoftware.engine.prism.draw.ResizeHandle;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws and hit-tests the resize and rotate handles of a selection.
+ * The handles of every selected box are drawn together: when the view is
+ * not scaled, a pre-rendered handle is stamped into one cached layer that
+ * is drawn with a single call and only rebuilt when the selection, the
+ * view offset or the visible area changes. Scaled or rotated views fill
+ * and outline one path holding all handles. The handle under the cursor
+ * is found by comparing the cursor with the edges and centre lines of
+ * the nearby boxes, which are looked up in a small hash grid instead of
+ * testing every handle.
+ *
+ * <p>Handles look and sit exactly like {@link ResizeHandle}s, and the
+ * overlay works in whatever coordinates the boxes are given in.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SelectionOverlay {
+
+    /** Width and height of a handle, as for {@link ResizeHandle} */
+    public static final int HANDLE_SIZE = 8;
+
+    /** Gap between the top of a box and its rotate handle */
+    public static final int ROTATE_GAP = 5;
+
+    // Hit-test grid cell size; a handle touches at most four cells
+    private static final int CELL_SIZE = 32;
+
+    private static final Color FILL_COLOR = RenderState.color(0, 120, 255);
+    private static final Color BORDER_COLOR = Color.WHITE;
+    private static final Color HIGHLIGHT_COLOR = RenderState.color(200, 230, 255);
+    private static final BasicStroke BORDER_STROKE =
+        RenderState.stroke(1.5f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER);
+
+    private static final ResizeHandle.Position[] POSITIONS = ResizeHandle.Position.values();
+
+    // x, y, width, height of each box
+    private int[] boxes = new int[0];
+    private int count;
+    private boolean rotate = true;
+
+    // All handles, built when a scaled view first needs them
+    private final Path2D.Float handles = new Path2D.Float();
+    private final Path2D.Float highlights = new Path2D.Float();
+    private boolean pathsValid;
+    private final Rectangle handleBounds = new Rectangle();
+
+    // One handle rendered per antialiasing mode, STAMP_PAD pixels in from its corner
+    private static final int STAMP_PAD = 2;
+    private static final int STAMP_SIZE = HANDLE_SIZE + 2 * STAMP_PAD;
+    private static final int[][] STAMPS = new int[2][];
+
+    // The handles of the visible area in device pixels, and where it sits
+    private BufferedImage buffer;
+    private BufferedImage layer;
+    private final Rectangle layerArea = new Rectangle();
+    private int layerOffsetX;
+    private int layerOffsetY;
+    private boolean layerAntialiased;
+    private boolean layerValid;
+
+    // Cell key -> box indices whose handles touch the cell; element 0 is the count
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    /**
+     * A handle found under the cursor.
+     */
+    public static final class Hit {
+
+        private final int index;
+        private final ResizeHandle.Position position;
+        private final Rectangle box;
+
+        private Hit(int index, ResizeHandle.Position position, Rectangle box) {
+            this.index = index;
+            this.position = position;
+            this.box = box;
+        }
+
+        /** @return The index of the box the handle belongs to */
+        public int getIndex() { return index; }
+
+        /** @return The handle position */
+        public ResizeHandle.Position getPosition() { return position; }
+
+        /** @return A copy of the box the handle belongs to */
+        public Rectangle getBox() { return new Rectangle(box); }
+    }
+
+    // ------------------ Selection ------------------
+
+    /**
+     * Shows handles around each selected object.
+     *
+     * @param selection The selected objects, bottom first
+     */
+    public void setSelection(Collection<? extends DrawableObject> selection) {
+        int[] b = new int[selection.size() * 4];
+        int n = 0;
+        for (DrawableObject obj : selection) {
+            Rectangle r = obj.getBounds();
+            b[n++] = r.x;
+            b[n++] = r.y;
+            b[n++] = r.width;
+            b[n++] = r.height;
+        }
+        setBoxes(b, n / 4);
+    }
+
+    /**
+     * Shows handles around each box.
+     *
+     * @param bounds The boxes, bottom first
+     */
+    public void setBounds(List<Rectangle> bounds) {
+        int[] b = new int[bounds.size() * 4];
+        int n = 0;
+        for (Rectangle r : bounds) {
+            b[n++] = r.x;
+            b[n++] = r.y;
+            b[n++] = r.width;
+            b[n++] = r.height;
+        }
+        setBoxes(b, n / 4);
+    }
+
+    /**
+     * Removes all handles.
+     */
+    public void clear() {
+        setBoxes(new int[0], 0);
+    }
+
+    /** @return The number of boxes with handles */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a box.
+     *
+     * @param index The box index
+     * @return A copy of the box
+     */
+    public Rectangle getBox(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Box " + index + " of " + count);
+        }
+        return new Rectangle(boxes[index * 4], boxes[index * 4 + 1],
+                             boxes[index * 4 + 2], boxes[index * 4 + 3]);
+    }
+
+    /** @return true if boxes get a rotate handle */
+    public boolean isRotateShown() { return rotate; }
+
+    /** @param rotate true to give boxes a rotate handle */
+    public void setRotateShown(boolean rotate) {
+        if (this.rotate != rotate) {
+            this.rotate = rotate;
+            setBoxes(boxes, count);
+        }
+    }
+
+    /**
+     * Rebuilds the hit-test grid and the handle bounds.
+     */
+    private void setBoxes(int[] b, int n) {
+        boxes = b;
+        count = n;
+        cells.clear();
+        handleBounds.setBounds(0, 0, 0, 0);
+        pathsValid = false;
+        layerValid = false;
+
+        int last = rotate ? POSITIONS.length : POSITIONS.length - 1;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            for (int p = 0; p < last; p++) {
+                int hx = handleX(POSITIONS[p], i);
+                int hy = handleY(POSITIONS[p], i);
+                minX = Math.min(minX, hx);
+                minY = Math.min(minY, hy);
+                maxX = Math.max(maxX, hx + HANDLE_SIZE);
+                maxY = Math.max(maxY, hy + HANDLE_SIZE);
+                for (int cy = cell(hy); cy <= cell(hy + HANDLE_SIZE - 1); cy++) {
+                    for (int cx = cell(hx); cx <= cell(hx + HANDLE_SIZE - 1); cx++) {
+                        addToCell(key(cx, cy), i);
+                    }
+                }
+            }
+        }
+        if (n > 0) {
+            // Borders reach past the handle squares
+            handleBounds.setBounds(minX - STAMP_PAD, minY - STAMP_PAD,
+                                   maxX - minX + 2 * STAMP_PAD, maxY - minY + 2 * STAMP_PAD);
+        }
+    }
+
+    /**
+     * Collects every handle into the fill and highlight paths.
+     */
+    private void buildPaths() {
+        handles.reset();
+        highlights.reset();
+        int last = rotate ? POSITIONS.length : POSITIONS.length - 1;
+        for (int i = 0; i < count; i++) {
+            for (int p = 0; p < last; p++) {
+                float hx = handleX(POSITIONS[p], i);
+                float hy = handleY(POSITIONS[p], i);
+                handles.moveTo(hx, hy);
+                handles.lineTo(hx + HANDLE_SIZE, hy);
+                handles.lineTo(hx + HANDLE_SIZE, hy + HANDLE_SIZE);
+                handles.lineTo(hx, hy + HANDLE_SIZE);
+                handles.closePath();
+                highlights.moveTo(hx + 1, hy + 1);
+                highlights.lineTo(hx + HANDLE_SIZE - 1, hy + 1);
+                highlights.lineTo(hx + HANDLE_SIZE - 1, hy + HANDLE_SIZE - 1);
+                highlights.lineTo(hx + 1, hy + HANDLE_SIZE - 1);
+                highlights.closePath();
+            }
+        }
+        pathsValid = true;
+    }
+
+    // ------------------ Drawing ------------------
+
+    /**
+     * Draws all handles.
+     *
+     * @param g The graphics context, in the boxes' coordinates
+     */
+    public void draw(Graphics2D g) {
+        if (count == 0) return;
+        AffineTransform at = g.getTransform();
+        if (at.getType() == AffineTransform.TYPE_IDENTITY
+                || (at.getType() == AffineTransform.TYPE_TRANSLATION
+                    && at.getTranslateX() == Math.rint(at.getTranslateX())
+                    && at.getTranslateY() == Math.rint(at.getTranslateY()))) {
+            drawLayer(g, (int) at.getTranslateX(), (int) at.getTranslateY());
+            return;
+        }
+
+        if (!pathsValid) {
+            buildPaths();
+        }
+        Paint originalPaint = g.getPaint();
+        Stroke originalStroke = g.getStroke();
+
+        g.setColor(FILL_COLOR);
+        g.fill(handles);
+        g.setColor(BORDER_COLOR);
+        g.setStroke(BORDER_STROKE);
+        g.draw(handles);
+        g.setColor(HIGHLIGHT_COLOR);
+        g.draw(highlights);
+
+        g.setPaint(originalPaint);
+        g.setStroke(originalStroke);
+    }
+
+    /**
+     * Returns the area the handles cover, including their borders.
+     *
+     * @return The bounds in the boxes' coordinates (empty if there are no boxes)
+     */
+    public Rectangle getHandleBounds() {
+        return new Rectangle(handleBounds);
+    }
+
+    /**
+     * Draws the cached layer of handles, rebuilding it if the selection,
+     * offset or visible area changed.
+     */
+    private void drawLayer(Graphics2D g, int offsetX, int offsetY) {
+        Rectangle area = getHandleBounds();
+        area.translate(offsetX, offsetY);
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            // getClipBounds is in user space; move it to device space
+            clip.translate(offsetX, offsetY);
+            area = area.intersection(clip);
+        }
+        if (area.isEmpty()) return;
+
+        boolean aa = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON;
+        if (!layerValid || aa != layerAntialiased || !area.equals(layerArea)
+                || offsetX != layerOffsetX || offsetY != layerOffsetY) {
+            buildLayer(area, offsetX, offsetY, aa);
+        }
+        g.drawImage(layer, area.x - offsetX, area.y - offsetY, null);
+    }
+
+    /**
+     * Stamps every handle that touches the area into the layer.
+     */
+    private void buildLayer(Rectangle area, int offsetX, int offsetY, boolean aa) {
+        if (buffer == null || buffer.getWidth() < area.width || buffer.getHeight() < area.height) {
+            buffer = new BufferedImage(Math.max(area.width, buffer != null ? buffer.getWidth() : 0),
+                                       Math.max(area.height, buffer != null ? buffer.getHeight() : 0),
+                                       BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        int lw = buffer.getWidth();
+        int[] dst = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < area.height; row++) {
+            Arrays.fill(dst, row * lw, row * lw + area.width, 0);
+        }
+        // Only the area's corner of a larger buffer is drawn
+        layer = buffer.getWidth() == area.width && buffer.getHeight() == area.height
+              ? buffer : buffer.getSubimage(0, 0, area.width, area.height);
+
+        int[] stamp = getStamp(aa);
+        int last = rotate ? POSITIONS.length : POSITIONS.length - 1;
+        for (int i = 0; i < count; i++) {
+            for (int p = 0; p < last; p++) {
+                int sx = handleX(POSITIONS[p], i) + offsetX - STAMP_PAD - area.x;
+                int sy = handleY(POSITIONS[p], i) + offsetY - STAMP_PAD - area.y;
+                if (sx >= area.width || sy >= area.height
+                        || sx + STAMP_SIZE <= 0 || sy + STAMP_SIZE <= 0) {
+                    continue;
+                }
+                int x0 = Math.max(0, -sx), x1 = Math.min(STAMP_SIZE, area.width - sx);
+                int y0 = Math.max(0, -sy), y1 = Math.min(STAMP_SIZE, area.height - sy);
+                for (int y = y0; y < y1; y++) {
+                    int d = (sy + y) * lw + sx;
+                    int s = y * STAMP_SIZE;
+                    for (int x = x0; x < x1; x++) {
+                        int src = stamp[s + x];
+                        int sa = src >>> 24;
+                        if (sa == 255) {
+                            dst[d + x] = src;
+                        } else if (sa != 0) {
+                            dst[d + x] = over(src, dst[d + x], 255 - sa);
+                        }
+                    }
+                }
+            }
+        }
+        layerArea.setBounds(area);
+        layerOffsetX = offsetX;
+        layerOffsetY = offsetY;
+        layerAntialiased = aa;
+        layerValid = true;
+    }
+
+    /**
+     * Composites a premultiplied pixel over another.
+     */
+    private static int over(int src, int dst, int inv) {
+        int a = (src >>> 24) + ((dst >>> 24) * inv + 127) / 255;
+        int r = ((src >> 16) & 0xFF) + (((dst >> 16) & 0xFF) * inv + 127) / 255;
+        int gr = ((src >> 8) & 0xFF) + (((dst >> 8) & 0xFF) * inv + 127) / 255;
+        int b = (src & 0xFF) + ((dst & 0xFF) * inv + 127) / 255;
+        return (a << 24) | (r << 16) | (gr << 8) | b;
+    }
+
+    /**
+     * Returns one handle as premultiplied pixels, drawn the way
+     * {@link ResizeHandle#draw} draws it.
+     */
+    private static synchronized int[] getStamp(boolean aa) {
+        int k = aa ? 1 : 0;
+        if (STAMPS[k] == null) {
+            BufferedImage img = new BufferedImage(STAMP_SIZE, STAMP_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = img.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               aa ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+            ResizeHandle handle = new ResizeHandle(ResizeHandle.Position.TOP_LEFT);
+            handle.updatePosition(new Rectangle(STAMP_PAD, STAMP_PAD, HANDLE_SIZE, HANDLE_SIZE));
+            handle.draw(g);
+            g.dispose();
+            STAMPS[k] = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        }
+        return STAMPS[k];
+    }
+
+    // ------------------ Hit testing ------------------
+
+    /**
+     * Finds the handle under a point. Where handles overlap, the topmost
+     * box wins, and within a box corners win over edges, as with a list
+     * of {@link ResizeHandle}s.
+     *
+     * @param x Point X
+     * @param y Point Y
+     * @return The handle, or null if there is none
+     */
+    public Hit handleAt(int x, int y) {
+        int[] list = cells.get(key(cell(x), cell(y)));
+        if (list == null) return null;
+        for (int k = list[0]; k >= 1; k--) {
+            int i = list[k];
+            ResizeHandle.Position p = handleAt(boxes[i * 4], boxes[i * 4 + 1],
+                                               boxes[i * 4 + 2], boxes[i * 4 + 3],
+                                               x, y, rotate);
+            if (p != null) {
+                return new Hit(i, p, getBox(i));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the handle of one box under a point, from the box edges alone.
+     *
+     * @param box The box
+     * @param x Point X
+     * @param y Point Y
+     * @param rotate true if the box has a rotate handle
+     * @return The handle position, or null if there is none
+     */
+    public static ResizeHandle.Position handleAt(Rectangle box, int x, int y, boolean rotate) {
+        return handleAt(box.x, box.y, box.width, box.height, x, y, rotate);
+    }
+
+    private static ResizeHandle.Position handleAt(int bx, int by, int bw, int bh,
+                                                  int x, int y, boolean rotate) {
+        int s = HANDLE_SIZE;
+        int midX = bx + bw / 2 - s / 2;
+        int midY = by + bh / 2 - s / 2;
+
+        boolean left = x >= bx && x < bx + s;
+        boolean right = x >= bx + bw - s && x < bx + bw;
+        boolean center = x >= midX && x < midX + s;
+        boolean top = y >= by && y < by + s;
+        boolean bottom = y >= by + bh - s && y < by + bh;
+        boolean middle = y >= midY && y < midY + s;
+
+        if (top && left) return ResizeHandle.Position.TOP_LEFT;
+        if (top && right) return ResizeHandle.Position.TOP_RIGHT;
+        if (bottom && left) return ResizeHandle.Position.BOTTOM_LEFT;
+        if (bottom && right) return ResizeHandle.Position.BOTTOM_RIGHT;
+        if (top && center) return ResizeHandle.Position.TOP;
+        if (bottom && center) return ResizeHandle.Position.BOTTOM;
+        if (middle && left) return ResizeHandle.Position.LEFT;
+        if (middle && right) return ResizeHandle.Position.RIGHT;
+
+        int rotateY = by - s - ROTATE_GAP;
+        if (rotate && center && y >= rotateY && y < rotateY + s) {
+            return ResizeHandle.Position.ROTATE;
+        }
+        return null;
+    }
+
+    // ------------------ Helpers ------------------
+
+    private int handleX(ResizeHandle.Position p, int i) {
+        int bx = boxes[i * 4], bw = boxes[i * 4 + 2];
+        switch (p) {
+            case TOP_LEFT: case BOTTOM_LEFT: case LEFT:
+                return bx;
+            case TOP_RIGHT: case BOTTOM_RIGHT: case RIGHT:
+                return bx + bw - HANDLE_SIZE;
+            default:
+                return bx + bw / 2 - HANDLE_SIZE / 2;
+        }
+    }
+
+    private int handleY(ResizeHandle.Position p, int i) {
+        int by = boxes[i * 4 + 1], bh = boxes[i * 4 + 3];
+        switch (p) {
+            case TOP_LEFT: case TOP_RIGHT: case TOP:
+                return by;
+            case BOTTOM_LEFT: case BOTTOM_RIGHT: case BOTTOM:
+                return by + bh - HANDLE_SIZE;
+            case ROTATE:
+                return by - HANDLE_SIZE - ROTATE_GAP;
+            default:
+                return by + bh / 2 - HANDLE_SIZE / 2;
+        }
+    }
+
+    private void addToCell(Long key, int index) {
+        int[] list = cells.get(key);
+        if (list == null) {
+            list = new int[4];
+            cells.put(key, list);
+        } else if (list[list[0]] == index) {
+            // Another handle of the same box in this cell
+            return;
+        } else if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+            cells.put(key, list);
+        }
+        list[++list[0]] = index;
+    }
+
+    private static int cell(int v) {
+        return Math.floorDiv(v, CELL_SIZE);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
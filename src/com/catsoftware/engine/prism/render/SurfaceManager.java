@@ -0,0 +1,447 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.render;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Owns the offscreen surfaces an editor view renders through: a back
+ * buffer for whole frames, cached layers for content that rarely changes,
+ * and downscaled copies (mipmaps) of large images.
+ *
+ * <p>With a screen {@link GraphicsConfiguration}, the back buffer and
+ * layers are {@link VolatileImage}s, which Java2D keeps in video memory
+ * where the pipeline supports it, and images are copied into compatible
+ * images that Java2D can cache there too. Volatile surfaces can lose
+ * their contents at any time (display change, screen lock, another
+ * program taking the memory); the manager checks for this and repaints
+ * layers from their painters, and {@link #render} repeats a frame until
+ * it got through intact.</p>
+ *
+ * <p>Without a screen (headless, or a null configuration) every surface is
+ * a {@link BufferedImage} that is never lost, so the same code runs in
+ * batch jobs and tests.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SurfaceManager {
+
+    // Attempts at a frame before giving up on a surface that keeps getting lost
+    private static final int MAX_FRAME_ATTEMPTS = 4;
+
+    // Images smaller than this are drawn as they are
+    private static final int MIN_MIPMAP_SIZE = 64;
+
+    private final GraphicsConfiguration config;
+
+    private VolatileImage volatileBuffer;
+    private BufferedImage bufferedBuffer;
+
+    private final List<Layer> layers = new ArrayList<>();
+    private final Map<BufferedImage, Image[]> mipmaps = new WeakHashMap<>();
+
+    /**
+     * Creates a manager for the default screen, or an unaccelerated one
+     * when running headless.
+     */
+    public SurfaceManager() {
+        this(defaultConfiguration());
+    }
+
+    /**
+     * Creates a manager for a screen configuration.
+     *
+     * @param config The configuration of the screen the view is on
+     *               (for example {@code component.getGraphicsConfiguration()}),
+     *               or null to use plain {@link BufferedImage}s
+     */
+    public SurfaceManager(GraphicsConfiguration config) {
+        this.config = config;
+    }
+
+    private static GraphicsConfiguration defaultConfiguration() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        try {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        } catch (HeadlessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks if surfaces are volatile images that may be accelerated.
+     *
+     * @return false if the manager falls back to {@link BufferedImage}s
+     */
+    public boolean isAccelerated() {
+        return config != null;
+    }
+
+    /** @return The screen configuration, or null when not accelerated */
+    public GraphicsConfiguration getConfiguration() {
+        return config;
+    }
+
+    // ------------------ Back buffer ------------------
+
+    /**
+     * Renders a frame into the back buffer and copies it to the target.
+     * If the back buffer loses its contents on the way, the frame is
+     * painted again.
+     *
+     * @param target The graphics to show the frame on
+     * @param x Target X
+     * @param y Target Y
+     * @param width Frame width
+     * @param height Frame height
+     * @param painter Paints the frame, covering every pixel (the buffer is
+     *                opaque); it receives a fresh graphics context and must
+     *                not dispose it
+     * @return true if the frame was shown, false if the surface was lost on
+     *         every attempt (the caller should schedule another repaint)
+     */
+    public boolean render(Graphics2D target, int x, int y, int width, int height,
+                          Consumer<Graphics2D> painter) {
+        if (width <= 0 || height <= 0) return true;
+        for (int attempt = 0; attempt < MAX_FRAME_ATTEMPTS; attempt++) {
+            Image buffer = validateBackBuffer(width, height);
+            Graphics2D g = (Graphics2D) buffer.getGraphics();
+            try {
+                painter.accept(g);
+            } finally {
+                g.dispose();
+            }
+            if (lost(buffer)) continue;
+            target.drawImage(buffer, x, y, null);
+            if (!lost(buffer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a back buffer of the given size that is ready to draw on,
+     * replacing it if its size changed or it no longer fits the screen.
+     */
+    private Image validateBackBuffer(int width, int height) {
+        if (config == null) {
+            if (bufferedBuffer == null || bufferedBuffer.getWidth() != width
+                    || bufferedBuffer.getHeight() != height) {
+                bufferedBuffer = createCompatible(width, height, Transparency.OPAQUE);
+            }
+            return bufferedBuffer;
+        }
+        if (volatileBuffer == null || volatileBuffer.getWidth() != width
+                || volatileBuffer.getHeight() != height
+                || volatileBuffer.validate(config) == VolatileImage.IMAGE_INCOMPATIBLE) {
+            if (volatileBuffer != null) {
+                volatileBuffer.flush();
+            }
+            volatileBuffer = createVolatile(width, height, Transparency.OPAQUE);
+        }
+        return volatileBuffer;
+    }
+
+    // ------------------ Layers ------------------
+
+    /**
+     * A cached surface for content that changes rarely, such as the
+     * background or the objects under the one being edited. Its painter
+     * runs when the layer is first drawn, after {@link #invalidate}, and
+     * whenever the surface lost its contents.
+     */
+    public final class Layer {
+
+        private final int transparency;
+        private final Consumer<Graphics2D> painter;
+        private int width;
+        private int height;
+        private Image image;
+        private boolean valid;
+
+        private Layer(int width, int height, int transparency, Consumer<Graphics2D> painter) {
+            this.width = width;
+            this.height = height;
+            this.transparency = transparency;
+            this.painter = painter;
+        }
+
+        /**
+         * Draws the layer, repainting it first if needed.
+         *
+         * @param g The graphics to draw on
+         * @param x Target X
+         * @param y Target Y
+         */
+        public void draw(Graphics2D g, int x, int y) {
+            for (int attempt = 0; attempt < MAX_FRAME_ATTEMPTS; attempt++) {
+                validate();
+                g.drawImage(image, x, y, null);
+                if (!lost(image)) return;
+                valid = false;
+            }
+        }
+
+        /**
+         * Marks the content as out of date, so it is repainted on next use.
+         */
+        public void invalidate() {
+            valid = false;
+        }
+
+        /**
+         * Changes the layer size. The content is repainted on next use.
+         *
+         * @param width New width
+         * @param height New height
+         */
+        public void setSize(int width, int height) {
+            if (width != this.width || height != this.height) {
+                this.width = width;
+                this.height = height;
+                flush();
+            }
+        }
+
+        /** @return Layer width */
+        public int getWidth() { return width; }
+
+        /** @return Layer height */
+        public int getHeight() { return height; }
+
+        /**
+         * Frees the surface. The layer stays usable and repaints on next use.
+         */
+        public void flush() {
+            if (image != null) {
+                image.flush();
+                image = null;
+            }
+            valid = false;
+        }
+
+        /**
+         * Makes sure the surface exists and holds the painted content.
+         */
+        private void validate() {
+            if (image == null) {
+                image = createSurface(Math.max(1, width), Math.max(1, height), transparency);
+                valid = false;
+            } else if (image instanceof VolatileImage) {
+                int status = ((VolatileImage) image).validate(config);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    image.flush();
+                    image = createSurface(Math.max(1, width), Math.max(1, height), transparency);
+                    valid = false;
+                } else if (status == VolatileImage.IMAGE_RESTORED) {
+                    valid = false;
+                }
+            }
+            if (!valid) {
+                Graphics2D g = (Graphics2D) image.getGraphics();
+                try {
+                    if (transparency != Transparency.OPAQUE) {
+                        // Start from transparent, not whatever the memory held
+                        g.setComposite(AlphaComposite.Clear);
+                        g.fillRect(0, 0, width, height);
+                        g.setComposite(AlphaComposite.SrcOver);
+                    }
+                    painter.accept(g);
+                } finally {
+                    g.dispose();
+                }
+                valid = true;
+            }
+        }
+    }
+
+    /**
+     * Creates a cached layer.
+     *
+     * @param width Layer width
+     * @param height Layer height
+     * @param transparency {@link Transparency#OPAQUE} if the painter covers
+     *                     every pixel, otherwise {@link Transparency#TRANSLUCENT}
+     * @param painter Paints the layer's content; it receives a fresh graphics
+     *                context and must not dispose it
+     * @return The layer
+     */
+    public Layer createLayer(int width, int height, int transparency, Consumer<Graphics2D> painter) {
+        Layer layer = new Layer(width, height, transparency, painter);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * Frees a layer's surface and stops tracking it.
+     *
+     * @param layer The layer
+     */
+    public void releaseLayer(Layer layer) {
+        layer.flush();
+        layers.remove(layer);
+    }
+
+    // ------------------ Images ------------------
+
+    /**
+     * Draws an image scaled, from the smallest cached copy that is still at
+     * least as large as the target, so large images drawn small are not
+     * resampled from full size each frame. Copies are made on first use in
+     * the screen's native format.
+     *
+     * @param g The graphics to draw on
+     * @param image The image
+     * @param x Target X
+     * @param y Target Y
+     * @param width Target width (in the current user space)
+     * @param height Target height (in the current user space)
+     */
+    public void drawImage(Graphics2D g, BufferedImage image, int x, int y, int width, int height) {
+        double scale = Math.sqrt(Math.abs(g.getTransform().getDeterminant()));
+        int deviceW = (int) Math.ceil(width * scale);
+        int deviceH = (int) Math.ceil(height * scale);
+        g.drawImage(getMipmap(image, deviceW, deviceH), x, y, width, height, null);
+    }
+
+    /**
+     * Returns the smallest cached copy of an image that is at least the
+     * given size, or the full-size copy if the target is larger.
+     *
+     * @param image The image
+     * @param width Wanted width in device pixels
+     * @param height Wanted height in device pixels
+     * @return The copy to draw
+     */
+    public synchronized Image getMipmap(BufferedImage image, int width, int height) {
+        Image[] levels = mipmaps.get(image);
+        if (levels == null) {
+            levels = buildMipmaps(image);
+            mipmaps.put(image, levels);
+        }
+        int level = 0;
+        while (level + 1 < levels.length
+               && levels[level + 1].getWidth(null) >= width
+               && levels[level + 1].getHeight(null) >= height) {
+            level++;
+        }
+        return levels[level];
+    }
+
+    /**
+     * Drops the cached copies of an image, after its pixels changed.
+     *
+     * @param image The image
+     */
+    public synchronized void forgetImage(BufferedImage image) {
+        mipmaps.remove(image);
+    }
+
+    /**
+     * Builds the full-size copy and halved copies down to the minimum size.
+     * Each level is filtered from the one above it.
+     */
+    private Image[] buildMipmaps(BufferedImage image) {
+        List<Image> levels = new ArrayList<>();
+        BufferedImage level = copy(image, image.getWidth(), image.getHeight());
+        levels.add(level);
+        while (level.getWidth() / 2 >= MIN_MIPMAP_SIZE && level.getHeight() / 2 >= MIN_MIPMAP_SIZE) {
+            level = copy(level, level.getWidth() / 2, level.getHeight() / 2);
+            levels.add(level);
+        }
+        return levels.toArray(new Image[0]);
+    }
+
+    private BufferedImage copy(BufferedImage src, int width, int height) {
+        BufferedImage dst = createCompatible(width, height, src.getTransparency());
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(src, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return dst;
+    }
+
+    // ------------------ Surfaces ------------------
+
+    /**
+     * Creates an image in the screen's native format, or a premultiplied
+     * ARGB image when not accelerated. Java2D may cache such images in
+     * video memory once they have been drawn a few times unchanged.
+     *
+     * @param width Image width
+     * @param height Image height
+     * @param transparency One of the {@link Transparency} constants
+     * @return The image
+     */
+    public BufferedImage createCompatible(int width, int height, int transparency) {
+        if (config != null) {
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                                 ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private Image createSurface(int width, int height, int transparency) {
+        if (config == null) {
+            return createCompatible(width, height, transparency);
+        }
+        return createVolatile(width, height, transparency);
+    }
+
+    private VolatileImage createVolatile(int width, int height, int transparency) {
+        VolatileImage image = config.createCompatibleVolatileImage(width, height, transparency);
+        image.validate(config);
+        return image;
+    }
+
+    private static boolean lost(Image image) {
+        return image instanceof VolatileImage && ((VolatileImage) image).contentsLost();
+    }
+
+    /**
+     * Frees every surface and cached copy. The manager stays usable and
+     * recreates surfaces on next use.
+     */
+    public synchronized void flush() {
+        if (volatileBuffer != null) {
+            volatileBuffer.flush();
+            volatileBuffer = null;
+        }
+        bufferedBuffer = null;
+        for (Layer layer : layers) {
+            layer.flush();
+        }
+        for (Image[] levels : mipmaps.values()) {
+            for (Image level : levels) {
+                level.flush();
+            }
+        }
+        mipmaps.clear();
+    }
+}
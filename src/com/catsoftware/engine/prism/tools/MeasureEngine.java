@@ -0,0 +1,376 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.tools;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.model.ObjectStore;
+import com.catsoftware.engine.prism.model.SpatialIndex;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Takes measurements for the tools in {@link ToolType} against a document.
+ * Points picked by the user can be snapped to object vertices, edges and
+ * bounding-box handles through a {@link SnapIndex}, and caliper queries use
+ * a {@link SpatialIndex} of object bounds, so neither scans the whole
+ * document on each mouse move.
+ *
+ * <p>The indexes are built when the engine is created. Call
+ * {@link #objectChanged} and {@link #objectRemoved} while a tool stays
+ * active and the document is edited.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class MeasureEngine {
+
+    /** Default snap distance in canvas pixels */
+    public static final double DEFAULT_SNAP_RADIUS = 8;
+
+    /** Lines within this many degrees of horizontal or vertical count as level */
+    public static final double LEVEL_TOLERANCE = 0.05;
+
+    // Indexed bounds leave out stroke widths, so the caliper looks this far around the point
+    private static final int PICK_MARGIN = 64;
+
+    private final ObjectStore store;
+    private final SnapIndex snaps;
+    private final SpatialIndex bounds;
+    private double snapRadius = DEFAULT_SNAP_RADIUS;
+    private boolean snapping = true;
+
+    /**
+     * Creates an engine for a document's objects and indexes them.
+     *
+     * @param store The document's objects
+     */
+    public MeasureEngine(ObjectStore store) {
+        this.store = store;
+        List<DrawableObject> objects = store.snapshot();
+        this.snaps = new SnapIndex(objects, SnapIndex.DEFAULT_CELL_SIZE);
+        this.bounds = new SpatialIndex(objects, SpatialIndex.DEFAULT_CELL_SIZE);
+    }
+
+    // ------------------ Index ------------------
+
+    /**
+     * Re-indexes an object that was added or changed.
+     *
+     * @param obj The object
+     */
+    public void objectChanged(DrawableObject obj) {
+        snaps.update(obj);
+        bounds.update(obj);
+    }
+
+    /**
+     * Drops an object that was removed from the document.
+     *
+     * @param obj The object
+     */
+    public void objectRemoved(DrawableObject obj) {
+        snaps.remove(obj);
+        bounds.remove(obj);
+    }
+
+    /**
+     * Rebuilds both indexes from the document.
+     */
+    public void rebuild() {
+        snaps.clear();
+        bounds.clear();
+        for (DrawableObject obj : store.snapshot()) {
+            snaps.insert(obj);
+            bounds.insert(obj);
+        }
+    }
+
+    /** @return The snap index */
+    public SnapIndex getSnapIndex() {
+        return snaps;
+    }
+
+    // ------------------ Snapping ------------------
+
+    /** @return true if points are snapped */
+    public boolean isSnapping() { return snapping; }
+
+    /** @param snapping true to snap points to objects */
+    public void setSnapping(boolean snapping) {
+        this.snapping = snapping;
+    }
+
+    /** @return The snap distance in canvas pixels */
+    public double getSnapRadius() { return snapRadius; }
+
+    /** @param snapRadius The snap distance in canvas pixels */
+    public void setSnapRadius(double snapRadius) {
+        this.snapRadius = Math.max(0, snapRadius);
+    }
+
+    /**
+     * Finds the snap target for a pointer position.
+     *
+     * @param p The pointer in canvas coordinates
+     * @return The target, or null if snapping is off or nothing is close
+     */
+    public SnapIndex.Snap findSnap(Point2D p) {
+        if (!snapping) return null;
+        return snaps.nearest(p.getX(), p.getY(), snapRadius);
+    }
+
+    /**
+     * Snaps a pointer position.
+     *
+     * @param p The pointer in canvas coordinates
+     * @return The snapped point, or a copy of {@code p} if nothing is close
+     */
+    public Point2D snap(Point2D p) {
+        SnapIndex.Snap s = findSnap(p);
+        return s != null ? s.toPoint() : new Point2D.Double(p.getX(), p.getY());
+    }
+
+    // ------------------ Measuring ------------------
+
+    /**
+     * Takes a measurement.
+     *
+     * <ul>
+     * <li>RULER, LEVEL: start and end point</li>
+     * <li>PROTRACTOR: vertex, then one point on each arm</li>
+     * <li>TRIANGLE: the three corners</li>
+     * <li>COMPASS: centre and a point on the circle</li>
+     * <li>CALIPER: one point on an object, or two opposite corners of the jaws</li>
+     * </ul>
+     *
+     * @param tool The tool
+     * @param points The points in canvas coordinates (not snapped here)
+     * @return The measurement
+     * @throws IllegalArgumentException If the number of points does not fit the tool
+     */
+    public Measurement measure(ToolType tool, Point2D... points) {
+        switch (tool) {
+            case RULER:
+                require(tool, points, 2);
+                return ruler(points[0], points[1]);
+            case PROTRACTOR:
+                require(tool, points, 3);
+                return protractor(points[0], points[1], points[2]);
+            case TRIANGLE:
+                require(tool, points, 3);
+                return triangle(points[0], points[1], points[2]);
+            case COMPASS:
+                require(tool, points, 2);
+                return compass(points[0], points[1]);
+            case CALIPER:
+                if (points.length == 1) {
+                    return caliper(points[0]);
+                }
+                require(tool, points, 2);
+                return caliper(points[0], points[1]);
+            case LEVEL:
+                require(tool, points, 2);
+                return level(points[0], points[1]);
+            default:
+                throw new IllegalArgumentException("Unknown tool: " + tool);
+        }
+    }
+
+    /**
+     * Measures the distance and direction between two points.
+     * The angle is counter-clockwise from the positive X axis, as seen on screen.
+     *
+     * @param a Start point
+     * @param b End point
+     * @return Length, angle, and dx/dy as width/height
+     */
+    public static Measurement ruler(Point2D a, Point2D b) {
+        double dx = b.getX() - a.getX();
+        double dy = b.getY() - a.getY();
+        return new Measurement(ToolType.RULER, copy(a, b), Math.hypot(dx, dy),
+                               direction(a, b), Double.NaN, Math.abs(dx), Math.abs(dy));
+    }
+
+    /**
+     * Measures the angle between two arms meeting at a vertex.
+     *
+     * @param vertex The point the arms meet at
+     * @param a A point on the first arm
+     * @param b A point on the second arm
+     * @return The angle (0 - 180)
+     */
+    public static Measurement protractor(Point2D vertex, Point2D a, Point2D b) {
+        double ax = a.getX() - vertex.getX(), ay = a.getY() - vertex.getY();
+        double bx = b.getX() - vertex.getX(), by = b.getY() - vertex.getY();
+        double angle = Math.toDegrees(Math.abs(Math.atan2(ax * by - ay * bx, ax * bx + ay * by)));
+        return new Measurement(ToolType.PROTRACTOR, copy(vertex, a, b), Double.NaN, angle,
+                               Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Measures a triangle.
+     *
+     * @param a First corner
+     * @param b Second corner
+     * @param c Third corner
+     * @return Area, and the perimeter as length
+     */
+    public static Measurement triangle(Point2D a, Point2D b, Point2D c) {
+        double area = Math.abs((b.getX() - a.getX()) * (c.getY() - a.getY())
+                             - (c.getX() - a.getX()) * (b.getY() - a.getY())) / 2;
+        double perimeter = a.distance(b) + b.distance(c) + c.distance(a);
+        return new Measurement(ToolType.TRIANGLE, copy(a, b, c), perimeter, Double.NaN,
+                               area, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Measures a compass circle.
+     *
+     * @param center The needle point
+     * @param rim A point on the circle
+     * @return Radius as length, the rim direction as angle, and the circle area
+     */
+    public static Measurement compass(Point2D center, Point2D rim) {
+        double r = center.distance(rim);
+        return new Measurement(ToolType.COMPASS, copy(center, rim), r, direction(center, rim),
+                               Math.PI * r * r, 2 * r, 2 * r);
+    }
+
+    /**
+     * Builds the arc a compass draws, starting at the rim point.
+     *
+     * @param center The needle point
+     * @param rim A point on the circle, where the arc starts
+     * @param extent The sweep in degrees (360 for a full circle; negative for clockwise)
+     * @return The open arc
+     */
+    public static Shape compassArc(Point2D center, Point2D rim, double extent) {
+        double r = center.distance(rim);
+        return new Arc2D.Double(center.getX() - r, center.getY() - r, 2 * r, 2 * r,
+                                direction(center, rim), extent, Arc2D.OPEN);
+    }
+
+    /**
+     * Measures whether a line is level.
+     *
+     * @param a Start point
+     * @param b End point
+     * @return Length, and the signed deviation from the nearest horizontal
+     *         or vertical as angle (0 when level)
+     */
+    public static Measurement level(Point2D a, Point2D b) {
+        double dir = direction(a, b);
+        double deviation = dir - 90 * Math.rint(dir / 90);
+        if (Math.abs(deviation) < LEVEL_TOLERANCE) {
+            deviation = 0;
+        }
+        return new Measurement(ToolType.LEVEL, copy(a, b), a.distance(b), deviation,
+                               Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Measures the extents of the object under a point.
+     *
+     * @param p The point in canvas coordinates
+     * @return Width and height of the object's bounds (0 if there is none)
+     */
+    public Measurement caliper(Point2D p) {
+        DrawableObject obj = pick(new Point((int) Math.round(p.getX()), (int) Math.round(p.getY())));
+        Rectangle b = obj != null ? obj.getBounds() : new Rectangle();
+        return new Measurement(ToolType.CALIPER, copy(p), Double.NaN, Double.NaN,
+                               Double.NaN, b.width, b.height);
+    }
+
+    /**
+     * Measures the combined extents of the objects between the caliper jaws.
+     *
+     * @param a One corner of the jaws
+     * @param b The opposite corner
+     * @return Width and height of the objects' combined bounds, or of the
+     *         jaws themselves if they hold no object
+     */
+    public Measurement caliper(Point2D a, Point2D b) {
+        Rectangle jaws = new Rectangle(new Point((int) Math.floor(a.getX()), (int) Math.floor(a.getY())));
+        jaws.add(new Point((int) Math.ceil(b.getX()), (int) Math.ceil(b.getY())));
+
+        Rectangle extent = null;
+        for (DrawableObject obj : bounds.query(jaws)) {
+            if (extent == null) {
+                extent = obj.getBounds();
+            } else {
+                extent.add(obj.getBounds());
+            }
+        }
+        double w = extent != null ? extent.width : Math.abs(b.getX() - a.getX());
+        double h = extent != null ? extent.height : Math.abs(b.getY() - a.getY());
+        return new Measurement(ToolType.CALIPER, copy(a, b), Double.NaN, Double.NaN,
+                               Double.NaN, w, h);
+    }
+
+    // ------------------ Helpers ------------------
+
+    /**
+     * Picks the object under a point like {@link ObjectStore#pick}, but only
+     * tests the objects the bounds index finds near it. The smallest hit
+     * distance wins; the drawing order is only looked up to break a tie.
+     */
+    private DrawableObject pick(Point p) {
+        Rectangle area = new Rectangle(p);
+        area.grow(PICK_MARGIN, PICK_MARGIN);
+
+        List<DrawableObject> tied = new ArrayList<>();
+        double bestDistance = Double.MAX_VALUE;
+        for (DrawableObject obj : bounds.query(area)) {
+            double d = obj.hitDistance(p);
+            if (d < 0 || d > bestDistance) continue;
+            if (d < bestDistance) {
+                tied.clear();
+                bestDistance = d;
+            }
+            tied.add(obj);
+        }
+        if (tied.size() < 2) {
+            return tied.isEmpty() ? null : tied.get(0);
+        }
+
+        // Ties go to the topmost object
+        List<DrawableObject> objects = store.snapshot();
+        for (int i = objects.size() - 1; i >= 0; i--) {
+            DrawableObject obj = objects.get(i);
+            for (DrawableObject candidate : tied) {
+                if (candidate == obj) return obj;
+            }
+        }
+        return tied.get(0);
+    }
+
+    /**
+     * Returns the direction from one point to another in degrees,
+     * counter-clockwise from the positive X axis as seen on screen (Y down).
+     */
+    private static double direction(Point2D from, Point2D to) {
+        return Math.toDegrees(Math.atan2(from.getY() - to.getY(), to.getX() - from.getX()));
+    }
+
+    private static void require(ToolType tool, Point2D[] points, int count) {
+        if (points.length != count) {
+            throw new IllegalArgumentException(tool + " needs " + count + " points, got " + points.length);
+        }
+    }
+
+    private static Point2D[] copy(Point2D... points) {
+        Point2D[] result = new Point2D[points.length];
+        for (int i = 0; i < points.length; i++) {
+            result[i] = new Point2D.Double(points[i].getX(), points[i].getY());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.tools;
+
+import java.awt.geom.Point2D;
+import java.util.Locale;
+
+/**
+ * The result of one measuring tool. Values that the tool does not measure
+ * are {@code NaN}. Lengths are in canvas pixels and angles in degrees.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public final class Measurement {
+
+    private final ToolType tool;
+    private final Point2D[] points;
+    private final double length;
+    private final double angle;
+    private final double area;
+    private final double width;
+    private final double height;
+
+    Measurement(ToolType tool, Point2D[] points, double length, double angle,
+                double area, double width, double height) {
+        this.tool = tool;
+        this.points = points;
+        this.length = length;
+        this.angle = angle;
+        this.area = area;
+        this.width = width;
+        this.height = height;
+    }
+
+    /** @return The tool that took this measurement */
+    public ToolType getTool() { return tool; }
+
+    /**
+     * Returns the points the measurement was taken between.
+     *
+     * @return A copy of the points, in canvas coordinates
+     */
+    public Point2D[] getPoints() {
+        Point2D[] copy = new Point2D[points.length];
+        for (int i = 0; i < points.length; i++) {
+            copy[i] = (Point2D) points[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the measured length: the ruler distance, the compass radius
+     * or the triangle perimeter.
+     *
+     * @return The length, or NaN
+     */
+    public double getLength() { return length; }
+
+    /**
+     * Returns the measured angle: the ruler direction, the protractor
+     * angle or the level's deviation from horizontal or vertical.
+     *
+     * @return The angle in degrees, or NaN
+     */
+    public double getAngle() { return angle; }
+
+    /**
+     * Returns the measured area of the triangle or compass circle.
+     *
+     * @return The area in square pixels, or NaN
+     */
+    public double getArea() { return area; }
+
+    /** @return The horizontal extent (ruler dx, caliper width), or NaN */
+    public double getWidth() { return width; }
+
+    /** @return The vertical extent (ruler dy, caliper height), or NaN */
+    public double getHeight() { return height; }
+
+    /**
+     * Returns a short text for the tool's on-canvas label.
+     *
+     * @return The label
+     */
+    public String getLabel() {
+        switch (tool) {
+            case RULER:
+                return format("%.1f px  %.1f\u00B0", length, angle);
+            case PROTRACTOR:
+                return format("%.1f\u00B0", angle);
+            case TRIANGLE:
+                return format("%.1f px\u00B2  (perimeter %.1f px)", area, length);
+            case COMPASS:
+                return format("r %.1f px", length);
+            case CALIPER:
+                return format("%.1f x %.1f px", width, height);
+            case LEVEL:
+                return Math.abs(angle) < 0.05 ? "Level" : format("%+.1f\u00B0", angle);
+            default:
+                return tool.name();
+        }
+    }
+
+    private static String format(String pattern, Object... args) {
+        return String.format(Locale.ROOT, pattern, args);
+    }
+
+    @Override
+    public String toString() {
+        return tool + ": " + getLabel();
+    }
+}
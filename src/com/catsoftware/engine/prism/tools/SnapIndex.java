@@ -0,0 +1,577 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.tools;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import com.catsoftware.engine.prism.draw.GroupObject;
+import com.catsoftware.engine.prism.draw.ShapeObject;
+import com.catsoftware.engine.prism.draw.StrokeObject;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the points a measuring tool or pointer can snap to: object
+ * vertices, bounding-box handles and centres, and the edges between
+ * vertices. Points and edges are kept in packed arrays and listed in a
+ * uniform hash grid, so finding the nearest snap target only looks at the
+ * cells around the pointer, however many vertices the document has.
+ *
+ * <p>The index stores the geometry an object had when it was added. Call
+ * {@link #update} after changing an indexed object.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SnapIndex {
+
+    /** Default cell size in canvas pixels */
+    public static final int DEFAULT_CELL_SIZE = 64;
+
+    // Edges covering more cells than this go to the oversized list
+    private static final int MAX_CELLS_PER_EDGE = 256;
+
+    // Curves are split into edges no further than this from the curve
+    private static final double FLATNESS = 0.5;
+
+    /**
+     * What a snap target is on its object.
+     */
+    public enum Kind {
+        /** A corner or end point of the outline */
+        VERTEX,
+        /** The centre of the bounding box */
+        CENTER,
+        /** A corner or side midpoint of the bounding box */
+        HANDLE,
+        /** The nearest point on an edge of the outline */
+        EDGE
+    }
+
+    /**
+     * A point found by {@link #nearest}.
+     */
+    public static final class Snap {
+
+        private final double x;
+        private final double y;
+        private final Kind kind;
+        private final DrawableObject source;
+        private final double distance;
+
+        Snap(double x, double y, Kind kind, DrawableObject source, double distance) {
+            this.x = x;
+            this.y = y;
+            this.kind = kind;
+            this.source = source;
+            this.distance = distance;
+        }
+
+        /** @return The X coordinate in canvas coordinates */
+        public double getX() { return x; }
+
+        /** @return The Y coordinate in canvas coordinates */
+        public double getY() { return y; }
+
+        /** @return What the point is on its object */
+        public Kind getKind() { return kind; }
+
+        /** @return The object the point belongs to */
+        public DrawableObject getSource() { return source; }
+
+        /** @return The distance from the queried point */
+        public double getDistance() { return distance; }
+
+        /** @return The point as a new Point2D */
+        public Point2D toPoint() { return new Point2D.Double(x, y); }
+    }
+
+    private final int cellSize;
+
+    // Points: x, y per slot
+    private double[] pointXY = new double[256];
+    private byte[] pointKind = new byte[128];
+    private DrawableObject[] pointOwner = new DrawableObject[128];
+    private int pointSlots;
+    private final IntList freePoints = new IntList();
+
+    // Edges: x1, y1, x2, y2 per slot
+    private double[] edgeXY = new double[512];
+    private DrawableObject[] edgeOwner = new DrawableObject[128];
+    private int edgeSlots;
+    private final IntList freeEdges = new IntList();
+
+    private final Map<Long, IntList> pointCells = new HashMap<>();
+    private final Map<Long, IntList> edgeCells = new HashMap<>();
+    private final IntList oversizedEdges = new IntList();
+    private final Map<DrawableObject, Entry> entries = new IdentityHashMap<>();
+
+    private int pointCount;
+
+    /**
+     * Creates an empty index with the default cell size.
+     */
+    public SnapIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param cellSize Cell size in canvas pixels
+     */
+    public SnapIndex(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+    }
+
+    /**
+     * Creates an index holding the given objects.
+     *
+     * @param objects The objects to index
+     * @param cellSize Cell size in canvas pixels
+     */
+    public SnapIndex(Collection<? extends DrawableObject> objects, int cellSize) {
+        this(cellSize);
+        for (DrawableObject obj : objects) {
+            insert(obj);
+        }
+    }
+
+    // ------------------ Updates ------------------
+
+    /**
+     * Adds the snap targets of an object. Adding an object that is already
+     * indexed updates it.
+     *
+     * @param obj The object
+     */
+    public void insert(DrawableObject obj) {
+        if (entries.containsKey(obj)) {
+            remove(obj);
+        }
+        Entry entry = new Entry();
+        entries.put(obj, entry);
+
+        Rectangle b = obj.getBounds();
+        double cx = b.getCenterX();
+        double cy = b.getCenterY();
+        addPoint(entry, obj, cx, cy, Kind.CENTER);
+        addPoint(entry, obj, b.x, b.y, Kind.HANDLE);
+        addPoint(entry, obj, cx, b.y, Kind.HANDLE);
+        addPoint(entry, obj, b.x + b.width, b.y, Kind.HANDLE);
+        addPoint(entry, obj, b.x + b.width, cy, Kind.HANDLE);
+        addPoint(entry, obj, b.x + b.width, b.y + b.height, Kind.HANDLE);
+        addPoint(entry, obj, cx, b.y + b.height, Kind.HANDLE);
+        addPoint(entry, obj, b.x, b.y + b.height, Kind.HANDLE);
+        addPoint(entry, obj, b.x, cy, Kind.HANDLE);
+
+        collect(entry, obj, obj, new AffineTransform());
+    }
+
+    /**
+     * Removes the snap targets of an object.
+     *
+     * @param obj The object
+     * @return true if it was indexed
+     */
+    public boolean remove(DrawableObject obj) {
+        Entry entry = entries.remove(obj);
+        if (entry == null) {
+            return false;
+        }
+        for (int i = 0; i < entry.points.size; i++) {
+            int slot = entry.points.data[i];
+            Long k = key(cell(pointXY[slot * 2]), cell(pointXY[slot * 2 + 1]));
+            IntList list = pointCells.get(k);
+            if (list != null) {
+                list.removeValue(slot);
+                if (list.size == 0) {
+                    pointCells.remove(k);
+                }
+            }
+            pointOwner[slot] = null;
+            freePoints.add(slot);
+            pointCount--;
+        }
+        for (int i = 0; i < entry.edges.size; i++) {
+            int slot = entry.edges.data[i];
+            int o = slot * 4;
+            int x0 = cell(Math.min(edgeXY[o], edgeXY[o + 2]));
+            int x1 = cell(Math.max(edgeXY[o], edgeXY[o + 2]));
+            int y0 = cell(Math.min(edgeXY[o + 1], edgeXY[o + 3]));
+            int y1 = cell(Math.max(edgeXY[o + 1], edgeXY[o + 3]));
+            if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS_PER_EDGE) {
+                oversizedEdges.removeValue(slot);
+            } else {
+                for (int cy = y0; cy <= y1; cy++) {
+                    for (int cx = x0; cx <= x1; cx++) {
+                        Long k = key(cx, cy);
+                        IntList list = edgeCells.get(k);
+                        if (list != null) {
+                            list.removeValue(slot);
+                            if (list.size == 0) {
+                                edgeCells.remove(k);
+                            }
+                        }
+                    }
+                }
+            }
+            edgeOwner[slot] = null;
+            freeEdges.add(slot);
+        }
+        return true;
+    }
+
+    /**
+     * Re-indexes an object after it changed.
+     *
+     * @param obj The object
+     */
+    public void update(DrawableObject obj) {
+        insert(obj);
+    }
+
+    /**
+     * Checks if an object is indexed.
+     *
+     * @param obj The object
+     * @return true if indexed
+     */
+    public boolean contains(DrawableObject obj) {
+        return entries.containsKey(obj);
+    }
+
+    /**
+     * Returns the number of indexed snap points (vertices, handles and centres).
+     *
+     * @return The point count
+     */
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Removes all objects.
+     */
+    public void clear() {
+        pointCells.clear();
+        edgeCells.clear();
+        oversizedEdges.clear();
+        entries.clear();
+        freePoints.clear();
+        freeEdges.clear();
+        Arrays.fill(pointOwner, 0, pointSlots, null);
+        Arrays.fill(edgeOwner, 0, edgeSlots, null);
+        pointSlots = 0;
+        edgeSlots = 0;
+        pointCount = 0;
+    }
+
+    // ------------------ Queries ------------------
+
+    /**
+     * Finds the nearest snap target within a radius. Points (vertices,
+     * handles and centres) win over edges, so the pointer locks onto a
+     * corner rather than the edges meeting there.
+     *
+     * @param x Pointer X in canvas coordinates
+     * @param y Pointer Y in canvas coordinates
+     * @param radius Largest snap distance
+     * @return The snap target, or null if nothing is within the radius
+     */
+    public Snap nearest(double x, double y, double radius) {
+        return nearest(x, y, radius, null);
+    }
+
+    /**
+     * Finds the nearest snap target within a radius, ignoring one object
+     * (for example the object being dragged).
+     *
+     * @param x Pointer X in canvas coordinates
+     * @param y Pointer Y in canvas coordinates
+     * @param radius Largest snap distance
+     * @param ignore The object to skip, or null
+     * @return The snap target, or null if nothing is within the radius
+     */
+    public Snap nearest(double x, double y, double radius, DrawableObject ignore) {
+        int x0 = cell(x - radius), x1 = cell(x + radius);
+        int y0 = cell(y - radius), y1 = cell(y + radius);
+        double r2 = radius * radius;
+
+        // Vertices, handles and centres
+        int best = -1;
+        double bestD2 = r2;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                IntList list = pointCells.get(key(cx, cy));
+                if (list == null) continue;
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.data[i];
+                    if (pointOwner[slot] == ignore) continue;
+                    double dx = pointXY[slot * 2] - x;
+                    double dy = pointXY[slot * 2 + 1] - y;
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 <= bestD2) {
+                        bestD2 = d2;
+                        best = slot;
+                    }
+                }
+            }
+        }
+        if (best >= 0) {
+            return new Snap(pointXY[best * 2], pointXY[best * 2 + 1],
+                            Kind.values()[pointKind[best]], pointOwner[best], Math.sqrt(bestD2));
+        }
+
+        // Edges
+        double[] nearest = new double[2];
+        double bx = 0, by = 0;
+        DrawableObject owner = null;
+        bestD2 = r2;
+        for (int cy = y0; cy <= y1; cy++) {
+            for (int cx = x0; cx <= x1; cx++) {
+                IntList list = edgeCells.get(key(cx, cy));
+                if (list == null) continue;
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.data[i];
+                    if (edgeOwner[slot] == ignore) continue;
+                    double d2 = project(slot, x, y, nearest);
+                    if (d2 <= bestD2) {
+                        bestD2 = d2;
+                        bx = nearest[0];
+                        by = nearest[1];
+                        owner = edgeOwner[slot];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < oversizedEdges.size; i++) {
+            int slot = oversizedEdges.data[i];
+            if (edgeOwner[slot] == ignore) continue;
+            double d2 = project(slot, x, y, nearest);
+            if (d2 <= bestD2) {
+                bestD2 = d2;
+                bx = nearest[0];
+                by = nearest[1];
+                owner = edgeOwner[slot];
+            }
+        }
+        return owner != null ? new Snap(bx, by, Kind.EDGE, owner, Math.sqrt(bestD2)) : null;
+    }
+
+    /**
+     * Finds the nearest point on an edge.
+     *
+     * @return The squared distance; the point is written to {@code out}
+     */
+    private double project(int slot, double px, double py, double[] out) {
+        int o = slot * 4;
+        double ax = edgeXY[o], ay = edgeXY[o + 1];
+        double dx = edgeXY[o + 2] - ax, dy = edgeXY[o + 3] - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / len2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        out[0] = ax + t * dx;
+        out[1] = ay + t * dy;
+        double ex = out[0] - px, ey = out[1] - py;
+        return ex * ex + ey * ey;
+    }
+
+    // ------------------ Geometry ------------------
+
+    /**
+     * Adds the vertices and edges of an object, mapped by {@code at}.
+     * Groups are walked so the parts of a group can be snapped to.
+     */
+    private void collect(Entry entry, DrawableObject owner, DrawableObject obj, AffineTransform at) {
+        if (obj instanceof GroupObject) {
+            AffineTransform inner = new AffineTransform(at);
+            inner.concatenate(obj.getTransform());
+            for (DrawableObject child : ((GroupObject) obj).getChildren()) {
+                collect(entry, owner, child, inner);
+            }
+        } else if (obj instanceof StrokeObject) {
+            // The centre line, not the outline of the painted ink
+            AffineTransform m = new AffineTransform(at);
+            m.concatenate(obj.getTransform());
+            List<Point> points = ((StrokeObject) obj).getPoints();
+            double[] xy = new double[points.size() * 2];
+            for (int i = 0; i < points.size(); i++) {
+                xy[i * 2] = points.get(i).x;
+                xy[i * 2 + 1] = points.get(i).y;
+            }
+            m.transform(xy, 0, xy, 0, points.size());
+            for (int i = 0; i < points.size(); i++) {
+                addPoint(entry, owner, xy[i * 2], xy[i * 2 + 1], Kind.VERTEX);
+                if (i > 0) {
+                    addEdge(entry, owner, xy[i * 2 - 2], xy[i * 2 - 1], xy[i * 2], xy[i * 2 + 1]);
+                }
+            }
+        } else if (obj instanceof ShapeObject) {
+            AffineTransform m = new AffineTransform(at);
+            m.concatenate(obj.getTransform());
+            addOutline(entry, owner, m.createTransformedShape(((ShapeObject) obj).getOutline()));
+        } else {
+            Shape shape = obj.toShape();
+            addOutline(entry, owner, at.isIdentity() ? shape : at.createTransformedShape(shape));
+        }
+    }
+
+    /**
+     * Adds the segment end points of an outline as vertices, and its
+     * flattened segments as edges.
+     */
+    private void addOutline(Entry entry, DrawableObject owner, Shape shape) {
+        double[] c = new double[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    addPoint(entry, owner, c[0], c[1], Kind.VERTEX);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    addPoint(entry, owner, c[2], c[3], Kind.VERTEX);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    addPoint(entry, owner, c[4], c[5], Kind.VERTEX);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        double startX = 0, startY = 0, lastX = 0, lastY = 0;
+        for (PathIterator it = shape.getPathIterator(null, FLATNESS); !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    startX = lastX = c[0];
+                    startY = lastY = c[1];
+                    break;
+                case PathIterator.SEG_LINETO:
+                    addEdge(entry, owner, lastX, lastY, c[0], c[1]);
+                    lastX = c[0];
+                    lastY = c[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (lastX != startX || lastY != startY) {
+                        addEdge(entry, owner, lastX, lastY, startX, startY);
+                    }
+                    lastX = startX;
+                    lastY = startY;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void addPoint(Entry entry, DrawableObject owner, double x, double y, Kind kind) {
+        int slot;
+        if (freePoints.size > 0) {
+            slot = freePoints.data[--freePoints.size];
+        } else {
+            slot = pointSlots++;
+            if (slot >= pointOwner.length) {
+                pointOwner = Arrays.copyOf(pointOwner, pointOwner.length * 2);
+                pointKind = Arrays.copyOf(pointKind, pointOwner.length);
+                pointXY = Arrays.copyOf(pointXY, pointOwner.length * 2);
+            }
+        }
+        pointXY[slot * 2] = x;
+        pointXY[slot * 2 + 1] = y;
+        pointKind[slot] = (byte) kind.ordinal();
+        pointOwner[slot] = owner;
+        pointCells.computeIfAbsent(key(cell(x), cell(y)), k -> new IntList()).add(slot);
+        entry.points.add(slot);
+        pointCount++;
+    }
+
+    private void addEdge(Entry entry, DrawableObject owner, double x1, double y1, double x2, double y2) {
+        int slot;
+        if (freeEdges.size > 0) {
+            slot = freeEdges.data[--freeEdges.size];
+        } else {
+            slot = edgeSlots++;
+            if (slot >= edgeOwner.length) {
+                edgeOwner = Arrays.copyOf(edgeOwner, edgeOwner.length * 2);
+                edgeXY = Arrays.copyOf(edgeXY, edgeOwner.length * 4);
+            }
+        }
+        int o = slot * 4;
+        edgeXY[o] = x1;
+        edgeXY[o + 1] = y1;
+        edgeXY[o + 2] = x2;
+        edgeXY[o + 3] = y2;
+        edgeOwner[slot] = owner;
+        entry.edges.add(slot);
+
+        int cx0 = cell(Math.min(x1, x2)), cx1 = cell(Math.max(x1, x2));
+        int cy0 = cell(Math.min(y1, y2)), cy1 = cell(Math.max(y1, y2));
+        if ((long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1) > MAX_CELLS_PER_EDGE) {
+            oversizedEdges.add(slot);
+            return;
+        }
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                edgeCells.computeIfAbsent(key(cx, cy), k -> new IntList()).add(slot);
+            }
+        }
+    }
+
+    private int cell(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The point and edge slots that belong to one object.
+     */
+    private static final class Entry {
+        final IntList points = new IntList();
+        final IntList edges = new IntList();
+    }
+
+    /**
+     * A growable list of ints without boxing.
+     */
+    private static final class IntList {
+        int[] data = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = v;
+        }
+
+        /** Removes one occurrence, moving the last value into its place. */
+        void removeValue(int v) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (data[i] == v) {
+                    data[i] = data[--size];
+                    return;
+                }
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.transform;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Applies one affine transform to a whole selection of objects.
+ * Each object only concatenates the transform onto its own matrix,
+ * and large selections are processed in parallel.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class BulkTransform {
+
+    /** Selections with at least this many objects are transformed in parallel */
+    public static final int PARALLEL_THRESHOLD = 256;
+
+    /**
+     * Applies a transform to every object in a selection.
+     *
+     * @param selection The objects to transform
+     * @param at The transform, in canvas coordinates
+     */
+    public static void apply(Collection<? extends DrawableObject> selection, AffineTransform at) {
+        apply(selection, at, selection.size() >= PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Applies a transform to every object in a selection.
+     *
+     * @param selection The objects to transform
+     * @param at The transform, in canvas coordinates
+     * @param parallel true to spread the objects over the common fork-join pool
+     */
+    public static void apply(Collection<? extends DrawableObject> selection, AffineTransform at,
+                             boolean parallel) {
+        if (at.isIdentity() || selection.isEmpty()) {
+            return;
+        }
+        // Objects are independent, so they can be transformed concurrently.
+        // The transform is only read, never modified.
+        if (parallel) {
+            copyOf(selection).parallelStream().forEach(o -> o.applyTransform(at));
+        } else {
+            for (DrawableObject obj : selection) {
+                obj.applyTransform(at);
+            }
+        }
+    }
+
+    /**
+     * Moves a selection.
+     *
+     * @param selection The objects to move
+     * @param dx Horizontal offset
+     * @param dy Vertical offset
+     */
+    public static void translate(Collection<? extends DrawableObject> selection, double dx, double dy) {
+        apply(selection, AffineTransform.getTranslateInstance(dx, dy));
+    }
+
+    /**
+     * Scales a selection around a fixed anchor point.
+     *
+     * @param selection The objects to scale
+     * @param sx Horizontal scale factor
+     * @param sy Vertical scale factor
+     * @param anchorX Anchor X (stays in place)
+     * @param anchorY Anchor Y (stays in place)
+     */
+    public static void scale(Collection<? extends DrawableObject> selection, double sx, double sy,
+                             double anchorX, double anchorY) {
+        AffineTransform at = AffineTransform.getTranslateInstance(anchorX, anchorY);
+        at.scale(sx, sy);
+        at.translate(-anchorX, -anchorY);
+        apply(selection, at);
+    }
+
+    /**
+     * Rotates a selection around the center of its bounds.
+     *
+     * @param selection The objects to rotate
+     * @param degrees The rotation angle
+     */
+    public static void rotate(Collection<? extends DrawableObject> selection, double degrees) {
+        Rectangle b = getBounds(selection);
+        apply(selection, AffineTransform.getRotateInstance(
+            Math.toRadians(degrees), b.getCenterX(), b.getCenterY()));
+    }
+
+    /**
+     * Returns the union of the bounds of a selection.
+     *
+     * @param selection The objects
+     * @return The combined bounding box (empty for an empty selection)
+     */
+    public static Rectangle getBounds(Collection<? extends DrawableObject> selection) {
+        Rectangle result = null;
+        for (DrawableObject obj : selection) {
+            if (result == null) {
+                result = obj.getBounds();
+            } else {
+                result.add(obj.getBounds());
+            }
+        }
+        return result != null ? result : new Rectangle();
+    }
+
+    /**
+     * Copies a selection into a list, for callers that keep it while editing.
+     *
+     * @param selection The objects
+     * @return A new list with the same objects
+     */
+    static List<DrawableObject> copyOf(Collection<? extends DrawableObject> selection) {
+        return new ArrayList<>(selection);
+    }
+}
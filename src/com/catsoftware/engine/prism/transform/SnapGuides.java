@@ -0,0 +1,416 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.transform;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Alignment guides for moving and resizing objects: the left, centre and
+ * right of every object on the X axis, the top, centre and bottom on the
+ * Y axis, and the grid lines when the grid is on. Guide positions are
+ * kept in one sorted map per axis, so the guides near a position are
+ * found in logarithmic time and objects are added or removed one at a
+ * time as they change, instead of scanning every object's bounds on each
+ * mouse move.
+ *
+ * <p>The guides store the bounds an object had when it was added. Call
+ * {@link #update} after moving or resizing an object.</p>
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class SnapGuides {
+
+    /** Default grid spacing in canvas pixels */
+    public static final int DEFAULT_GRID_SIZE = 20;
+
+    /**
+     * What a guide lines up with.
+     */
+    public enum Kind {
+        /** The side of an object's bounds */
+        EDGE,
+        /** The centre line of an object's bounds */
+        CENTER,
+        /** A grid line */
+        GRID
+    }
+
+    /**
+     * A guide line at one position on one axis.
+     */
+    public static final class Guide {
+
+        private final double position;
+        private final boolean vertical;
+        private final Kind kind;
+        private final List<DrawableObject> sources;
+
+        Guide(double position, boolean vertical, Kind kind, List<DrawableObject> sources) {
+            this.position = position;
+            this.vertical = vertical;
+            this.kind = kind;
+            this.sources = sources;
+        }
+
+        /** @return The X of a vertical guide or the Y of a horizontal one */
+        public double getPosition() { return position; }
+
+        /** @return true for a vertical guide (an X position) */
+        public boolean isVertical() { return vertical; }
+
+        /** @return What the guide lines up with */
+        public Kind getKind() { return kind; }
+
+        /** @return The objects the guide comes from (empty for grid lines) */
+        public List<DrawableObject> getSources() { return sources; }
+    }
+
+    /**
+     * The correction that snaps a moved box to the guides.
+     */
+    public static final class Snap {
+
+        private final double dx;
+        private final double dy;
+        private final Guide guideX;
+        private final Guide guideY;
+
+        Snap(double dx, double dy, Guide guideX, Guide guideY) {
+            this.dx = dx;
+            this.dy = dy;
+            this.guideX = guideX;
+            this.guideY = guideY;
+        }
+
+        /** @return The X correction to add to the move */
+        public double getDx() { return dx; }
+
+        /** @return The Y correction to add to the move */
+        public double getDy() { return dy; }
+
+        /** @return The vertical guide snapped to, or null */
+        public Guide getGuideX() { return guideX; }
+
+        /** @return The horizontal guide snapped to, or null */
+        public Guide getGuideY() { return guideY; }
+    }
+
+    private final Axis xs = new Axis(true);
+    private final Axis ys = new Axis(false);
+    private final Map<DrawableObject, Rectangle> indexed = new IdentityHashMap<>();
+    private boolean gridEnabled;
+    private int gridSize = DEFAULT_GRID_SIZE;
+
+    /**
+     * Creates empty guides.
+     */
+    public SnapGuides() {
+    }
+
+    /**
+     * Creates guides for the given objects.
+     *
+     * @param objects The objects to line up with
+     */
+    public SnapGuides(Collection<? extends DrawableObject> objects) {
+        for (DrawableObject obj : objects) {
+            insert(obj);
+        }
+    }
+
+    // ------------------ Updates ------------------
+
+    /**
+     * Adds the guides of an object. Adding an object that is already
+     * present updates it.
+     *
+     * @param obj The object
+     */
+    public void insert(DrawableObject obj) {
+        if (indexed.containsKey(obj)) {
+            remove(obj);
+        }
+        Rectangle b = obj.getBounds();
+        indexed.put(obj, b);
+        xs.add(b.x, Kind.EDGE, obj);
+        xs.add(b.getCenterX(), Kind.CENTER, obj);
+        xs.add(b.x + b.width, Kind.EDGE, obj);
+        ys.add(b.y, Kind.EDGE, obj);
+        ys.add(b.getCenterY(), Kind.CENTER, obj);
+        ys.add(b.y + b.height, Kind.EDGE, obj);
+    }
+
+    /**
+     * Removes the guides of an object.
+     *
+     * @param obj The object
+     * @return true if it was present
+     */
+    public boolean remove(DrawableObject obj) {
+        Rectangle b = indexed.remove(obj);
+        if (b == null) {
+            return false;
+        }
+        xs.remove(b.x, Kind.EDGE, obj);
+        xs.remove(b.getCenterX(), Kind.CENTER, obj);
+        xs.remove(b.x + b.width, Kind.EDGE, obj);
+        ys.remove(b.y, Kind.EDGE, obj);
+        ys.remove(b.getCenterY(), Kind.CENTER, obj);
+        ys.remove(b.y + b.height, Kind.EDGE, obj);
+        return true;
+    }
+
+    /**
+     * Moves the guides of an object after its bounds changed.
+     *
+     * @param obj The object
+     */
+    public void update(DrawableObject obj) {
+        insert(obj);
+    }
+
+    /**
+     * Removes all objects.
+     */
+    public void clear() {
+        xs.positions.clear();
+        ys.positions.clear();
+        indexed.clear();
+    }
+
+    /** @return true if grid lines are guides */
+    public boolean isGridEnabled() { return gridEnabled; }
+
+    /** @param gridEnabled true to snap to grid lines */
+    public void setGridEnabled(boolean gridEnabled) {
+        this.gridEnabled = gridEnabled;
+    }
+
+    /** @return The grid spacing in canvas pixels */
+    public int getGridSize() { return gridSize; }
+
+    /** @param gridSize The grid spacing in canvas pixels */
+    public void setGridSize(int gridSize) {
+        this.gridSize = Math.max(1, gridSize);
+    }
+
+    // ------------------ Queries ------------------
+
+    /**
+     * Returns the vertical guides within a distance of an X position.
+     *
+     * @param x The position
+     * @param tolerance Largest distance in canvas pixels
+     * @return The guides, nearest first
+     */
+    public List<Guide> nearX(double x, double tolerance) {
+        return near(xs, x, tolerance, Collections.emptySet());
+    }
+
+    /**
+     * Returns the horizontal guides within a distance of a Y position.
+     *
+     * @param y The position
+     * @param tolerance Largest distance in canvas pixels
+     * @return The guides, nearest first
+     */
+    public List<Guide> nearY(double y, double tolerance) {
+        return near(ys, y, tolerance, Collections.emptySet());
+    }
+
+    /**
+     * Snaps a point, such as a resize handle, to the nearest guides.
+     *
+     * @param p The point in canvas coordinates
+     * @param tolerance Largest snap distance in canvas pixels
+     * @return The snapped point
+     */
+    public Point2D snapPoint(Point2D p, double tolerance) {
+        Guide gx = nearest(xs, p.getX(), tolerance, Collections.emptySet());
+        Guide gy = nearest(ys, p.getY(), tolerance, Collections.emptySet());
+        return new Point2D.Double(gx != null ? gx.position : p.getX(),
+                                  gy != null ? gy.position : p.getY());
+    }
+
+    /**
+     * Finds the smallest correction that lines up the left, centre or
+     * right (and top, centre or bottom) of a moved box with a guide.
+     *
+     * @param bounds The box where the move would put it
+     * @param tolerance Largest snap distance in canvas pixels
+     * @param ignore Objects whose guides are skipped, such as the ones being moved
+     * @return The correction; zero on an axis with no guide in reach
+     */
+    public Snap snapBounds(Rectangle bounds, double tolerance, Collection<? extends DrawableObject> ignore) {
+        Set<DrawableObject> skip = Collections.newSetFromMap(new IdentityHashMap<>());
+        skip.addAll(ignore);
+
+        double[] sx = { bounds.x, bounds.getCenterX(), bounds.x + bounds.width };
+        double[] sy = { bounds.y, bounds.getCenterY(), bounds.y + bounds.height };
+        Guide bestX = null, bestY = null;
+        double dx = 0, dy = 0;
+        for (double x : sx) {
+            Guide g = nearest(xs, x, tolerance, skip);
+            if (g != null && (bestX == null || Math.abs(g.position - x) < Math.abs(dx))) {
+                bestX = g;
+                dx = g.position - x;
+            }
+        }
+        for (double y : sy) {
+            Guide g = nearest(ys, y, tolerance, skip);
+            if (g != null && (bestY == null || Math.abs(g.position - y) < Math.abs(dy))) {
+                bestY = g;
+                dy = g.position - y;
+            }
+        }
+        return new Snap(dx, dy, bestX, bestY);
+    }
+
+    /**
+     * Returns the nearest guide on an axis, looking outward from the
+     * position so only the guides in reach are visited.
+     */
+    private Guide nearest(Axis axis, double v, double tolerance, Set<DrawableObject> skip) {
+        Guide best = null;
+        double bestDist = tolerance;
+
+        Map.Entry<Double, Slot> lo = axis.positions.floorEntry(v);
+        while (lo != null && v - lo.getKey() <= bestDist) {
+            Guide g = axis.guide(lo.getKey(), lo.getValue(), skip);
+            if (g != null) {
+                best = g;
+                bestDist = v - lo.getKey();
+                break;
+            }
+            lo = axis.positions.lowerEntry(lo.getKey());
+        }
+        Map.Entry<Double, Slot> hi = axis.positions.higherEntry(v);
+        while (hi != null && hi.getKey() - v <= bestDist) {
+            Guide g = axis.guide(hi.getKey(), hi.getValue(), skip);
+            if (g != null) {
+                if (hi.getKey() - v < bestDist || best == null) {
+                    best = g;
+                }
+                break;
+            }
+            hi = axis.positions.higherEntry(hi.getKey());
+        }
+
+        if (gridEnabled) {
+            double line = Math.rint(v / gridSize) * gridSize;
+            if (Math.abs(line - v) < (best != null ? Math.abs(best.position - v) : tolerance + 1e-9)) {
+                best = new Guide(line, axis.vertical, Kind.GRID, Collections.emptyList());
+            }
+        }
+        return best;
+    }
+
+    private List<Guide> near(Axis axis, double v, double tolerance, Set<DrawableObject> skip) {
+        List<Guide> result = new ArrayList<>();
+        NavigableMap<Double, Slot> range = axis.positions.subMap(v - tolerance, true, v + tolerance, true);
+        for (Map.Entry<Double, Slot> e : range.entrySet()) {
+            Guide g = axis.guide(e.getKey(), e.getValue(), skip);
+            if (g != null) {
+                result.add(g);
+            }
+        }
+        if (gridEnabled) {
+            double first = Math.ceil((v - tolerance) / gridSize) * gridSize;
+            for (double line = first; line <= v + tolerance; line += gridSize) {
+                result.add(new Guide(line, axis.vertical, Kind.GRID, Collections.emptyList()));
+            }
+        }
+        result.sort((a, b) -> Double.compare(Math.abs(a.position - v), Math.abs(b.position - v)));
+        return result;
+    }
+
+    // ------------------ Storage ------------------
+
+    /**
+     * The objects with a guide at one position.
+     */
+    private static final class Slot {
+        final List<DrawableObject> edges = new ArrayList<>(2);
+        final List<DrawableObject> centers = new ArrayList<>(1);
+
+        boolean isEmpty() {
+            return edges.isEmpty() && centers.isEmpty();
+        }
+    }
+
+    /**
+     * The guide positions on one axis, sorted.
+     */
+    private static final class Axis {
+        final boolean vertical;
+        final TreeMap<Double, Slot> positions = new TreeMap<>();
+
+        Axis(boolean vertical) {
+            this.vertical = vertical;
+        }
+
+        void add(double v, Kind kind, DrawableObject obj) {
+            Slot slot = positions.computeIfAbsent(v, k -> new Slot());
+            (kind == Kind.CENTER ? slot.centers : slot.edges).add(obj);
+        }
+
+        void remove(double v, Kind kind, DrawableObject obj) {
+            Slot slot = positions.get(v);
+            if (slot == null) return;
+            List<DrawableObject> list = kind == Kind.CENTER ? slot.centers : slot.edges;
+            for (int i = list.size() - 1; i >= 0; i--) {
+                if (list.get(i) == obj) {
+                    list.remove(i);
+                    break;
+                }
+            }
+            if (slot.isEmpty()) {
+                positions.remove(v);
+            }
+        }
+
+        /**
+         * Returns the guide at a position, or null if every object there is skipped.
+         * Edges take precedence over centres at the same position.
+         */
+        Guide guide(double v, Slot slot, Set<DrawableObject> skip) {
+            List<DrawableObject> edges = visible(slot.edges, skip);
+            if (!edges.isEmpty()) {
+                return new Guide(v, vertical, Kind.EDGE, edges);
+            }
+            List<DrawableObject> centers = visible(slot.centers, skip);
+            if (!centers.isEmpty()) {
+                return new Guide(v, vertical, Kind.CENTER, centers);
+            }
+            return null;
+        }
+
+        private static List<DrawableObject> visible(List<DrawableObject> list, Set<DrawableObject> skip) {
+            if (skip.isEmpty()) {
+                return Collections.unmodifiableList(new ArrayList<>(list));
+            }
+            List<DrawableObject> result = new ArrayList<>(list.size());
+            for (DrawableObject obj : list) {
+                if (!skip.contains(obj)) {
+                    result.add(obj);
+                }
+            }
+            return result;
+        }
+    }
+}
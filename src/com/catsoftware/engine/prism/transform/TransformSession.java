@@ -0,0 +1,152 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.catsoftware.engine.prism.transform;
+
+import com.catsoftware.engine.prism.draw.DrawableObject;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A non-destructive transform of a selection during an interactive drag.
+ * Mouse moves only update the stored matrix (O(1)); the objects are drawn
+ * through it and left untouched until {@link #commit} applies the transform
+ * to them in one pass.
+ *
+ * @author lynxjr
+ * @version 1.0.00
+ * @since Prism B1
+ */
+public class TransformSession {
+
+    private final List<DrawableObject> selection;
+    private final Rectangle startBounds;
+    private final AffineTransform pending = new AffineTransform();
+    private boolean finished;
+
+    /**
+     * Starts a transform session.
+     *
+     * @param selection The objects being transformed
+     */
+    public TransformSession(Collection<? extends DrawableObject> selection) {
+        this.selection = BulkTransform.copyOf(selection);
+        this.startBounds = BulkTransform.getBounds(selection);
+    }
+
+    /**
+     * Returns the selection being transformed.
+     *
+     * @return The objects (unmodifiable)
+     */
+    public List<DrawableObject> getSelection() {
+        return Collections.unmodifiableList(selection);
+    }
+
+    /**
+     * Returns the bounds of the selection when the session started.
+     *
+     * @return The start bounds
+     */
+    public Rectangle getStartBounds() {
+        return new Rectangle(startBounds);
+    }
+
+    /**
+     * Replaces the pending transform (for example, the total drag so far).
+     *
+     * @param at The new pending transform, in canvas coordinates
+     */
+    public void setTransform(AffineTransform at) {
+        pending.setTransform(at);
+    }
+
+    /**
+     * Adds a transform on top of the pending one.
+     *
+     * @param at The transform to apply after the pending one
+     */
+    public void concatenate(AffineTransform at) {
+        pending.preConcatenate(at);
+    }
+
+    /**
+     * Sets the pending transform to a move from the start position,
+     * adjusted so the selection lines up with nearby guides.
+     *
+     * @param dx Total X movement so far
+     * @param dy Total Y movement so far
+     * @param guides The guides to line up with (the selection's own guides are skipped)
+     * @param tolerance Largest snap distance in canvas pixels
+     * @return The snap applied, with the guides to highlight
+     */
+    public SnapGuides.Snap moveSnapped(double dx, double dy, SnapGuides guides, double tolerance) {
+        Rectangle moved = new Rectangle(startBounds);
+        moved.translate((int) Math.round(dx), (int) Math.round(dy));
+        SnapGuides.Snap snap = guides.snapBounds(moved, tolerance, selection);
+        pending.setToTranslation(Math.round(dx) + snap.getDx(), Math.round(dy) + snap.getDy());
+        return snap;
+    }
+
+    /**
+     * Returns a copy of the pending transform.
+     *
+     * @return The pending transform
+     */
+    public AffineTransform getTransform() {
+        return new AffineTransform(pending);
+    }
+
+    /**
+     * Returns the bounds the selection would have if committed now.
+     *
+     * @return The transformed start bounds
+     */
+    public Rectangle getBounds() {
+        return pending.createTransformedShape(startBounds).getBounds();
+    }
+
+    /**
+     * Draws the selection with the pending transform applied.
+     *
+     * @param g The graphics context
+     */
+    public void draw(Graphics2D g) {
+        AffineTransform original = g.getTransform();
+        g.transform(pending);
+        for (DrawableObject obj : selection) {
+            obj.draw(g);
+        }
+        g.setTransform(original);
+    }
+
+    /**
+     * Applies the pending transform to the objects and ends the session.
+     */
+    public void commit() {
+        if (finished) return;
+        finished = true;
+        BulkTransform.apply(selection, pending);
+    }
+
+    /**
+     * Ends the session without changing the objects.
+     */
+    public void cancel() {
+        finished = true;
+    }
+
+    /**
+     * Checks if the session was committed or cancelled.
+     *
+     * @return true if the session has ended
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}